@@ -0,0 +1,85 @@
+package benchmark;
+
+import modelo.Tabuleiro;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import servidor.PesquisaParalela;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark (JMH) da pesquisa paralela do motor ({@link PesquisaParalela}): quantas
+ * posições por segundo são pesquisadas com 1, 2, 4 e 8 threads.
+ *
+ * Cada operação é uma pesquisa com tempo fixo sobre a posição seguinte do conjunto; o número
+ * que interessa é o contador "nos" (posições por segundo, somando todas as threads), que
+ * deve crescer quase na proporção das threads enquanto houver processadores livres.
+ *
+ * Para correr só este benchmark:
+ * <pre>
+ *   mvn -P benchmarks package
+ *   java -jar target/benchmarks.jar PesquisaBenchmark -rf json -rff target/jmh-pesquisa.json
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PesquisaBenchmark {
+
+    // Tempo de cada pesquisa (milissegundos)
+    private static final long TEMPO_PESQUISA = 100;
+    private static final int NUM_POSICOES = 64;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private Posicoes posicoes;
+    private Tabuleiro tabuleiro;
+    private PesquisaParalela pesquisa;
+    private int indice;
+
+    /**
+     * Contador de posições pesquisadas (o JMH mostra-o por segundo).
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Contadores {
+        public long nos;
+
+        @Setup(Level.Iteration)
+        public void limpar() {
+            nos = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        posicoes = Posicoes.meioJogo(NUM_POSICOES);
+        tabuleiro = new Tabuleiro();
+        pesquisa = new PesquisaParalela(threads, 22);
+    }
+
+    @Benchmark
+    public int pesquisar(Contadores contadores) {
+        indice = (indice + 1) % NUM_POSICOES;
+        posicoes.carregar(indice, tabuleiro);
+        int jogada = pesquisa.escolherJogada(tabuleiro.getPretas(), tabuleiro.getBrancas(), tabuleiro.getVez(),
+                64, TimeUnit.MILLISECONDS.toNanos(TEMPO_PESQUISA), threads - 1);
+        contadores.nos += pesquisa.getNos();
+        return jogada;
+    }
+}
@@ -0,0 +1,95 @@
+package benchmark;
+
+import modelo.Tabuleiro;
+
+import java.util.SplittableRandom;
+
+/**
+ * Conjunto de posições de meio-jogo usadas nos benchmarks.
+ * As posições são obtidas jogando partidas aleatórias a partir da posição inicial,
+ * sempre com a mesma semente, para que todas as execuções (e todas as versões do código)
+ * meçam exatamente o mesmo conjunto de posições.
+ */
+public final class Posicoes {
+
+    // Semente fixa: mudá-la invalida a comparação com resultados antigos
+    private static final long SEMENTE = 20250630L;
+
+    private final long[] pretas;
+    private final long[] brancas;
+    private final char[] vez;
+
+    private Posicoes(int quantidade) {
+        pretas = new long[quantidade];
+        brancas = new long[quantidade];
+        vez = new char[quantidade];
+    }
+
+    /**
+     * Gera posições de meio-jogo (entre 12 e 44 jogadas feitas), todas com jogadas
+     * disponíveis para quem tem a vez.
+     *
+     * @param quantidade número de posições a gerar
+     */
+    public static Posicoes meioJogo(int quantidade) {
+        Posicoes p = new Posicoes(quantidade);
+        SplittableRandom aleatorio = new SplittableRandom(SEMENTE);
+        Tabuleiro t = new Tabuleiro();
+        int n = 0;
+        while (n < quantidade) {
+            t.inicializar();
+            int alvo = 12 + aleatorio.nextInt(33);
+            int feitas = 0;
+            while (feitas < alvo && !t.jogoTerminado()) {
+                if (!jogarAoAcaso(t, aleatorio)) t.passar();
+                feitas++;
+            }
+            if (t.temJogada(t.getVez())) {
+                p.pretas[n] = t.getPretas();
+                p.brancas[n] = t.getBrancas();
+                p.vez[n] = t.getVez();
+                n++;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Faz uma jogada escolhida ao acaso entre as jogadas válidas de quem tem a vez.
+     *
+     * @return false se não havia jogadas válidas
+     */
+    public static boolean jogarAoAcaso(Tabuleiro t, SplittableRandom aleatorio) {
+        long movimentos = t.movimentosValidos(t.getVez());
+        if (movimentos == 0) return false;
+        // Salta um número aleatório de bits a 1 e joga no seguinte
+        for (int k = aleatorio.nextInt(Long.bitCount(movimentos)); k > 0; k--) {
+            movimentos &= movimentos - 1;
+        }
+        t.jogar(Long.numberOfTrailingZeros(movimentos), t.getVez());
+        return true;
+    }
+
+    /**
+     * Coloca no tabuleiro a posição número i.
+     */
+    public void carregar(int i, Tabuleiro t) {
+        t.definirPosicao(pretas[i], brancas[i], vez[i]);
+    }
+
+    public long getPretas(int i) {
+        return pretas[i];
+    }
+
+    public long getBrancas(int i) {
+        return brancas[i];
+    }
+
+    public char getVez(int i) {
+        return vez[i];
+    }
+
+    public int tamanho() {
+        return vez.length;
+    }
+}
@@ -0,0 +1,179 @@
+package benchmark;
+
+import modelo.Tabuleiro;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks (JMH) das operações principais do {@link Tabuleiro}.
+ *
+ * Cada operação é medida sobre um conjunto fixo de posições de meio-jogo ({@link Posicoes}),
+ * percorridas em sequência, para não medir sempre a mesma posição (que ficaria na cache
+ * e daria números irrealistas).
+ *
+ * As posições são colocadas em tabuleiros uma só vez, na preparação: carregar uma posição
+ * recalcula o hash Zobrist e custa mais do que contar peças ou gerar jogadas, por isso
+ * carregá-la em cada operação mediria sobretudo o carregamento. Esse custo tem o seu
+ * próprio benchmark ({@link #carregarPosicao()}).
+ *
+ * Para compilar e correr (resultados em JSON, para comparar entre versões):
+ * <pre>
+ *   mvn -P benchmarks package
+ *   java -jar target/benchmarks.jar -rf json -rff target/jmh-resultados.json
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TabuleiroBenchmark {
+
+    // Número de posições do conjunto (potência de 2, para percorrer com uma máscara)
+    @Param({"1024"})
+    private int numPosicoes;
+
+    private Posicoes posicoes;
+    // Um tabuleiro por posição do conjunto, já carregado
+    private Tabuleiro[] tabuleiros;
+    // Tabuleiro da posição atual
+    private Tabuleiro tabuleiro;
+    // Tabuleiro livre, para carregarPosicao e partidaAleatoria
+    private Tabuleiro trabalho;
+    private int indice;
+    private SplittableRandom aleatorio;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        posicoes = Posicoes.meioJogo(numPosicoes);
+        tabuleiros = new Tabuleiro[numPosicoes];
+        for (int i = 0; i < numPosicoes; i++) {
+            tabuleiros[i] = new Tabuleiro();
+            posicoes.carregar(i, tabuleiros[i]);
+        }
+        trabalho = new Tabuleiro();
+        aleatorio = new SplittableRandom(42);
+    }
+
+    /**
+     * Passa para a posição seguinte do conjunto (o tabuleiro dela já está carregado).
+     */
+    private void proximaPosicao() {
+        indice = (indice + 1) & (numPosicoes - 1);
+        tabuleiro = tabuleiros[indice];
+    }
+
+    /**
+     * Custo de colocar uma posição num tabuleiro (inclui recalcular o hash Zobrist).
+     * Serve de referência: é o que os outros benchmarks pagavam antes em cada operação.
+     */
+    @Benchmark
+    public long carregarPosicao() {
+        indice = (indice + 1) & (numPosicoes - 1);
+        posicoes.carregar(indice, trabalho);
+        return trabalho.getHash();
+    }
+
+    /**
+     * Validação de jogadas casa a casa (como fazia o servidor antes de movimentosValidos):
+     * uma operação corresponde a testar as 64 casas de uma posição.
+     */
+    @Benchmark
+    public int validarJogadas() {
+        proximaPosicao();
+        char cor = tabuleiro.getVez();
+        int validas = 0;
+        for (int linha = 0; linha < 8; linha++)
+            for (int coluna = 0; coluna < 8; coluna++)
+                if (tabuleiro.jogadaValida(linha, coluna, cor)) validas++;
+        return validas;
+    }
+
+    /**
+     * Geração de todas as jogadas válidas de uma posição de uma só vez.
+     */
+    @Benchmark
+    public long gerarJogadas() {
+        proximaPosicao();
+        return tabuleiro.movimentosValidos(tabuleiro.getVez());
+    }
+
+    /**
+     * Geração das jogadas diretamente sobre os bitboards do conjunto, sem tabuleiro:
+     * só a operação primitiva que a pesquisa usa em cada nó.
+     */
+    @Benchmark
+    public long gerarJogadasBitboards() {
+        indice = (indice + 1) & (numPosicoes - 1);
+        long pretas = posicoes.getPretas(indice);
+        long brancas = posicoes.getBrancas(indice);
+        return posicoes.getVez(indice) == 'B'
+                ? Tabuleiro.movimentosValidos(pretas, brancas)
+                : Tabuleiro.movimentosValidos(brancas, pretas);
+    }
+
+    /**
+     * Aplicação (e anulação) de todas as jogadas válidas de uma posição.
+     */
+    @Benchmark
+    public void aplicarJogadas(Blackhole bh) {
+        proximaPosicao();
+        char cor = tabuleiro.getVez();
+        for (long m = tabuleiro.movimentosValidos(cor); m != 0; m &= m - 1) {
+            bh.consume(tabuleiro.jogar(Long.numberOfTrailingZeros(m), cor));
+            tabuleiro.desfazer();
+        }
+    }
+
+    /**
+     * Contagem de peças (como na atualização do marcador do cliente).
+     */
+    @Benchmark
+    public int contarPecas() {
+        proximaPosicao();
+        return tabuleiro.contarPecas('B') - tabuleiro.contarPecas('W');
+    }
+
+    /**
+     * Deteção de fim de jogo (o que o servidor faz depois de cada jogada).
+     */
+    @Benchmark
+    public boolean detetarFimDeJogo() {
+        proximaPosicao();
+        return tabuleiro.tabuleiroCheio() || tabuleiro.jogoTerminado();
+    }
+
+    /**
+     * Uma partida aleatória completa, desde a posição inicial até ao fim.
+     * O resultado em operações por segundo é o número de partidas por segundo.
+     */
+    @Benchmark
+    public int partidaAleatoria() {
+        trabalho.inicializar();
+        int passagensSeguidas = 0;
+        while (passagensSeguidas < 2) {
+            if (Posicoes.jogarAoAcaso(trabalho, aleatorio)) {
+                passagensSeguidas = 0;
+            } else {
+                trabalho.passar();
+                passagensSeguidas++;
+            }
+        }
+        return trabalho.diferencaPecas('B');
+    }
+}
@@ -22,6 +22,10 @@ import javafx.util.Duration;
 import modelo.Tabuleiro;
 import modelo.Casa;
 import modelo.Peca;
+import protocolo.CodecTexto;
+import protocolo.LeitorMensagens;
+import protocolo.Mensagem;
+import protocolo.TipoMensagem;
 
 import java.io.*;
 import java.net.Socket;
@@ -52,9 +56,15 @@ public class InterfaceJogo {
     // Cor do jogador local ('B' para pretas, 'W' para brancas)
     private char minhaCor;
     // Objetos para comunicação com o servidor
-    private Socket socket;
-    private BufferedReader entrada;
-    private PrintWriter saida;
+    // (voláteis: são trocados pela thread de leitura quando volta a ligar ao servidor)
+    private volatile Socket socket;
+    private volatile InputStream entrada;
+    private volatile PrintWriter saida;
+    // Sessão dada pelo servidor (SESSAO) para voltar à partida se a ligação cair; chave 0 = nenhuma
+    private volatile int partidaSessao;
+    private volatile long chaveSessao = 0;
+    // Número da última jogada recebida (para o servidor reenviar só as que faltam)
+    private int ultimaSeq = 0;
     // Indica se é a vez deste jogador
     private boolean meuTurno = false;
 
@@ -79,6 +89,8 @@ public class InterfaceJogo {
     private boolean podeMostrarJogadas = true;
     // Indica se o jogo terminou
     private boolean jogoTerminou = false;
+    // Quantas vezes se tenta voltar a ligar quando a ligação cai a meio da partida
+    private static final int TENTATIVAS_RETOMA = 5;
 
     /**
      * Construtor da interface. Inicializa os componentes principais.
@@ -253,79 +265,25 @@ public class InterfaceJogo {
         new Thread(() -> {
             try {
                 socket = new Socket(ip, porto);
-                entrada = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                entrada = socket.getInputStream();
                 saida = new PrintWriter(socket.getOutputStream(), true);
 
                 // Enviar o nome do jogador ao servidor
                 saida.println(nomeJogador);
 
-                String cor = entrada.readLine();
-                if (cor == null || cor.isEmpty()) {
+                // A cor só chega quando o servidor encontrar um adversário
+                Platform.runLater(this::mostrarJanelaEspera);
+
+                // As mensagens do servidor são lidas com o mesmo código que o servidor usa
+                // (ver CodecTexto): sem criar Strings por cada linha recebida
+                LeitorMensagens leitor = new LeitorMensagens(entrada, CodecTexto.INSTANCIA);
+                Mensagem primeira = new Mensagem();
+                if (!leitor.ler(primeira) || primeira.getTipo() != TipoMensagem.COR) {
                     throw new IOException("Não foi possível obter a cor do servidor.");
                 }
-                minhaCor = cor.charAt(0);
-
-                Platform.runLater(this::mostrarJanelaEspera);
+                minhaCor = primeira.getCor();
 
-                Thread leituraThread = new Thread(() -> {
-                    try {
-                        String msg;
-                        while ((msg = entrada.readLine()) != null) {
-                            if (msg.equals("COMEÇAR")) {
-                                Platform.runLater(this::mostrarJanelaJogo);
-                            } else if (msg.startsWith("JOGADA")) {
-                                String[] partes = msg.split(" ");
-                                if (partes.length >= 4) { // Proteção contra mensagens mal formatadas
-                                    int linha = Integer.parseInt(partes[1]);
-                                    int coluna = Integer.parseInt(partes[2]);
-                                    char corJogada = partes[3].charAt(0);
-                                    tabuleiro.jogar(linha, coluna, corJogada);
-                                    Platform.runLater(this::atualizarTabuleiro);
-                                }
-                            } else if (msg.equals("JOGADA_CONFIRMADA")) {
-                                // Jogada confirmada pelo servidor, nada a fazer (pode usar para feedback)
-                            } else if (msg.equals("JOGADA_INVALIDA")) {
-                                // Jogada inválida, reativa o turno e hitbox
-                                meuTurno = true;
-                                podeMostrarJogadas = true;
-                                Platform.runLater(() -> {
-                                    mostrarAlertaBonito("Jogada inválida", "A jogada não é válida. Tente novamente.", Alert.AlertType.WARNING);
-                                    atualizarTabuleiro();
-                                });
-                            } else if (msg.equals("FIM")) {
-                                pararTemporizador();
-                                Platform.runLater(() -> mostrarPopupVencedor());
-                            } else if (msg.equals("SUA_VEZ")) {
-                                meuTurno = true;
-                                podeMostrarJogadas = true; // Permite mostrar hitbox novamente no novo turno
-                                jogadaLinha = -1;
-                                jogadaColuna = -1;
-                                iniciarTemporizador();
-                                Platform.runLater(this::atualizarTabuleiro);
-                            } else if (msg.startsWith("NOME_ADVERSARIO ")) {
-                                nomeJogadorAdversario = msg.substring("NOME_ADVERSARIO ".length());
-                                Platform.runLater(this::atualizarCabecalhoJogadores);
-                            } else if (msg.startsWith("CHAT ")) {
-                                String chatMsg = msg.substring(5);
-                                Platform.runLater(() -> {
-                                    if (!chatMsg.startsWith(nomeJogadorLocal + ":")) {
-                                        adicionarMensagemChat(chatMsg);
-                                    }
-                                });
-                            }
-                        }
-                    } catch (IOException e) {
-                        // Só mostra erro se o jogo não terminou normalmente
-                        if (!jogoTerminou) {
-                            Platform.runLater(() -> {
-                                Alert alert = new Alert(Alert.AlertType.ERROR);
-                                alert.setHeaderText("Erro de comunicação com o servidor");
-                                alert.setContentText(e.getMessage());
-                                alert.showAndWait();
-                            });
-                        }
-                    }
-                });
+                Thread leituraThread = new Thread(() -> escutarServidor(leitor, ip, porto));
                 leituraThread.setDaemon(true);
                 leituraThread.start();
 
@@ -340,6 +298,134 @@ public class InterfaceJogo {
         }).start();
     }
 
+    /**
+     * Lê as mensagens do servidor até a ligação acabar. Se a ligação cair a meio de uma
+     * partida, tenta voltar a ligar e retomá-la antes de mostrar o erro.
+     */
+    private void escutarServidor(LeitorMensagens leitor, String ip, int porto) {
+        Mensagem msg = new Mensagem(); // Reutilizada em todas as mensagens
+        while (leitor != null) {
+            try {
+                while (leitor.ler(msg)) {
+                    tratarMensagem(msg);
+                }
+                // O servidor fechou a ligação: só se tenta voltar se a partida não acabou
+                leitor = chaveSessao != 0 ? voltarALigar(ip, porto) : null;
+            } catch (IOException e) {
+                leitor = chaveSessao != 0 ? voltarALigar(ip, porto) : null;
+                // Só mostra erro se o jogo não terminou normalmente e não foi possível voltar
+                if (leitor == null && !jogoTerminou) {
+                    Platform.runLater(() -> {
+                        Alert alert = new Alert(Alert.AlertType.ERROR);
+                        alert.setHeaderText("Erro de comunicação com o servidor");
+                        alert.setContentText(e.getMessage());
+                        alert.showAndWait();
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Trata uma mensagem recebida do servidor (a mensagem é reutilizada a seguir).
+     */
+    private void tratarMensagem(Mensagem msg) {
+        switch (msg.getTipo()) {
+            case COMECAR -> Platform.runLater(this::mostrarJanelaJogo);
+            case SESSAO -> {
+                partidaSessao = msg.getValor();
+                chaveSessao = msg.getChave();
+                ultimaSeq = 0;
+            }
+            case JOGADA -> {
+                // Proteção contra mensagens mal formatadas
+                if (msg.getLinha() >= 0 && msg.getCor() != ' ') {
+                    // Depois de voltar a ligar, uma jogada já recebida pode chegar outra vez
+                    if (msg.getSeq() >= 0) {
+                        if (msg.getSeq() <= ultimaSeq) return;
+                        ultimaSeq = msg.getSeq();
+                    }
+                    tabuleiro.jogar(msg.getLinha(), msg.getColuna(), msg.getCor());
+                    Platform.runLater(this::atualizarTabuleiro);
+                }
+            }
+            case TABULEIRO -> {
+                // Posição completa, enviada quando faltam jogadas demais para as reenviar
+                tabuleiro.definirPosicao(msg.getCasasPretas(), msg.getCasasBrancas(), msg.getCor());
+                ultimaSeq = msg.getSeq();
+                Platform.runLater(this::atualizarTabuleiro);
+            }
+            case JOGADA_CONFIRMADA -> {
+                // Jogada confirmada pelo servidor, nada a fazer (pode usar para feedback)
+            }
+            case JOGADA_INVALIDA -> {
+                // Jogada inválida, reativa o turno e hitbox
+                meuTurno = true;
+                podeMostrarJogadas = true;
+                Platform.runLater(() -> {
+                    mostrarAlertaBonito("Jogada inválida", "A jogada não é válida. Tente novamente.", Alert.AlertType.WARNING);
+                    atualizarTabuleiro();
+                });
+            }
+            case FIM -> {
+                chaveSessao = 0; // A partida acabou: já não há nada para retomar
+                pararTemporizador();
+                Platform.runLater(() -> mostrarPopupVencedor());
+            }
+            case SAIU -> chaveSessao = 0;
+            case SUA_VEZ -> {
+                meuTurno = true;
+                podeMostrarJogadas = true; // Permite mostrar hitbox novamente no novo turno
+                jogadaLinha = -1;
+                jogadaColuna = -1;
+                iniciarTemporizador();
+                Platform.runLater(this::atualizarTabuleiro);
+            }
+            case NOME_ADVERSARIO -> {
+                nomeJogadorAdversario = msg.getTexto();
+                Platform.runLater(this::atualizarCabecalhoJogadores);
+            }
+            case CHAT -> {
+                String chatMsg = msg.getTexto(); // A mensagem é reutilizada: guardar já o texto
+                Platform.runLater(() -> {
+                    if (!chatMsg.startsWith(nomeJogadorLocal + ":")) {
+                        adicionarMensagemChat(chatMsg);
+                    }
+                });
+            }
+            default -> {
+                // Mensagens que o cliente não conhece são ignoradas
+            }
+        }
+    }
+
+    /**
+     * Tenta voltar a ligar ao servidor e retomar a partida (mensagem RETOMAR), esperando um
+     * pouco mais entre cada tentativa. Devolve o leitor da nova ligação, ou null se não
+     * conseguiu.
+     */
+    private LeitorMensagens voltarALigar(String ip, int porto) {
+        for (int tentativa = 1; tentativa <= TENTATIVAS_RETOMA && chaveSessao != 0; tentativa++) {
+            try {
+                Thread.sleep(1000L * tentativa);
+                Socket novo = new Socket(ip, porto);
+                fecharSocket();
+                socket = novo;
+                entrada = novo.getInputStream();
+                saida = new PrintWriter(novo.getOutputStream(), true);
+                saida.println(Mensagem.de(TipoMensagem.RETOMAR).setValor(partidaSessao)
+                        .setChave(chaveSessao).setSeq(ultimaSeq));
+                return new LeitorMensagens(entrada, CodecTexto.INSTANCIA);
+            } catch (IOException e) {
+                // O servidor ainda não responde: tenta outra vez
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
     /**
      * Mostra a janela principal do jogo, com o tabuleiro, chat e botões.
      * Organiza todos os elementos visuais e define as ações dos botões.
@@ -544,6 +630,7 @@ public class InterfaceJogo {
         });
 
         sairBtn.setOnAction(e -> {
+            chaveSessao = 0; // Sai de propósito: não voltar a ligar
             try {
                 if (saida != null) {
                     saida.println("SAIR");
@@ -729,6 +816,7 @@ public class InterfaceJogo {
         ));
 
         fecharBtn.setOnAction(e -> {
+            chaveSessao = 0;
             try {
                 if (saida != null) saida.println("SAIR");
             } catch (Exception ex) {}
@@ -776,6 +864,8 @@ public class InterfaceJogo {
         tabuleiroPane.getChildren().clear();
         double cellSize = getCellSize();
         boolean mostrarPossiveis = meuTurno;
+        // Calcula todas as jogadas possíveis de uma só vez (um bit por casa)
+        long jogadasPossiveis = mostrarPossiveis ? tabuleiro.movimentosValidos(minhaCor) : 0L;
 
         // Efeito de sombra e borda mais suave no tabuleiro
         tabuleiroPane.setStyle(
@@ -811,7 +901,7 @@ public class InterfaceJogo {
                     c.setStroke(Color.web("#8B5C2A"));
                     c.setStrokeWidth(cellSize * 0.09);
                     tabuleiroPane.getChildren().add(c);
-                } else if (mostrarPossiveis && tabuleiro.jogadaValida(linha, coluna, minhaCor)) {
+                } else if (Tabuleiro.contem(jogadasPossiveis, linha, coluna)) {
                     double raioHitbox = cellSize * 0.44;
                     Circle hitbox = new Circle(r.getX() + cellSize / 2, r.getY() + cellSize / 2, raioHitbox);
                     hitbox.setFill(Color.web("#FFD700", 0.33));
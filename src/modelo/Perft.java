@@ -0,0 +1,151 @@
+package modelo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Ferramenta "perft": conta todas as posições finais (folhas) que se alcançam a partir
+ * de uma posição jogando exatamente N jogadas, em todas as combinações possíveis.
+ *
+ * Serve para duas coisas:
+ * - verificar o gerador de jogadas do {@link Tabuleiro}: os números têm de bater certo com
+ *   os valores conhecidos (qualquer erro na geração ou na aplicação de jogadas altera-os);
+ * - medir a velocidade bruta do motor (nós por segundo).
+ *
+ * Regras da contagem: uma passagem de vez (quando quem joga não tem jogadas mas o adversário
+ * tem) conta como uma jogada; uma posição em que o jogo terminou antes da profundidade
+ * pedida conta como uma folha.
+ *
+ * Utilização:
+ * <pre>
+ *   java modelo.Perft &lt;profundidade&gt; [--threads N] [--posicao "&lt;64 casas&gt; &lt;vez&gt;"] [--verificar]
+ * </pre>
+ */
+public class Perft {
+
+    // Valores conhecidos a partir da posição inicial (índice = profundidade)
+    private static final long[] VALORES_CONHECIDOS = {
+            1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L,
+            24571284L, 212258800L, 1939886636L, 18429641748L, 184042084512L
+    };
+
+    /**
+     * Conta as folhas a uma dada profundidade a partir da posição atual do tabuleiro.
+     * O tabuleiro é alterado durante a contagem (com jogar/desfazer), mas fica como estava no fim.
+     */
+    public static long contar(Tabuleiro t, int profundidade) {
+        if (profundidade == 0) return 1;
+        char cor = t.getVez();
+        long movimentos = t.movimentosValidos(cor);
+
+        if (movimentos == 0) {
+            // Sem jogadas: ou o jogo acabou (folha), ou passa a vez
+            if (!t.temJogada(cor == 'B' ? 'W' : 'B')) return 1;
+            if (profundidade == 1) return 1;
+            t.passar();
+            long nos = contar(t, profundidade - 1);
+            t.desfazer();
+            return nos;
+        }
+
+        // No último nível basta contar as jogadas, sem as fazer
+        if (profundidade == 1) return Long.bitCount(movimentos);
+
+        long nos = 0;
+        for (long m = movimentos; m != 0; m &= m - 1) {
+            t.jogar(Long.numberOfTrailingZeros(m), cor);
+            nos += contar(t, profundidade - 1);
+            t.desfazer();
+        }
+        return nos;
+    }
+
+    /**
+     * Igual a {@link #contar(Tabuleiro, int)}, mas reparte as jogadas da raiz por várias threads.
+     * Cada thread trabalha numa cópia do tabuleiro; o tabuleiro original não é alterado.
+     *
+     * @param threads número de threads a usar (1 = sem paralelismo)
+     */
+    public static long contarEmParalelo(Tabuleiro t, int profundidade, int threads) {
+        char cor = t.getVez();
+        long movimentos = t.movimentosValidos(cor);
+        if (threads <= 1 || profundidade < 2 || movimentos == 0) return contar(t, profundidade);
+
+        long pretas = t.getPretas(), brancas = t.getBrancas();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> resultados = new ArrayList<>();
+            for (long m = movimentos; m != 0; m &= m - 1) {
+                int posicao = Long.numberOfTrailingZeros(m);
+                resultados.add(executor.submit(() -> {
+                    Tabuleiro copia = new Tabuleiro();
+                    copia.definirPosicao(pretas, brancas, cor);
+                    copia.jogar(posicao, cor);
+                    return contar(copia, profundidade - 1);
+                }));
+            }
+            long nos = 0;
+            for (Future<Long> f : resultados) nos += f.get();
+            return nos;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Contagem interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro na contagem", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Ponto de entrada da ferramenta de linha de comandos.
+     */
+    public static void main(String[] args) {
+        int profundidade = -1;
+        int threads = 1;
+        String posicao = null;
+        boolean verificar = false;
+
+        // Lê os argumentos
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--posicao" -> posicao = args[++i];
+                case "--verificar" -> verificar = true;
+                default -> profundidade = Integer.parseInt(args[i]);
+            }
+        }
+        if (profundidade < 0) {
+            System.err.println("Uso: java modelo.Perft <profundidade> [--threads N] [--posicao \"<64 casas> <vez>\"] [--verificar]");
+            System.exit(2);
+        }
+        if (verificar && posicao != null) {
+            System.err.println("--verificar só se aplica à posição inicial.");
+            System.exit(2);
+        }
+
+        Tabuleiro t = new Tabuleiro();
+        if (posicao != null) t.definirPosicao(posicao);
+
+        boolean tudoCerto = true;
+        for (int p = 1; p <= profundidade; p++) {
+            long inicio = System.nanoTime();
+            long nos = contarEmParalelo(t, p, threads);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            long nosPorSegundo = segundos > 0 ? (long) (nos / segundos) : 0;
+
+            String estado = "";
+            if (verificar && p < VALORES_CONHECIDOS.length) {
+                boolean certo = nos == VALORES_CONHECIDOS[p];
+                tudoCerto &= certo;
+                estado = certo ? "  OK" : "  ERRO (esperado " + VALORES_CONHECIDOS[p] + ")";
+            }
+            System.out.printf("perft(%d) = %d  em %.3f s  (%d nós/s)%s%n", p, nos, segundos, nosPorSegundo, estado);
+        }
+        if (!tudoCerto) System.exit(1);
+    }
+}
@@ -1,27 +1,70 @@
 package modelo;
 
-import modelo.Casa;
-import modelo.Peca;
+import java.util.Arrays;
 
 /**
  * Esta classe representa o tabuleiro do jogo Reversi.
- * É composta por uma grelha 8x8 de casas, e controla toda a lógica das jogadas.
+ * O estado é guardado em dois números de 64 bits ("bitboards"): um para as peças pretas
+ * e outro para as brancas. Cada bit corresponde a uma casa do tabuleiro 8x8, na posição
+ * {@code linha * 8 + coluna}. Um bit a 1 significa que essa casa tem uma peça dessa cor.
+ *
+ * Os métodos públicos (getPeca, jogadaValida, jogar, contarPecas) continuam a receber
+ * linhas, colunas e cores ('B', 'W'), mas por baixo trabalham apenas com operações de bits.
  */
 public class Tabuleiro {
-    // Matriz 8x8 que representa as casas do tabuleiro
-    private final Casa[][] casas;
+
+    // Máscaras usadas para impedir que, ao deslocar os bits, uma peça "salte" de uma
+    // ponta da linha para a outra (da coluna 7 para a coluna 0 da linha seguinte, por exemplo)
+    private static final long SEM_COLUNA_0 = 0xFEFEFEFEFEFEFEFEL; // Todas as casas exceto a coluna 0
+    private static final long SEM_COLUNA_7 = 0x7F7F7F7F7F7F7F7FL; // Todas as casas exceto a coluna 7
+
+    // Casas fora das colunas 0 e 7. Uma linha de peças capturadas na horizontal ou na diagonal
+    // nunca passa por estas colunas (cada peça capturada tem vizinhas dos dois lados), por
+    // isso basta cortar as peças do adversário nessas colunas para nada "dar a volta".
+    private static final long INTERIOR = SEM_COLUNA_0 & SEM_COLUNA_7;
+
+    // Chaves de Zobrist: um número aleatório de 64 bits para cada (cor, casa).
+    // O "hash" de uma posição é o XOR das chaves de todas as peças, mais CHAVE_VEZ quando
+    // jogam as brancas. As chaves são geradas a partir de uma semente fixa, para que o mesmo
+    // tabuleiro tenha sempre o mesmo hash (entre execuções e entre servidores).
+    private static final long[] CHAVES_PRETAS = new long[64];
+    private static final long[] CHAVES_BRANCAS = new long[64];
+    // CHAVES_PRETAS[i] ^ CHAVES_BRANCAS[i]: o que muda no hash quando a peça da casa i é virada
+    private static final long[] CHAVES_TROCA = new long[64];
+    private static final long CHAVE_VEZ;
+
+    static {
+        for (int i = 0; i < 64; i++) {
+            CHAVES_PRETAS[i] = gerarChave(2 * i);
+            CHAVES_BRANCAS[i] = gerarChave(2 * i + 1);
+            CHAVES_TROCA[i] = CHAVES_PRETAS[i] ^ CHAVES_BRANCAS[i];
+        }
+        CHAVE_VEZ = gerarChave(128);
+    }
+
+    // Bitboard das peças pretas ('B')
+    private long pretas;
+    // Bitboard das peças brancas ('W')
+    private long brancas;
+    // Cor de quem joga a seguir ('B' começa sempre)
+    private char vez;
+    // Hash de Zobrist das peças (sem a vez), atualizado a cada jogada
+    private long hashPecas;
+
+    // Histórico das jogadas, usado para as desfazer sem copiar o tabuleiro.
+    // Para cada jogada guarda-se a casa (PASSAGEM se foi uma passagem de vez),
+    // as peças viradas e de quem era a vez antes da jogada.
+    private static final int PASSAGEM = -1;
+    private int[] historicoPosicoes = new int[64];
+    private long[] historicoViradas = new long[64];
+    private char[] historicoVez = new char[64];
+    private long[] historicoHash = new long[64];
+    private int numJogadas;
 
     /**
-     * Construtor do tabuleiro. Cria uma grelha 8x8 e inicializa o estado inicial do jogo.
+     * Construtor do tabuleiro. Coloca as peças na posição inicial do jogo.
      */
     public Tabuleiro() {
-        casas = new Casa[8][8];
-        // Inicializa todas as casas da grelha
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++)
-                casas[i][j] = new Casa(i, j);
-
-        // Define as peças iniciais no centro do tabuleiro
         inicializar();
     }
 
@@ -31,16 +74,64 @@ public class Tabuleiro {
      * - Coloca as 4 peças centrais (2 brancas e 2 pretas)
      */
     public void inicializar() {
-        // Remove todas as peças do tabuleiro (casas ficam vazias)
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++)
-                casas[i][j].setPeca(null);
+        pretas = bit(3, 4) | bit(4, 3);  // B = Preto
+        brancas = bit(3, 3) | bit(4, 4); // W = Branco
+        vez = 'B';
+        hashPecas = calcularHashPecas(pretas, brancas);
+        numJogadas = 0; // Esquece o histórico do jogo anterior
+    }
 
-        // Coloca as peças iniciais no centro do tabuleiro (posição padrão do Reversi)
-        casas[3][3].setPeca(new Peca('W')); // W = Branco
-        casas[3][4].setPeca(new Peca('B')); // B = Preto
-        casas[4][3].setPeca(new Peca('B'));
-        casas[4][4].setPeca(new Peca('W'));
+    /**
+     * Coloca o tabuleiro numa posição qualquer (por exemplo, lida de um ficheiro ou
+     * recebida de outro servidor). O histórico de jogadas é apagado.
+     *
+     * @param pretas bitboard das peças pretas
+     * @param brancas bitboard das peças brancas (não pode ter casas em comum com as pretas)
+     * @param vez cor de quem joga a seguir ('B' ou 'W')
+     */
+    public void definirPosicao(long pretas, long brancas, char vez) {
+        if ((pretas & brancas) != 0)
+            throw new IllegalArgumentException("Há casas com peças pretas e brancas ao mesmo tempo");
+        this.pretas = pretas;
+        this.brancas = brancas;
+        this.vez = vez;
+        hashPecas = calcularHashPecas(pretas, brancas);
+        numJogadas = 0;
+    }
+
+    /**
+     * Coloca o tabuleiro na posição descrita por um texto com 64 caracteres ('B', 'W' ou '-'),
+     * linha a linha, seguido opcionalmente de um espaço e da cor de quem joga a seguir.
+     * Exemplo (posição inicial): "---------------------------WB------BW--------------------------- B"
+     *
+     * @throws IllegalArgumentException se o texto não estiver no formato esperado
+     */
+    public void definirPosicao(String texto) {
+        texto = texto.trim();
+        if (texto.length() != 64 && !(texto.length() == 66 && texto.charAt(64) == ' '))
+            throw new IllegalArgumentException("Posição inválida: esperados 64 caracteres e a vez");
+        long p = 0, b = 0;
+        for (int i = 0; i < 64; i++) {
+            char c = texto.charAt(i);
+            if (c == 'B') p |= 1L << i;
+            else if (c == 'W') b |= 1L << i;
+            else if (c != '-') throw new IllegalArgumentException("Casa inválida na posição " + i + ": " + c);
+        }
+        char corVez = texto.length() == 66 ? texto.charAt(65) : 'B';
+        if (corVez != 'B' && corVez != 'W') throw new IllegalArgumentException("Vez inválida: " + corVez);
+        definirPosicao(p, b, corVez);
+    }
+
+    /**
+     * Descreve a posição atual no mesmo formato aceite por {@link #definirPosicao(String)}.
+     */
+    public String paraTexto() {
+        StringBuilder sb = new StringBuilder(66);
+        for (int i = 0; i < 64; i++) {
+            long b = 1L << i;
+            sb.append((pretas & b) != 0 ? 'B' : (brancas & b) != 0 ? 'W' : '-');
+        }
+        return sb.append(' ').append(vez).toString();
     }
 
     /**
@@ -48,15 +139,34 @@ public class Tabuleiro {
      * Se não houver peça, devolve '-'.
      */
     public char getPeca(int linha, int coluna) {
-        Peca p = casas[linha][coluna].getPeca();
-        return p == null ? '-' : p.getCor();
+        long b = bit(linha, coluna);
+        if ((pretas & b) != 0) return 'B';
+        if ((brancas & b) != 0) return 'W';
+        return '-';
     }
 
     /**
      * Coloca uma peça de uma cor específica numa dada posição do tabuleiro.
+     * Com a cor '-' a casa fica vazia.
+     * Como isto não é uma jogada, o histórico é esquecido: depois de setPeca já não se
+     * pode desfazer as jogadas anteriores (a posição e o hash deixariam de bater certo).
      */
     public void setPeca(int linha, int coluna, char cor) {
-        casas[linha][coluna].setPeca(new Peca(cor));
+        int posicao = linha * 8 + coluna;
+        long b = 1L << posicao;
+        // Retira do hash a peça que lá estava (se havia) e acrescenta a nova
+        if ((pretas & b) != 0) hashPecas ^= CHAVES_PRETAS[posicao];
+        if ((brancas & b) != 0) hashPecas ^= CHAVES_BRANCAS[posicao];
+        pretas &= ~b;
+        brancas &= ~b;
+        if (cor == 'B') {
+            pretas |= b;
+            hashPecas ^= CHAVES_PRETAS[posicao];
+        } else if (cor == 'W') {
+            brancas |= b;
+            hashPecas ^= CHAVES_BRANCAS[posicao];
+        }
+        numJogadas = 0;
     }
 
     /**
@@ -64,106 +174,460 @@ public class Tabuleiro {
      * Uma jogada é válida se a casa estiver vazia e se for possível capturar peças do adversário.
      */
     public boolean jogadaValida(int linha, int coluna, char cor) {
-        if (!casas[linha][coluna].estaVazia()) return false;
-        return existeCaptura(linha, coluna, cor);
-    }
-
-    /**
-     * Verifica se, ao colocar uma peça na posição dada, é possível capturar peças do adversário.
-     * Esta função percorre todas as direções possíveis à procura de peças do adversário.
-     */
-    private boolean existeCaptura(int linha, int coluna, char cor) {
-        // Direções em que se pode capturar (horizontal, vertical e diagonal)
-        int[] dx = {-1, -1, -1, 0, 0, 1, 1, 1};
-        int[] dy = {-1, 0, 1, -1, 1, -1, 0, 1};
-        char adversario = (cor == 'B') ? 'W' : 'B'; // Define a cor do adversário
-
-        // Percorre todas as 8 direções
-        for (int dir = 0; dir < 8; dir++) {
-            int x = linha + dx[dir], y = coluna + dy[dir];
-            boolean encontrouAdversario = false;
-
-            // Percorre casas na direção atual até sair do tabuleiro ou encontrar fim de jogada
-            while (x >= 0 && x < 8 && y >= 0 && y < 8) {
-                char c = getPeca(x, y);
-                if (c == adversario) {
-                    encontrouAdversario = true;
-                    x += dx[dir];
-                    y += dy[dir];
-                } else if (c == cor) {
-                    // Só é válido se pelo menos uma peça do adversário for capturada
-                    if (encontrouAdversario)
-                        return true;
-                    else
-                        break;
-                } else {
-                    break;
-                }
-            }
-        }
-        return false;
+        return pecasViradas(linha, coluna, cor) != 0;
+    }
+
+    /**
+     * Calcula todas as jogadas válidas de uma cor de uma só vez.
+     * Em vez de testar as 64 casas uma a uma, "espalha" as peças próprias por cima das
+     * peças do adversário em cada direção (deslocando os bits) e fica com as casas vazias
+     * onde essa propagação termina.
+     *
+     * @param cor 'B' ou 'W'
+     * @return bitboard com um bit a 1 em cada casa onde a cor pode jogar
+     */
+    public long movimentosValidos(char cor) {
+        return calcularMovimentos(proprias(cor), adversarias(cor));
+    }
+
+    /**
+     * Verifica se a cor indicada tem pelo menos uma jogada válida.
+     */
+    public boolean temJogada(char cor) {
+        return movimentosValidos(cor) != 0;
+    }
+
+    /**
+     * Verifica se o jogo terminou, ou seja, se nenhum dos jogadores tem jogadas válidas.
+     */
+    public boolean jogoTerminado() {
+        return calcularMovimentos(pretas, brancas) == 0 && calcularMovimentos(brancas, pretas) == 0;
+    }
+
+    /**
+     * Verifica se uma casa está marcada num bitboard (por exemplo, no resultado de movimentosValidos).
+     */
+    public static boolean contem(long bitboard, int linha, int coluna) {
+        return (bitboard & bit(linha, coluna)) != 0;
     }
 
     /**
      * Executa uma jogada válida no tabuleiro.
      * Coloca a peça e vira as peças do adversário capturadas.
+     * Se a jogada não for válida, o tabuleiro fica como estava.
+     *
+     * @return bitboard com as peças que foram viradas (0 se a jogada não era válida)
      */
-    public void jogar(int linha, int coluna, char cor) {
-        if (!jogadaValida(linha, coluna, cor)) return;
-        casas[linha][coluna].setPeca(new Peca(cor)); // Coloca a peça
-        virarPecas(linha, coluna, cor); // Vira as peças do adversário
-    }
-
-    /**
-     * Vira as peças do adversário que foram capturadas numa jogada.
-     * Esta função percorre todas as direções e altera as peças capturadas.
-     */
-    private void virarPecas(int linha, int coluna, char cor) {
-        int[] dx = {-1, -1, -1, 0, 0, 1, 1, 1};
-        int[] dy = {-1, 0, 1, -1, 1, -1, 0, 1};
-        char adversario = (cor == 'B') ? 'W' : 'B';
-
-        // Percorre todas as 8 direções
-        for (int dir = 0; dir < 8; dir++) {
-            int x = linha + dx[dir], y = coluna + dy[dir];
-            boolean encontrouAdversario = false;
-            int passos = 0; // Conta quantas peças do adversário foram encontradas
-
-            // Vai percorrendo enquanto estiver dentro dos limites
-            while (x >= 0 && x < 8 && y >= 0 && y < 8) {
-                char c = getPeca(x, y);
-                if (c == adversario) {
-                    encontrouAdversario = true;
-                    x += dx[dir];
-                    y += dy[dir];
-                    passos++;
-                } else if (c == cor) {
-                    if (encontrouAdversario) {
-                        // Vira todas as peças do adversário que estavam entre as peças do jogador
-                        int vx = linha + dx[dir], vy = coluna + dy[dir];
-                        for (int i = 0; i < passos; i++) {
-                            casas[vx][vy].setPeca(new Peca(cor));
-                            vx += dx[dir];
-                            vy += dy[dir];
-                        }
-                    }
-                    break;
-                } else {
-                    break;
-                }
+    public long jogar(int linha, int coluna, char cor) {
+        if (!dentroDoTabuleiro(linha, coluna)) return 0;
+        return jogar(linha * 8 + coluna, cor);
+    }
+
+    /**
+     * Executa uma jogada indicada pelo índice da casa (linha * 8 + coluna, de 0 a 63).
+     * Não cria nenhum objeto: a validação e as capturas são calculadas numa só passagem
+     * e o resultado é devolvido como bitboard, para que quem chama possa usá-lo
+     * (para animar as peças viradas, desfazer a jogada, etc.) sem comparar tabuleiros.
+     *
+     * @param posicao índice da casa (0 a 63)
+     * @param cor 'B' ou 'W'
+     * @return bitboard com as peças que foram viradas (0 se a jogada não era válida, se a
+     *         casa está fora do tabuleiro ou se a cor não é 'B' nem 'W')
+     */
+    public long jogar(int posicao, char cor) {
+        // 1L << 64 voltaria à casa 0: uma casa fora do tabuleiro tem de ser recusada antes
+        if (posicao < 0 || posicao > 63 || (cor != 'B' && cor != 'W')) return 0;
+        long b = 1L << posicao;
+        if (((pretas | brancas) & b) != 0) return 0;
+
+        long viradas = calcularViradas(b, proprias(cor), adversarias(cor));
+        if (viradas == 0) return 0; // Não captura nada: jogada inválida
+
+        // Coloca a peça e troca a cor das peças capturadas (basta mudar os bits de um lado para o outro)
+        if (cor == 'B') {
+            pretas |= b | viradas;
+            brancas &= ~viradas;
+        } else {
+            brancas |= b | viradas;
+            pretas &= ~viradas;
+        }
+        registarHistorico(posicao, viradas);
+
+        // Atualiza o hash: a peça nova entra e cada peça virada troca de cor
+        hashPecas ^= (cor == 'B') ? CHAVES_PRETAS[posicao] : CHAVES_BRANCAS[posicao];
+        for (long v = viradas; v != 0; v &= v - 1) {
+            hashPecas ^= CHAVES_TROCA[Long.numberOfTrailingZeros(v)];
+        }
+
+        vez = (cor == 'B') ? 'W' : 'B';
+        return viradas;
+    }
+
+    /**
+     * Passa a vez ao adversário sem colocar nenhuma peça.
+     * Fica registado no histórico, para que também possa ser desfeito.
+     */
+    public void passar() {
+        registarHistorico(PASSAGEM, 0);
+        vez = (vez == 'B') ? 'W' : 'B';
+    }
+
+    /**
+     * Desfaz a última jogada (ou passagem de vez), repondo o tabuleiro exatamente como estava.
+     * Usa as peças viradas guardadas no histórico, por isso não é preciso copiar o tabuleiro
+     * antes de cada jogada (útil para procurar jogadas "em árvore" num único tabuleiro).
+     *
+     * @return true se desfez alguma coisa, false se não havia jogadas para desfazer
+     */
+    public boolean desfazer() {
+        if (numJogadas == 0) return false;
+        numJogadas--;
+        int posicao = historicoPosicoes[numJogadas];
+        long viradas = historicoViradas[numJogadas];
+        char corJogada = historicoVez[numJogadas];
+        hashPecas = historicoHash[numJogadas];
+
+        if (posicao != PASSAGEM) {
+            long b = 1L << posicao;
+            // Retira a peça colocada e devolve as peças viradas ao adversário
+            if (pretasJogaram(posicao)) {
+                pretas &= ~(b | viradas);
+                brancas |= viradas;
+            } else {
+                brancas &= ~(b | viradas);
+                pretas |= viradas;
             }
         }
+        vez = corJogada;
+        return true;
+    }
+
+    /**
+     * Devolve a cor de quem joga a seguir ('B' ou 'W').
+     */
+    public char getVez() {
+        return vez;
+    }
+
+    /**
+     * Devolve o hash de Zobrist da posição atual (peças e vez de jogar).
+     * É mantido a cada jogada, por isso obtê-lo não custa nada; serve para guardar
+     * resultados de análise em cache e reconhecer posições repetidas.
+     */
+    public long getHash() {
+        return vez == 'W' ? hashPecas ^ CHAVE_VEZ : hashPecas;
+    }
+
+    /**
+     * Calcula de raiz o hash de Zobrist de uma posição qualquer (dá o mesmo valor que getHash).
+     *
+     * @param pretas bitboard das peças pretas
+     * @param brancas bitboard das peças brancas
+     * @param vez cor de quem joga a seguir
+     */
+    public static long calcularHash(long pretas, long brancas, char vez) {
+        long hash = calcularHashPecas(pretas, brancas);
+        return vez == 'W' ? hash ^ CHAVE_VEZ : hash;
+    }
+
+    /**
+     * Devolve o número de jogadas (incluindo passagens) que podem ser desfeitas.
+     */
+    public int getNumeroJogadas() {
+        return numJogadas;
+    }
+
+    /**
+     * Devolve a casa da jogada n do histórico (0 = a primeira), como linha*8+coluna,
+     * ou -1 se foi uma passagem de vez.
+     */
+    public int getJogada(int n) {
+        if (n < 0 || n >= numJogadas) throw new IndexOutOfBoundsException("Jogada " + n + " não existe");
+        return historicoPosicoes[n];
+    }
+
+    /**
+     * Devolve as peças que seriam viradas ao jogar na casa indicada, sem alterar o tabuleiro.
+     *
+     * @return bitboard com as peças capturadas (0 se a jogada não é válida)
+     */
+    public long pecasViradas(int linha, int coluna, char cor) {
+        if (!dentroDoTabuleiro(linha, coluna)) return 0;
+        long b = bit(linha, coluna);
+        if (((pretas | brancas) & b) != 0) return 0;
+        return calcularViradas(b, proprias(cor), adversarias(cor));
+    }
+
+    /**
+     * Peças que seriam viradas ao jogar na casa indicada, a partir só dos bitboards (sem
+     * tabuleiro). Serve a quem pesquisa muitas posições seguidas sem as pôr num tabuleiro
+     * (por exemplo, o solucionador do fim do jogo). A casa tem de estar vazia.
+     *
+     * @param posicao índice da casa (0 a 63)
+     * @param proprias peças de quem joga
+     * @param adversarias peças do adversário
+     * @return bitboard com as peças capturadas (0 se a jogada não é válida)
+     */
+    public static long pecasViradas(int posicao, long proprias, long adversarias) {
+        return calcularViradas(1L << posicao, proprias, adversarias);
+    }
+
+    /**
+     * Jogadas válidas para quem tem as peças "proprias", a partir só dos bitboards.
+     */
+    public static long movimentosValidos(long proprias, long adversarias) {
+        return calcularMovimentos(proprias, adversarias);
+    }
+
+    /**
+     * Quadrante (4x4) de uma casa, numerado como os bits de {@link #paridadeQuadrantes()}.
+     */
+    public static int quadrante(int posicao) {
+        return (posicao >> 4 & 2) | (posicao >> 2 & 1);
     }
 
+    // Quadrantes do tabuleiro (4x4 casas cada), usados para calcular a paridade por região
+    private static final long QUADRANTE_NO = 0x000000000F0F0F0FL;
+    private static final long QUADRANTE_NE = 0x00000000F0F0F0F0L;
+    private static final long QUADRANTE_SO = 0x0F0F0F0F00000000L;
+    private static final long QUADRANTE_SE = 0xF0F0F0F000000000L;
+
     /**
-     * Conta o número de peças de uma determinada cor no tabuleiro.
+     * Conta o número de peças de uma determinada cor no tabuleiro ('-' conta as casas vazias).
+     * Como as peças estão guardadas em bitboards, a contagem é uma única instrução
+     * (Long.bitCount), que se mantém sempre atualizada sem ser preciso percorrer as casas.
      */
     public int contarPecas(char cor) {
-        int cont = 0;
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++)
-                if (getPeca(i, j) == cor)
-                    cont++;
-        return cont;
+        if (cor == 'B') return Long.bitCount(pretas);
+        if (cor == 'W') return Long.bitCount(brancas);
+        return contarVazias();
+    }
+
+    /**
+     * Devolve o bitboard das casas vazias.
+     */
+    public long getVazias() {
+        return ~(pretas | brancas);
+    }
+
+    /**
+     * Conta as casas vazias.
+     */
+    public int contarVazias() {
+        return 64 - Long.bitCount(pretas | brancas);
+    }
+
+    /**
+     * Verifica se já não há casas vazias.
+     */
+    public boolean tabuleiroCheio() {
+        return (pretas | brancas) == -1L;
+    }
+
+    /**
+     * Diferença de peças do ponto de vista de uma cor (as suas peças menos as do adversário).
+     */
+    public int diferencaPecas(char cor) {
+        int diferenca = Long.bitCount(pretas) - Long.bitCount(brancas);
+        return cor == 'B' ? diferenca : -diferenca;
+    }
+
+    /**
+     * Diz em que quadrantes (4x4) do tabuleiro há um número ímpar de casas vazias.
+     * Bit 0: noroeste, bit 1: nordeste, bit 2: sudoeste, bit 3: sudeste.
+     * No final do jogo, jogar primeiro nas regiões ímpares costuma ser vantajoso (paridade).
+     */
+    public int paridadeQuadrantes() {
+        return paridadeQuadrantes(getVazias());
+    }
+
+    /**
+     * Como {@link #paridadeQuadrantes()}, para um bitboard de casas vazias qualquer.
+     */
+    public static int paridadeQuadrantes(long vazias) {
+        return (Long.bitCount(vazias & QUADRANTE_NO) & 1)
+                | (Long.bitCount(vazias & QUADRANTE_NE) & 1) << 1
+                | (Long.bitCount(vazias & QUADRANTE_SO) & 1) << 2
+                | (Long.bitCount(vazias & QUADRANTE_SE) & 1) << 3;
+    }
+
+    /**
+     * Devolve o bitboard das peças pretas (um bit por casa, índice linha * 8 + coluna).
+     */
+    public long getPretas() {
+        return pretas;
+    }
+
+    /**
+     * Devolve o bitboard das peças brancas (um bit por casa, índice linha * 8 + coluna).
+     */
+    public long getBrancas() {
+        return brancas;
+    }
+
+    /**
+     * Calcula as peças do adversário que seriam viradas ao jogar na casa indicada.
+     * Para cada direção, avança enquanto encontrar peças do adversário; se a sequência
+     * terminar numa peça própria, essas peças são capturadas.
+     *
+     * As 8 direções são deslocamentos fixos de bits (1 horizontal, 8 vertical, 7 e 9
+     * diagonais, para um lado e para o outro), sem ciclos nem tabelas: esta é a operação
+     * mais repetida do motor e do solucionador do fim do jogo.
+     *
+     * @param jogada bit da casa onde se joga
+     * @param proprias bitboard das peças de quem joga
+     * @param adversarias bitboard das peças do adversário
+     * @return bitboard com as peças capturadas (0 se a jogada não captura nada)
+     */
+    private static long calcularViradas(long jogada, long proprias, long adversarias) {
+        long interiores = adversarias & INTERIOR;
+        return viradasParaCima(jogada, proprias, interiores, 1)
+                | viradasParaBaixo(jogada, proprias, interiores, 1)
+                | viradasParaCima(jogada, proprias, adversarias, 8)
+                | viradasParaBaixo(jogada, proprias, adversarias, 8)
+                | viradasParaCima(jogada, proprias, interiores, 7)
+                | viradasParaBaixo(jogada, proprias, interiores, 7)
+                | viradasParaCima(jogada, proprias, interiores, 9)
+                | viradasParaBaixo(jogada, proprias, interiores, 9);
+    }
+
+    /**
+     * Peças viradas numa direção que aumenta o índice das casas (deslocamento d para a esquerda
+     * nos bits). Junta as peças do adversário seguidas (no máximo 6); só são viradas se a seguir
+     * houver uma peça própria.
+     */
+    private static long viradasParaCima(long jogada, long proprias, long adversarias, int d) {
+        long x = (jogada << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        return ((x << d) & proprias) != 0 ? x : 0;
+    }
+
+    /**
+     * Como {@link #viradasParaCima}, na direção que diminui o índice das casas.
+     */
+    private static long viradasParaBaixo(long jogada, long proprias, long adversarias, int d) {
+        long x = (jogada >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        return ((x >>> d) & proprias) != 0 ? x : 0;
+    }
+
+    /**
+     * Gera as jogadas válidas para quem tem as peças "proprias".
+     * Em cada direção, parte das peças próprias e acumula as peças do adversário que
+     * estão em linha (no máximo 6 seguidas); a casa vazia a seguir é uma jogada válida.
+     */
+    private static long calcularMovimentos(long proprias, long adversarias) {
+        long vazias = ~(proprias | adversarias);
+        long interiores = adversarias & INTERIOR;
+        return movimentosParaCima(proprias, interiores, vazias, 1)
+                | movimentosParaBaixo(proprias, interiores, vazias, 1)
+                | movimentosParaCima(proprias, adversarias, vazias, 8)
+                | movimentosParaBaixo(proprias, adversarias, vazias, 8)
+                | movimentosParaCima(proprias, interiores, vazias, 7)
+                | movimentosParaBaixo(proprias, interiores, vazias, 7)
+                | movimentosParaCima(proprias, interiores, vazias, 9)
+                | movimentosParaBaixo(proprias, interiores, vazias, 9);
+    }
+
+    private static long movimentosParaCima(long proprias, long adversarias, long vazias, int d) {
+        long x = (proprias << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        x |= (x << d) & adversarias;
+        return (x << d) & vazias;
+    }
+
+    private static long movimentosParaBaixo(long proprias, long adversarias, long vazias, int d) {
+        long x = (proprias >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        x |= (x >>> d) & adversarias;
+        return (x >>> d) & vazias;
+    }
+
+    /**
+     * Guarda uma jogada no histórico, aumentando os vetores quando ficam cheios
+     * (só acontece raramente, com muitas passagens de vez seguidas).
+     */
+    private void registarHistorico(int posicao, long viradas) {
+        if (numJogadas == historicoPosicoes.length) {
+            int novoTamanho = numJogadas * 2;
+            historicoPosicoes = Arrays.copyOf(historicoPosicoes, novoTamanho);
+            historicoViradas = Arrays.copyOf(historicoViradas, novoTamanho);
+            historicoVez = Arrays.copyOf(historicoVez, novoTamanho);
+            historicoHash = Arrays.copyOf(historicoHash, novoTamanho);
+        }
+        historicoPosicoes[numJogadas] = posicao;
+        historicoViradas[numJogadas] = viradas;
+        historicoVez[numJogadas] = vez;
+        historicoHash[numJogadas] = hashPecas;
+        numJogadas++;
+    }
+
+    /**
+     * Soma (com XOR) as chaves de Zobrist de todas as peças.
+     */
+    private static long calcularHashPecas(long pretas, long brancas) {
+        long hash = 0;
+        for (long p = pretas; p != 0; p &= p - 1) hash ^= CHAVES_PRETAS[Long.numberOfTrailingZeros(p)];
+        for (long w = brancas; w != 0; w &= w - 1) hash ^= CHAVES_BRANCAS[Long.numberOfTrailingZeros(w)];
+        return hash;
+    }
+
+    /**
+     * Gera a n-ésima chave de Zobrist com o algoritmo SplitMix64 (semente fixa).
+     */
+    private static long gerarChave(int n) {
+        long z = 0x5245564552534931L + (n + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Depois de uma jogada na casa indicada, diz se a peça lá colocada é preta.
+     */
+    private boolean pretasJogaram(int posicao) {
+        return (pretas & (1L << posicao)) != 0;
+    }
+
+    /**
+     * Verifica se a linha e a coluna estão dentro do tabuleiro (0 a 7).
+     */
+    private static boolean dentroDoTabuleiro(int linha, int coluna) {
+        return linha >= 0 && linha < 8 && coluna >= 0 && coluna < 8;
+    }
+
+    /**
+     * Devolve o bit correspondente a uma casa.
+     */
+    private static long bit(int linha, int coluna) {
+        return 1L << (linha * 8 + coluna);
+    }
+
+    /**
+     * Devolve o bitboard das peças da cor indicada.
+     */
+    private long proprias(char cor) {
+        return cor == 'B' ? pretas : brancas;
+    }
+
+    /**
+     * Devolve o bitboard das peças do adversário da cor indicada.
+     */
+    private long adversarias(char cor) {
+        return cor == 'B' ? brancas : pretas;
     }
 }
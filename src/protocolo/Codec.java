@@ -0,0 +1,33 @@
+package protocolo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Forma de transformar mensagens em bytes e bytes em mensagens (um protocolo).
+ * Há dois: {@link CodecTexto} (uma linha por mensagem, o original) e {@link CodecBinario}.
+ */
+public interface Codec {
+
+    /**
+     * Resultado de tentar ler uma mensagem de um buffer.
+     */
+    enum Resultado {
+        /** Foi lida uma mensagem completa. */
+        MENSAGEM,
+        /** Ainda não chegaram bytes suficientes; o buffer fica como estava. */
+        INCOMPLETA,
+        /** Os bytes não formam uma mensagem válida; a ligação deve ser fechada. */
+        INVALIDA
+    }
+
+    /**
+     * Tenta ler uma mensagem a partir da posição atual do buffer. Se conseguir, preenche
+     * {@code destino} e avança a posição do buffer para depois da mensagem.
+     */
+    Resultado descodificar(ByteBuffer origem, Mensagem destino);
+
+    /**
+     * Transforma uma mensagem nos bytes a enviar.
+     */
+    byte[] codificar(Mensagem mensagem);
+}
@@ -0,0 +1,198 @@
+package protocolo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Protocolo binário compacto, pensado para bots e espectadores.
+ *
+ * O cliente pede este protocolo enviando, antes de tudo, os bytes {@link #MAGIA} e
+ * {@link #VERSAO}; a seguir envia a mensagem APRESENTACAO (com o nome), ou ASSISTIR,
+ * já em binário.
+ * O byte mágico nunca aparece no início de uma linha de texto UTF-8, por isso o servidor
+ * distingue os dois protocolos pelo primeiro byte recebido.
+ *
+ * Cada mensagem começa com um byte com o código do tipo ({@link TipoMensagem#getCodigo()}),
+ * seguido dos dados desse tipo:
+ * <pre>
+ *   JOGADA                      1 byte: bits 0-5 posição (linha*8+coluna), bit 6 brancas, bit 7 tem cor;
+ *                               com cor (só do servidor), mais 2 bytes com o número de sequência
+ *   COR                         1 byte: 'B' ou 'W'
+ *   TEMPO                       2 bytes: segundos
+ *   FIM                         2 bytes: peças pretas, peças brancas (255 = desconhecido)
+ *   ASSISTIR                    4 bytes: número da partida (0 = a mais recente)
+ *   TABULEIRO                   19 bytes: casas pretas (8), casas brancas (8), quem joga ('B' ou 'W'), seq (2)
+ *   SESSAO                      12 bytes: número da partida (4), chave (8)
+ *   RETOMAR                     14 bytes: número da partida (4), chave (8), seq (2)
+ *   APRESENTACAO, NOME_ADVERSARIO, CHAT
+ *                               2 bytes com o tamanho, seguidos do texto em UTF-8
+ *   restantes                   nada
+ * </pre>
+ * Os números de sequência usam 2 bytes, e 0xFFFF quer dizer "sem número".
+ * Uma jogada ocupa assim 4 bytes, em vez dos 16 de "JOGADA 3 4 B 17\n".
+ */
+public class CodecBinario implements Codec {
+
+    public static final CodecBinario INSTANCIA = new CodecBinario();
+
+    // Primeiros bytes enviados por um cliente que quer o protocolo binário
+    public static final byte MAGIA = (byte) 0xB1;
+    public static final byte VERSAO = 2; // A versão 2 acrescentou os números de sequência
+
+    // Tamanho máximo de um texto (nome, chat)
+    public static final int TAMANHO_MAXIMO_TEXTO = 4096;
+
+    private static final int TEM_COR = 0x80;
+    private static final int BRANCAS = 0x40;
+    private static final int SEM_VALOR = 0xFF;
+    private static final int SEM_SEQ = 0xFFFF;
+
+    /**
+     * Bytes que o cliente envia logo ao ligar-se para pedir este protocolo.
+     */
+    public static byte[] cabecalho() {
+        return new byte[] {MAGIA, VERSAO};
+    }
+
+    @Override
+    public Resultado descodificar(ByteBuffer origem, Mensagem m) {
+        if (!origem.hasRemaining()) return Resultado.INCOMPLETA;
+        int inicio = origem.position();
+        TipoMensagem tipo = TipoMensagem.deCodigo(origem.get(inicio));
+        if (tipo == null) return Resultado.INVALIDA;
+
+        int dados = origem.remaining() - 1;
+        switch (tipo) {
+            case JOGADA -> {
+                if (dados < 1) return Resultado.INCOMPLETA;
+                int b = origem.get(inicio + 1) & 0xFF;
+                int posicao = b & 0x3F;
+                if ((b & TEM_COR) != 0 && dados < 3) return Resultado.INCOMPLETA;
+                m.definir(tipo).setLinha(posicao >> 3).setColuna(posicao & 7);
+                if ((b & TEM_COR) != 0) {
+                    m.setCor((b & BRANCAS) != 0 ? 'W' : 'B').setSeq(seq(origem, inicio + 2));
+                    origem.position(inicio + 4);
+                } else {
+                    origem.position(inicio + 2);
+                }
+            }
+            case COR -> {
+                if (dados < 1) return Resultado.INCOMPLETA;
+                char cor = (char) origem.get(inicio + 1);
+                if (cor != 'B' && cor != 'W') return Resultado.INVALIDA;
+                m.definir(tipo).setCor(cor);
+                origem.position(inicio + 2);
+            }
+            case TEMPO -> {
+                if (dados < 2) return Resultado.INCOMPLETA;
+                m.definir(tipo).setValor(origem.getShort(inicio + 1) & 0xFFFF);
+                origem.position(inicio + 3);
+            }
+            case FIM -> {
+                if (dados < 2) return Resultado.INCOMPLETA;
+                m.definir(tipo).setPecas(valor(origem.get(inicio + 1)), valor(origem.get(inicio + 2)));
+                origem.position(inicio + 3);
+            }
+            case ASSISTIR -> {
+                if (dados < 4) return Resultado.INCOMPLETA;
+                int partida = origem.getInt(inicio + 1);
+                if (partida < 0) return Resultado.INVALIDA;
+                m.definir(tipo).setValor(partida);
+                origem.position(inicio + 5);
+            }
+            case TABULEIRO -> {
+                if (dados < 19) return Resultado.INCOMPLETA;
+                long pretas = origem.getLong(inicio + 1);
+                long brancas = origem.getLong(inicio + 9);
+                char vez = (char) origem.get(inicio + 17);
+                if ((pretas & brancas) != 0 || (vez != 'B' && vez != 'W')) return Resultado.INVALIDA;
+                m.definir(tipo).setCasas(pretas, brancas).setCor(vez).setSeq(seq(origem, inicio + 18));
+                origem.position(inicio + 20);
+            }
+            case SESSAO, RETOMAR -> {
+                int tamanho = tipo == TipoMensagem.RETOMAR ? 14 : 12;
+                if (dados < tamanho) return Resultado.INCOMPLETA;
+                int partida = origem.getInt(inicio + 1);
+                if (partida < 0) return Resultado.INVALIDA;
+                m.definir(tipo).setValor(partida).setChave(origem.getLong(inicio + 5));
+                if (tipo == TipoMensagem.RETOMAR) m.setSeq(seq(origem, inicio + 13));
+                origem.position(inicio + 1 + tamanho);
+            }
+            case APRESENTACAO, NOME_ADVERSARIO, CHAT -> {
+                if (dados < 2) return Resultado.INCOMPLETA;
+                int tamanho = origem.getShort(inicio + 1) & 0xFFFF;
+                if (tamanho > TAMANHO_MAXIMO_TEXTO) return Resultado.INVALIDA;
+                if (dados < 2 + tamanho) return Resultado.INCOMPLETA;
+                m.definir(tipo).copiarTexto(origem, inicio + 3, tamanho);
+                origem.position(inicio + 3 + tamanho);
+            }
+            default -> {
+                m.definir(tipo);
+                origem.position(inicio + 1);
+            }
+        }
+        return Resultado.MENSAGEM;
+    }
+
+    private static int seq(ByteBuffer origem, int posicao) {
+        int v = origem.getShort(posicao) & 0xFFFF;
+        return v == SEM_SEQ ? -1 : v;
+    }
+
+    private static int valor(byte b) {
+        int v = b & 0xFF;
+        return v == SEM_VALOR ? -1 : v;
+    }
+
+    @Override
+    public byte[] codificar(Mensagem m) {
+        byte codigo = m.getTipo().getCodigo();
+        return switch (m.getTipo()) {
+            case JOGADA -> {
+                int b = (m.getLinha() * 8 + m.getColuna()) & 0x3F;
+                if (m.getCor() == ' ') yield new byte[] {codigo, (byte) b};
+                b |= TEM_COR | (m.getCor() == 'W' ? BRANCAS : 0);
+                int seq = m.getSeq() < 0 ? SEM_SEQ : m.getSeq();
+                yield new byte[] {codigo, (byte) b, (byte) (seq >> 8), (byte) seq};
+            }
+            case COR -> new byte[] {codigo, (byte) m.getCor()};
+            case TEMPO -> new byte[] {codigo, (byte) (m.getValor() >> 8), (byte) m.getValor()};
+            case FIM -> new byte[] {codigo,
+                    (byte) (m.getPecasPretas() < 0 ? SEM_VALOR : m.getPecasPretas()),
+                    (byte) (m.getPecasBrancas() < 0 ? SEM_VALOR : m.getPecasBrancas())};
+            case ASSISTIR -> {
+                int partida = Math.max(0, m.getValor());
+                yield new byte[] {codigo, (byte) (partida >> 24), (byte) (partida >> 16), (byte) (partida >> 8), (byte) partida};
+            }
+            case TABULEIRO -> {
+                ByteBuffer b = ByteBuffer.allocate(20);
+                b.put(codigo).putLong(m.getCasasPretas()).putLong(m.getCasasBrancas()).put((byte) m.getCor())
+                        .putShort((short) (m.getSeq() < 0 ? SEM_SEQ : m.getSeq()));
+                yield b.array();
+            }
+            case SESSAO, RETOMAR -> {
+                ByteBuffer b = ByteBuffer.allocate(m.getTipo() == TipoMensagem.RETOMAR ? 15 : 13);
+                b.put(codigo).putInt(Math.max(0, m.getValor())).putLong(m.getChave());
+                if (m.getTipo() == TipoMensagem.RETOMAR) b.putShort((short) (m.getSeq() < 0 ? SEM_SEQ : m.getSeq()));
+                yield b.array();
+            }
+            case APRESENTACAO, NOME_ADVERSARIO, CHAT -> {
+                byte[] texto = m.getBytesTexto();
+                int tamanho = m.getTamanhoTexto();
+                if (tamanho > TAMANHO_MAXIMO_TEXTO) {
+                    // Corta antes de um carácter inteiro: os bytes 10xxxxxx continuam um carácter
+                    // começado atrás e não podem ficar separados do início
+                    tamanho = TAMANHO_MAXIMO_TEXTO;
+                    while (tamanho > 0 && (texto[tamanho] & 0xC0) == 0x80) tamanho--;
+                }
+                byte[] b = new byte[3 + tamanho];
+                b[0] = codigo;
+                b[1] = (byte) (tamanho >> 8);
+                b[2] = (byte) tamanho;
+                System.arraycopy(texto, 0, b, 3, tamanho);
+                yield b;
+            }
+            case DESCONHECIDA -> new byte[0]; // Não há forma de a enviar em binário
+            default -> new byte[] {codigo};
+        };
+    }
+}
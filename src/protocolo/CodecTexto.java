@@ -0,0 +1,412 @@
+package protocolo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocolo de texto original: cada mensagem é uma linha terminada em '\n', por exemplo
+ * "JOGADA 3 4 B". É o protocolo usado pelo cliente gráfico e por qualquer cliente que
+ * não peça o protocolo binário. É usado tanto pelo servidor como pelo cliente.
+ *
+ * A leitura trabalha diretamente sobre os bytes recebidos: compara as palavras byte a
+ * byte e lê os números algarismo a algarismo, sem criar Strings nem arrays por cada
+ * mensagem e sem usar exceções. Uma linha que não se percebe é entregue como
+ * DESCONHECIDA (e ignorada por quem a recebe); só uma linha maior do que
+ * {@link #TAMANHO_MAXIMO_LINHA} é INVALIDA.
+ *
+ * A primeira linha enviada pelo cliente é o seu nome, ou um pedido para assistir a uma
+ * partida (ver {@link #descodificarApresentacao}).
+ */
+public class CodecTexto implements Codec {
+
+    public static final CodecTexto INSTANCIA = new CodecTexto();
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    // Tamanho máximo de uma linha; linhas maiores são inválidas
+    public static final int TAMANHO_MAXIMO_LINHA = 8192;
+
+    // Palavras de cada tipo, já em bytes, para comparar sem criar Strings
+    private static final byte[][] PALAVRAS = new byte[TipoMensagem.values().length][];
+
+    static {
+        for (TipoMensagem t : TipoMensagem.values()) {
+            if (t.getPalavra() != null) PALAVRAS[t.ordinal()] = t.getPalavra().getBytes(CHARSET);
+        }
+    }
+
+    @Override
+    public Resultado descodificar(ByteBuffer origem, Mensagem destino) {
+        int fimLinha = procurarFimDeLinha(origem);
+        if (fimLinha < 0) return semLinha(origem);
+        interpretar(origem, origem.position(), semRetorno(origem, fimLinha), destino);
+        origem.position(fimLinha + 1);
+        return Resultado.MENSAGEM;
+    }
+
+    /**
+     * Lê a primeira linha do cliente, que é o nome do jogador (mensagem APRESENTACAO).
+     * As exceções são uma linha "ASSISTIR [partida]", que pede para assistir a uma partida
+     * em vez de jogar, e uma linha "RETOMAR ...", de quem volta a uma partida.
+     */
+    public Resultado descodificarApresentacao(ByteBuffer origem, Mensagem destino) {
+        int fimLinha = procurarFimDeLinha(origem);
+        if (fimLinha < 0) return semLinha(origem);
+        int inicio = origem.position();
+        int fim = semRetorno(origem, fimLinha);
+        if (!(comeca(origem, inicio, fim, TipoMensagem.ASSISTIR) && interpretarAssistir(origem, inicio, fim, destino))
+                && !(comeca(origem, inicio, fim, TipoMensagem.RETOMAR) && interpretarSessao(origem, inicio, fim, TipoMensagem.RETOMAR, destino))) {
+            destino.definir(TipoMensagem.APRESENTACAO).copiarTexto(origem, inicio, fim - inicio);
+        }
+        origem.position(fimLinha + 1);
+        return Resultado.MENSAGEM;
+    }
+
+    /**
+     * Posição do '\n' que termina a linha atual, ou -1 se ainda não chegou.
+     */
+    private static int procurarFimDeLinha(ByteBuffer origem) {
+        for (int i = origem.position(); i < origem.limit(); i++) {
+            if (origem.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static Resultado semLinha(ByteBuffer origem) {
+        return origem.remaining() >= TAMANHO_MAXIMO_LINHA ? Resultado.INVALIDA : Resultado.INCOMPLETA;
+    }
+
+    /**
+     * Fim do conteúdo da linha, sem o '\r' de quem envia "\r\n".
+     */
+    private static int semRetorno(ByteBuffer origem, int fimLinha) {
+        return (fimLinha > origem.position() && origem.get(fimLinha - 1) == '\r') ? fimLinha - 1 : fimLinha;
+    }
+
+    /**
+     * Separa a linha que ocupa as posições [inicio, fim) do buffer nos campos da mensagem.
+     */
+    private static void interpretar(ByteBuffer b, int inicio, int fim, Mensagem m) {
+        int tamanho = fim - inicio;
+        if (tamanho == 1 && (b.get(inicio) == 'B' || b.get(inicio) == 'W')) {
+            m.definir(TipoMensagem.COR).setCor((char) b.get(inicio));
+
+        } else if (igual(b, inicio, fim, TipoMensagem.JOGADA_CONFIRMADA)) {
+            m.definir(TipoMensagem.JOGADA_CONFIRMADA);
+        } else if (igual(b, inicio, fim, TipoMensagem.JOGADA_INVALIDA)) {
+            m.definir(TipoMensagem.JOGADA_INVALIDA);
+        } else if (comeca(b, inicio, fim, TipoMensagem.JOGADA)) {
+            interpretarJogada(b, inicio + PALAVRAS[TipoMensagem.JOGADA.ordinal()].length, fim, m);
+
+        } else if (comTexto(b, inicio, fim, TipoMensagem.CHAT, m)
+                || comTexto(b, inicio, fim, TipoMensagem.NOME_ADVERSARIO, m)) {
+            // Já preenchida
+
+        } else if (igual(b, inicio, fim, TipoMensagem.TEMPO_ESGOTADO)) {
+            m.definir(TipoMensagem.TEMPO_ESGOTADO);
+        } else if (comeca(b, inicio, fim, TipoMensagem.TEMPO)) {
+            int p = inicio + PALAVRAS[TipoMensagem.TEMPO.ordinal()].length;
+            long valor = p < fim && b.get(p) == ' ' ? lerNumero(b, p + 1, fim) : -1;
+            if (valor >= 0 && fimDoNumero(b, p + 1, fim) == fim) m.definir(TipoMensagem.TEMPO).setValor((int) valor);
+            else desconhecida(b, inicio, fim, m);
+
+        } else if (comeca(b, inicio, fim, TipoMensagem.ASSISTIR)) {
+            if (!interpretarAssistir(b, inicio, fim, m)) desconhecida(b, inicio, fim, m);
+        } else if (comeca(b, inicio, fim, TipoMensagem.TABULEIRO)) {
+            if (!interpretarTabuleiro(b, inicio, fim, m)) desconhecida(b, inicio, fim, m);
+        } else if (comeca(b, inicio, fim, TipoMensagem.SESSAO)) {
+            if (!interpretarSessao(b, inicio, fim, TipoMensagem.SESSAO, m)) desconhecida(b, inicio, fim, m);
+        } else if (comeca(b, inicio, fim, TipoMensagem.RETOMAR)) {
+            if (!interpretarSessao(b, inicio, fim, TipoMensagem.RETOMAR, m)) desconhecida(b, inicio, fim, m);
+
+        } else if (comeca(b, inicio, fim, TipoMensagem.SAIR)) {
+            m.definir(TipoMensagem.SAIR); // Como no protocolo original, basta começar por SAIR
+        } else if (igual(b, inicio, fim, TipoMensagem.COMECAR)) {
+            m.definir(TipoMensagem.COMECAR);
+        } else if (igual(b, inicio, fim, TipoMensagem.SUA_VEZ)) {
+            m.definir(TipoMensagem.SUA_VEZ);
+        } else if (igual(b, inicio, fim, TipoMensagem.FIM)) {
+            m.definir(TipoMensagem.FIM);
+        } else if (igual(b, inicio, fim, TipoMensagem.SAIU)) {
+            m.definir(TipoMensagem.SAIU);
+        } else if (igual(b, inicio, fim, TipoMensagem.DESFORRA)) {
+            m.definir(TipoMensagem.DESFORRA);
+        } else {
+            desconhecida(b, inicio, fim, m);
+        }
+    }
+
+    /**
+     * Lê " linha coluna [cor [seq]]" a partir de p. Uma jogada mal escrita fica com linha e
+     * coluna -1, para quem a recebe a recusar como qualquer outra jogada inválida.
+     */
+    private static void interpretarJogada(ByteBuffer b, int p, int fim, Mensagem m) {
+        m.definir(TipoMensagem.JOGADA);
+        if (p >= fim || b.get(p) != ' ') return;
+        long linha = lerNumero(b, p + 1, fim);
+        p = fimDoNumero(b, p + 1, fim);
+        if (linha < 0 || p >= fim || b.get(p) != ' ') return;
+        long coluna = lerNumero(b, p + 1, fim);
+        p = fimDoNumero(b, p + 1, fim);
+        if (coluna < 0) return;
+        char cor = ' ';
+        long seq = -1;
+        if (p < fim) {
+            // Depois da coluna só pode vir " B" ou " W", e depois o número de sequência
+            if (p + 2 > fim || b.get(p) != ' ' || (b.get(p + 1) != 'B' && b.get(p + 1) != 'W')) return;
+            cor = (char) b.get(p + 1);
+            p += 2;
+            if (p < fim) {
+                seq = b.get(p) == ' ' ? lerNumero(b, p + 1, fim) : -1;
+                if (seq < 0 || fimDoNumero(b, p + 1, fim) != fim) return;
+            }
+        }
+        m.setLinha((int) linha).setColuna((int) coluna).setCor(cor).setSeq((int) seq);
+    }
+
+    /**
+     * "ASSISTIR" ou "ASSISTIR partida". Devolve false se a linha não tiver este formato.
+     */
+    private static boolean interpretarAssistir(ByteBuffer b, int inicio, int fim, Mensagem m) {
+        int p = inicio + PALAVRAS[TipoMensagem.ASSISTIR.ordinal()].length;
+        long partida = 0;
+        if (p < fim) {
+            partida = b.get(p) == ' ' ? lerNumero(b, p + 1, fim) : -1;
+            if (partida < 0 || fimDoNumero(b, p + 1, fim) != fim) return false;
+        }
+        m.definir(TipoMensagem.ASSISTIR).setValor((int) partida);
+        return true;
+    }
+
+    /**
+     * "TABULEIRO casas vez [seq]": 64 caracteres ('B', 'W' ou '-'), linha a linha, e a cor
+     * de quem joga a seguir (o mesmo formato de {@code Tabuleiro.paraTexto()}), seguidos
+     * do número da última jogada incluída.
+     */
+    private static boolean interpretarTabuleiro(ByteBuffer b, int inicio, int fim, Mensagem m) {
+        int p = inicio + PALAVRAS[TipoMensagem.TABULEIRO.ordinal()].length;
+        if (fim - p < 1 + 64 + 2 || b.get(p) != ' ' || b.get(p + 65) != ' ') return false;
+        long seq = -1;
+        if (fim - p > 1 + 64 + 2) {
+            seq = b.get(p + 67) == ' ' ? lerNumero(b, p + 68, fim) : -1;
+            if (seq < 0 || fimDoNumero(b, p + 68, fim) != fim) return false;
+        }
+        long pretas = 0, brancas = 0;
+        for (int i = 0; i < 64; i++) {
+            byte c = b.get(p + 1 + i);
+            if (c == 'B') pretas |= 1L << i;
+            else if (c == 'W') brancas |= 1L << i;
+            else if (c != '-') return false;
+        }
+        byte vez = b.get(p + 66);
+        if (vez != 'B' && vez != 'W') return false;
+        m.definir(TipoMensagem.TABULEIRO).setCasas(pretas, brancas).setCor((char) vez).setSeq((int) seq);
+        return true;
+    }
+
+    /**
+     * "SESSAO partida chave" ou "RETOMAR partida chave seq", com a chave em 16 algarismos
+     * hexadecimais.
+     */
+    private static boolean interpretarSessao(ByteBuffer b, int inicio, int fim, TipoMensagem tipo, Mensagem m) {
+        int p = inicio + PALAVRAS[tipo.ordinal()].length;
+        long partida = p < fim && b.get(p) == ' ' ? lerNumero(b, p + 1, fim) : -1;
+        p = fimDoNumero(b, p + 1, fim);
+        if (partida < 0 || p + 1 + 16 > fim || b.get(p) != ' ') return false;
+        long chave = 0;
+        for (int i = p + 1; i < p + 17; i++) {
+            int d = Character.digit(b.get(i), 16);
+            if (d < 0) return false;
+            chave = (chave << 4) | d;
+        }
+        p += 17;
+        long seq = -1;
+        if (tipo == TipoMensagem.RETOMAR) {
+            seq = p < fim && b.get(p) == ' ' ? lerNumero(b, p + 1, fim) : -1;
+            if (seq < 0) return false;
+            p = fimDoNumero(b, p + 1, fim);
+        }
+        if (p != fim) return false;
+        m.definir(tipo).setValor((int) partida).setChave(chave).setSeq((int) seq);
+        return true;
+    }
+
+    /**
+     * Lê um número sem sinal (no máximo 9 algarismos) a começar em p, ou devolve -1.
+     */
+    private static long lerNumero(ByteBuffer b, int p, int fim) {
+        int q = fimDoNumero(b, p, fim);
+        if (q == p || q - p > 9) return -1;
+        long valor = 0;
+        for (int i = p; i < q; i++) valor = valor * 10 + (b.get(i) - '0');
+        return valor;
+    }
+
+    private static int fimDoNumero(ByteBuffer b, int p, int fim) {
+        while (p < fim && b.get(p) >= '0' && b.get(p) <= '9') p++;
+        return p;
+    }
+
+    private static boolean igual(ByteBuffer b, int inicio, int fim, TipoMensagem tipo) {
+        return fim - inicio == PALAVRAS[tipo.ordinal()].length && comeca(b, inicio, fim, tipo);
+    }
+
+    private static boolean comeca(ByteBuffer b, int inicio, int fim, TipoMensagem tipo) {
+        byte[] palavra = PALAVRAS[tipo.ordinal()];
+        if (fim - inicio < palavra.length) return false;
+        for (int i = 0; i < palavra.length; i++) {
+            if (b.get(inicio + i) != palavra[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mensagens "PALAVRA texto": se a linha for deste tipo, preenche a mensagem com o texto.
+     */
+    private static boolean comTexto(ByteBuffer b, int inicio, int fim, TipoMensagem tipo, Mensagem m) {
+        int p = inicio + PALAVRAS[tipo.ordinal()].length;
+        if (!comeca(b, inicio, fim, tipo) || p >= fim || b.get(p) != ' ') return false;
+        m.definir(tipo).copiarTexto(b, p + 1, fim - p - 1);
+        return true;
+    }
+
+    private static void desconhecida(ByteBuffer b, int inicio, int fim, Mensagem m) {
+        m.definir(TipoMensagem.DESCONHECIDA).copiarTexto(b, inicio, fim - inicio);
+    }
+
+    @Override
+    public byte[] codificar(Mensagem m) {
+        TipoMensagem tipo = m.getTipo();
+        byte[] palavra = PALAVRAS[tipo.ordinal()];
+        byte[] b;
+        int p = 0;
+        switch (tipo) {
+            case COR -> {
+                b = new byte[2];
+                b[p++] = (byte) m.getCor();
+            }
+            case JOGADA -> {
+                boolean comCor = m.getCor() != ' ';
+                boolean comSeq = comCor && m.getSeq() >= 0;
+                b = new byte[palavra.length + 1 + algarismos(m.getLinha()) + 1 + algarismos(m.getColuna())
+                        + (comCor ? 2 : 0) + (comSeq ? 1 + algarismos(m.getSeq()) : 0) + 1];
+                p = copiar(palavra, b, p);
+                b[p++] = ' ';
+                p = escreverNumero(m.getLinha(), b, p);
+                b[p++] = ' ';
+                p = escreverNumero(m.getColuna(), b, p);
+                if (comCor) {
+                    b[p++] = ' ';
+                    b[p++] = (byte) m.getCor();
+                }
+                if (comSeq) {
+                    b[p++] = ' ';
+                    p = escreverNumero(m.getSeq(), b, p);
+                }
+            }
+            case TEMPO -> {
+                b = new byte[palavra.length + 1 + algarismos(m.getValor()) + 1];
+                p = copiar(palavra, b, p);
+                b[p++] = ' ';
+                p = escreverNumero(m.getValor(), b, p);
+            }
+            case ASSISTIR -> {
+                boolean comPartida = m.getValor() > 0;
+                b = new byte[palavra.length + (comPartida ? 1 + algarismos(m.getValor()) : 0) + 1];
+                p = copiar(palavra, b, p);
+                if (comPartida) {
+                    b[p++] = ' ';
+                    p = escreverNumero(m.getValor(), b, p);
+                }
+            }
+            case TABULEIRO -> {
+                boolean comSeq = m.getSeq() >= 0;
+                b = new byte[palavra.length + 1 + 64 + 2 + (comSeq ? 1 + algarismos(m.getSeq()) : 0) + 1];
+                p = copiar(palavra, b, p);
+                b[p++] = ' ';
+                for (int i = 0; i < 64; i++) {
+                    long casa = 1L << i;
+                    b[p++] = (byte) ((m.getCasasPretas() & casa) != 0 ? 'B' : (m.getCasasBrancas() & casa) != 0 ? 'W' : '-');
+                }
+                b[p++] = ' ';
+                b[p++] = (byte) m.getCor();
+                if (comSeq) {
+                    b[p++] = ' ';
+                    p = escreverNumero(m.getSeq(), b, p);
+                }
+            }
+            case SESSAO, RETOMAR -> {
+                boolean comSeq = tipo == TipoMensagem.RETOMAR;
+                b = new byte[palavra.length + 1 + algarismos(m.getValor()) + 1 + 16
+                        + (comSeq ? 1 + algarismos(m.getSeq()) : 0) + 1];
+                p = copiar(palavra, b, p);
+                b[p++] = ' ';
+                p = escreverNumero(m.getValor(), b, p);
+                b[p++] = ' ';
+                for (int i = 60; i >= 0; i -= 4) b[p++] = (byte) Character.forDigit((int) (m.getChave() >>> i) & 0xF, 16);
+                if (comSeq) {
+                    b[p++] = ' ';
+                    p = escreverNumero(m.getSeq(), b, p);
+                }
+            }
+            case APRESENTACAO, NOME_ADVERSARIO, CHAT, DESCONHECIDA -> {
+                // Texto tal como está; nas mensagens com palavra, "PALAVRA texto"
+                int prefixo = palavra == null ? 0 : palavra.length + 1;
+                b = new byte[prefixo + m.getTamanhoTexto() + 1];
+                if (palavra != null) {
+                    p = copiar(palavra, b, p);
+                    b[p++] = ' ';
+                }
+                System.arraycopy(m.getBytesTexto(), 0, b, p, m.getTamanhoTexto());
+                p += m.getTamanhoTexto();
+            }
+            default -> {
+                b = new byte[palavra.length + 1];
+                p = copiar(palavra, b, p);
+            }
+        }
+        b[p] = '\n';
+        return b;
+    }
+
+    private static int copiar(byte[] origem, byte[] destino, int p) {
+        System.arraycopy(origem, 0, destino, p, origem.length);
+        return p + origem.length;
+    }
+
+    /**
+     * Quantos caracteres ocupa um número escrito em algarismos (com o sinal, se tiver).
+     */
+    private static int algarismos(int valor) {
+        long v = Math.abs((long) valor);
+        int n = valor < 0 ? 2 : 1;
+        while (v >= 10) {
+            v /= 10;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Escreve um número inteiro em algarismos e devolve a posição seguinte.
+     */
+    private static int escreverNumero(int valor, byte[] b, int p) {
+        long v = valor;
+        if (v < 0) {
+            b[p++] = '-';
+            v = -v;
+        }
+        int inicio = p;
+        do {
+            b[p++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        // Os algarismos ficaram ao contrário
+        for (int i = inicio, k = p - 1; i < k; i++, k--) {
+            byte t = b[i];
+            b[i] = b[k];
+            b[k] = t;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,46 @@
+package protocolo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Lê mensagens de uma entrada bloqueante (o socket do cliente, ou do servidor nos modos
+ * com threads), guardando os bytes num buffer próprio que é reutilizado.
+ */
+public class LeitorMensagens {
+
+    // Tamanho do buffer (uma mensagem maior do que isto é inválida)
+    private static final int TAMANHO_BUFFER = 8192;
+
+    private final InputStream entrada;
+    private final Codec codec;
+    private final ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+
+    public LeitorMensagens(InputStream entrada, Codec codec) {
+        this.entrada = entrada;
+        this.codec = codec;
+        buffer.flip(); // Começa vazio, pronto a ser lido
+    }
+
+    /**
+     * Espera pela próxima mensagem e preenche {@code destino} com ela.
+     *
+     * @return false se a ligação terminou ou chegou algo que não é uma mensagem válida
+     */
+    public boolean ler(Mensagem destino) throws IOException {
+        while (true) {
+            Codec.Resultado r = codec.descodificar(buffer, destino);
+            if (r == Codec.Resultado.MENSAGEM) return true;
+            if (r == Codec.Resultado.INVALIDA) return false;
+
+            // Mensagem incompleta: junta mais bytes a seguir aos que já cá estão
+            buffer.compact();
+            if (!buffer.hasRemaining()) return false; // Não cabe no buffer
+            int lidos = entrada.read(buffer.array(), buffer.position(), buffer.remaining());
+            if (lidos > 0) buffer.position(buffer.position() + lidos);
+            buffer.flip();
+            if (lidos < 0) return false;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package protocolo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Uma mensagem do protocolo, já separada nos seus campos.
+ *
+ * É um objeto mutável: quem lê mensagens pode usar sempre o mesmo objeto e os
+ * descodificadores limitam-se a preencher os campos, sem criar objetos novos por cada
+ * mensagem. Por isso quem recebe uma mensagem não a deve guardar depois de a tratar
+ * (deve copiar o que precisar).
+ *
+ * O texto (nome, chat) é guardado em bytes UTF-8 num array reutilizado; a String só é
+ * criada se alguém a pedir com {@link #getTexto()}. Assim, reencaminhar uma mensagem de
+ * chat não obriga a descodificar e voltar a codificar o texto.
+ *
+ * Campos usados por cada tipo:
+ * <ul>
+ *   <li>JOGADA: linha, coluna e cor (a cor só vem do servidor; do cliente é ' '); do servidor
+ *       vem também seq, o número de sequência da jogada na partida (1, 2, 3, ...)</li>
+ *   <li>COR: cor</li>
+ *   <li>TEMPO: valor (segundos)</li>
+ *   <li>FIM: pecasPretas e pecasBrancas (só no protocolo binário; no de texto ficam a -1)</li>
+ *   <li>APRESENTACAO, NOME_ADVERSARIO, CHAT: texto</li>
+ *   <li>ASSISTIR: valor (número da partida; 0 = a mais recente)</li>
+ *   <li>TABULEIRO: casasPretas e casasBrancas (bitboards, casa linha*8+coluna), cor (quem joga)
+ *       e seq (número da última jogada incluída na posição)</li>
+ *   <li>SESSAO: valor (número da partida) e chave (segredo para a retomar)</li>
+ *   <li>RETOMAR: valor (número da partida), chave e seq (última jogada que o cliente recebeu)</li>
+ * </ul>
+ */
+public class Mensagem {
+
+    private TipoMensagem tipo = TipoMensagem.DESCONHECIDA;
+    private int linha = -1;
+    private int coluna = -1;
+    private char cor = ' ';
+    private int valor = -1;
+    private int pecasPretas = -1;
+    private int pecasBrancas = -1;
+    private long casasPretas = 0;
+    private long casasBrancas = 0;
+    private int seq = -1;
+    private long chave = 0;
+    // Texto da mensagem: em String, em bytes UTF-8, ou nos dois (um deles pode estar por calcular)
+    private String texto = "";
+    private byte[] bytesTexto = new byte[64];
+    private int tamanhoTexto = 0;
+    private boolean bytesValidos = true;
+
+    /**
+     * Limpa todos os campos e define o tipo. Devolve a própria mensagem.
+     */
+    public Mensagem definir(TipoMensagem tipo) {
+        this.tipo = tipo;
+        linha = coluna = valor = pecasPretas = pecasBrancas = -1;
+        casasPretas = casasBrancas = chave = 0;
+        seq = -1;
+        cor = ' ';
+        texto = "";
+        tamanhoTexto = 0;
+        bytesValidos = true;
+        return this;
+    }
+
+    // --- Construção das mensagens mais comuns ---
+
+    public static Mensagem de(TipoMensagem tipo) {
+        return new Mensagem().definir(tipo);
+    }
+
+    public static Mensagem jogada(int linha, int coluna, char cor) {
+        Mensagem m = de(TipoMensagem.JOGADA);
+        m.linha = linha;
+        m.coluna = coluna;
+        m.cor = cor;
+        return m;
+    }
+
+    public static Mensagem cor(char cor) {
+        Mensagem m = de(TipoMensagem.COR);
+        m.cor = cor;
+        return m;
+    }
+
+    public static Mensagem tempo(int segundos) {
+        Mensagem m = de(TipoMensagem.TEMPO);
+        m.valor = segundos;
+        return m;
+    }
+
+    public static Mensagem fim(int pecasPretas, int pecasBrancas) {
+        Mensagem m = de(TipoMensagem.FIM);
+        m.pecasPretas = pecasPretas;
+        m.pecasBrancas = pecasBrancas;
+        return m;
+    }
+
+    public static Mensagem tabuleiro(long pretas, long brancas, char vez) {
+        return de(TipoMensagem.TABULEIRO).setCasas(pretas, brancas).setCor(vez);
+    }
+
+    public static Mensagem comTexto(TipoMensagem tipo, String texto) {
+        return de(tipo).setTexto(texto);
+    }
+
+    // --- Acesso aos campos ---
+
+    public TipoMensagem getTipo() {
+        return tipo;
+    }
+
+    public int getLinha() {
+        return linha;
+    }
+
+    public int getColuna() {
+        return coluna;
+    }
+
+    public char getCor() {
+        return cor;
+    }
+
+    public int getValor() {
+        return valor;
+    }
+
+    public int getPecasPretas() {
+        return pecasPretas;
+    }
+
+    public int getPecasBrancas() {
+        return pecasBrancas;
+    }
+
+    public long getCasasPretas() {
+        return casasPretas;
+    }
+
+    public long getCasasBrancas() {
+        return casasBrancas;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public long getChave() {
+        return chave;
+    }
+
+    public String getTexto() {
+        if (texto == null) texto = new String(bytesTexto, 0, tamanhoTexto, StandardCharsets.UTF_8);
+        return texto;
+    }
+
+    /**
+     * Bytes UTF-8 do texto (só os primeiros {@link #getTamanhoTexto()} são válidos).
+     * O array pertence à mensagem e não deve ser alterado.
+     */
+    public byte[] getBytesTexto() {
+        if (!bytesValidos) {
+            byte[] b = texto.getBytes(StandardCharsets.UTF_8);
+            garantirCapacidade(b.length);
+            System.arraycopy(b, 0, bytesTexto, 0, b.length);
+            tamanhoTexto = b.length;
+            bytesValidos = true;
+        }
+        return bytesTexto;
+    }
+
+    /**
+     * Tamanho do texto em bytes UTF-8.
+     */
+    public int getTamanhoTexto() {
+        getBytesTexto();
+        return tamanhoTexto;
+    }
+
+    public Mensagem setLinha(int linha) {
+        this.linha = linha;
+        return this;
+    }
+
+    public Mensagem setColuna(int coluna) {
+        this.coluna = coluna;
+        return this;
+    }
+
+    public Mensagem setCor(char cor) {
+        this.cor = cor;
+        return this;
+    }
+
+    public Mensagem setValor(int valor) {
+        this.valor = valor;
+        return this;
+    }
+
+    public Mensagem setPecas(int pretas, int brancas) {
+        this.pecasPretas = pretas;
+        this.pecasBrancas = brancas;
+        return this;
+    }
+
+    public Mensagem setCasas(long pretas, long brancas) {
+        this.casasPretas = pretas;
+        this.casasBrancas = brancas;
+        return this;
+    }
+
+    public Mensagem setSeq(int seq) {
+        this.seq = seq;
+        return this;
+    }
+
+    public Mensagem setChave(long chave) {
+        this.chave = chave;
+        return this;
+    }
+
+    public Mensagem setTexto(String texto) {
+        this.texto = texto;
+        this.bytesValidos = false;
+        return this;
+    }
+
+    /**
+     * Define o texto a partir de bytes UTF-8 de um buffer (posições absolutas, a posição do
+     * buffer não muda). Os bytes são copiados para o array da mensagem, que só cresce
+     * quando aparece um texto maior do que todos os anteriores.
+     */
+    public Mensagem copiarTexto(ByteBuffer origem, int inicio, int tamanho) {
+        garantirCapacidade(tamanho);
+        origem.get(inicio, bytesTexto, 0, tamanho);
+        tamanhoTexto = tamanho;
+        bytesValidos = true;
+        texto = null;
+        return this;
+    }
+
+    private void garantirCapacidade(int tamanho) {
+        if (bytesTexto.length < tamanho) bytesTexto = new byte[Math.max(tamanho, bytesTexto.length * 2)];
+    }
+
+    @Override
+    public String toString() {
+        return new String(CodecTexto.INSTANCIA.codificar(this), CodecTexto.CHARSET).trim();
+    }
+}
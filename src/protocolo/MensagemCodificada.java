@@ -0,0 +1,43 @@
+package protocolo;
+
+/**
+ * Uma mensagem já codificada nos dois protocolos, pronta a ser enviada a muitas ligações.
+ *
+ * Quando a mesma mensagem vai para muitos clientes (por exemplo, uma jogada enviada aos
+ * jogadores e a milhares de espectadores), é codificada uma só vez por protocolo e todas
+ * as ligações partilham os mesmos bytes, em vez de cada uma criar os seus.
+ *
+ * É imutável: os arrays devolvidos por {@link #getBytes} são partilhados e nunca podem
+ * ser alterados.
+ */
+public final class MensagemCodificada {
+
+    private final TipoMensagem tipo;
+    private final byte[] texto;
+    private final byte[] binario;
+
+    private MensagemCodificada(TipoMensagem tipo, byte[] texto, byte[] binario) {
+        this.tipo = tipo;
+        this.texto = texto;
+        this.binario = binario;
+    }
+
+    /**
+     * Codifica a mensagem nos dois protocolos. A mensagem pode ser reutilizada a seguir.
+     */
+    public static MensagemCodificada de(Mensagem m) {
+        return new MensagemCodificada(m.getTipo(), CodecTexto.INSTANCIA.codificar(m),
+                CodecBinario.INSTANCIA.codificar(m));
+    }
+
+    public TipoMensagem getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Bytes da mensagem no protocolo indicado (partilhados: não alterar).
+     */
+    public byte[] getBytes(Codec codec) {
+        return codec == CodecBinario.INSTANCIA ? binario : texto;
+    }
+}
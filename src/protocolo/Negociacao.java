@@ -0,0 +1,59 @@
+package protocolo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lê as mensagens de uma ligação do lado do servidor, escolhendo o protocolo pelos
+ * primeiros bytes que o cliente envia: o byte {@link CodecBinario#MAGIA} pede o protocolo
+ * binário; qualquer outra coisa é o início do nome, no protocolo de texto.
+ *
+ * Cada ligação tem a sua negociação, e a primeira mensagem entregue é sempre a
+ * APRESENTACAO (o nome do jogador) ou, em vez dela, ASSISTIR (para quem só quer ver) ou
+ * RETOMAR (para quem volta a uma partida depois de a ligação cair).
+ */
+public class Negociacao implements Codec {
+
+    private volatile Codec codec; // null enquanto não chegou nenhum byte (lido por quem envia)
+    private boolean apresentado;  // Já foi lida a APRESENTACAO
+
+    @Override
+    public Codec.Resultado descodificar(ByteBuffer origem, Mensagem destino) {
+        if (codec == null) {
+            if (!origem.hasRemaining()) return Codec.Resultado.INCOMPLETA;
+            if (origem.get(origem.position()) == CodecBinario.MAGIA) {
+                if (origem.remaining() < 2) return Codec.Resultado.INCOMPLETA;
+                origem.get();
+                if (origem.get() != CodecBinario.VERSAO) return Codec.Resultado.INVALIDA;
+                codec = CodecBinario.INSTANCIA;
+            } else {
+                codec = CodecTexto.INSTANCIA;
+            }
+        }
+
+        if (apresentado) return codec.descodificar(origem, destino);
+
+        Codec.Resultado r = codec == CodecTexto.INSTANCIA
+                ? CodecTexto.INSTANCIA.descodificarApresentacao(origem, destino)
+                : codec.descodificar(origem, destino);
+        if (r == Codec.Resultado.MENSAGEM) {
+            // Em binário, a primeira mensagem tem de ser mesmo a apresentação (ou ASSISTIR, RETOMAR)
+            TipoMensagem tipo = destino.getTipo();
+            if (tipo != TipoMensagem.APRESENTACAO && tipo != TipoMensagem.ASSISTIR && tipo != TipoMensagem.RETOMAR)
+                return Codec.Resultado.INVALIDA;
+            apresentado = true;
+        }
+        return r;
+    }
+
+    @Override
+    public byte[] codificar(Mensagem mensagem) {
+        return getCodec().codificar(mensagem);
+    }
+
+    /**
+     * Protocolo usado para enviar mensagens a este cliente (texto até se saber).
+     */
+    public Codec getCodec() {
+        return codec == null ? CodecTexto.INSTANCIA : codec;
+    }
+}
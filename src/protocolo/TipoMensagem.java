@@ -0,0 +1,77 @@
+package protocolo;
+
+/**
+ * Tipos de mensagem trocados entre o cliente e o servidor.
+ *
+ * Cada tipo tem a palavra usada no protocolo de texto e o código (um byte) usado no
+ * protocolo binário. Os códigos nunca devem mudar, senão clientes antigos deixam de
+ * perceber o servidor.
+ */
+public enum TipoMensagem {
+
+    // Cliente -> servidor
+    APRESENTACAO(null, 0x01),        // Primeira mensagem: o nome do jogador
+    TEMPO_ESGOTADO("TEMPO_ESGOTADO", 0x02),
+    SAIR("SAIR", 0x03),
+    DESFORRA("DESFORRA", 0x04),
+    ASSISTIR("ASSISTIR", 0x05),      // Em vez do nome: assistir à partida indicada (0 = a mais recente)
+    RETOMAR("RETOMAR", 0x06),        // Em vez do nome: voltar a uma partida depois de a ligação cair
+
+    // Servidor -> cliente
+    COR(null, 0x10),                 // "B" ou "W", sozinho na linha
+    NOME_ADVERSARIO("NOME_ADVERSARIO", 0x11),
+    COMECAR("COMEÇAR", 0x12),
+    SUA_VEZ("SUA_VEZ", 0x13),
+    TEMPO("TEMPO", 0x14),
+    JOGADA_CONFIRMADA("JOGADA_CONFIRMADA", 0x15),
+    JOGADA_INVALIDA("JOGADA_INVALIDA", 0x16),
+    FIM("FIM", 0x17),
+    SAIU("SAIU", 0x18),
+    TABULEIRO("TABULEIRO", 0x19),    // Posição completa (a quem começa a assistir ou volta a uma partida)
+    SESSAO("SESSAO", 0x1A),          // Número da partida e chave para a poder retomar
+
+    // Nos dois sentidos
+    JOGADA("JOGADA", 0x20),
+    CHAT("CHAT", 0x21),
+
+    // Mensagem recebida que não se percebeu (ignorada por quem a recebe)
+    DESCONHECIDA(null, 0x00);
+
+    private final String palavra;
+    private final byte codigo;
+
+    // Tipo de cada código, para descodificar o protocolo binário sem procurar
+    private static final TipoMensagem[] POR_CODIGO = new TipoMensagem[256];
+
+    static {
+        for (TipoMensagem t : values()) {
+            if (t != DESCONHECIDA) POR_CODIGO[t.codigo & 0xFF] = t;
+        }
+    }
+
+    TipoMensagem(String palavra, int codigo) {
+        this.palavra = palavra;
+        this.codigo = (byte) codigo;
+    }
+
+    /**
+     * Palavra que identifica a mensagem no protocolo de texto (null se não tiver).
+     */
+    public String getPalavra() {
+        return palavra;
+    }
+
+    /**
+     * Código da mensagem no protocolo binário.
+     */
+    public byte getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * Tipo com o código indicado, ou null se o código não existir.
+     */
+    public static TipoMensagem deCodigo(byte codigo) {
+        return POR_CODIGO[codigo & 0xFF];
+    }
+}
@@ -0,0 +1,164 @@
+package servidor;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Distribui o trabalho do motor de jogo ({@link MotorAlfaBeta}) pelas partidas contra o
+ * computador.
+ *
+ * Pesquisar é só cálculo: se cada partida tivesse a sua thread a pensar, centenas de
+ * partidas contra o computador ocupariam todos os processadores e as outras partidas (e a
+ * rede) ficariam lentas. Por isso há um número fixo de threads do motor (por omissão,
+ * metade dos processadores), e os pedidos de jogada esperam numa fila ordenada pelo fim
+ * do turno: quem tem o prazo mais perto é atendido primeiro.
+ *
+ * O tempo de cada pesquisa é o do nível de força, mas nunca mais do que a parte justa do
+ * tempo que sobra até ao fim do turno: com muitos pedidos à espera, cada um pensa menos,
+ * para todos jogarem dentro dos 30 segundos.
+ *
+ * Cada pesquisa pode ainda usar algumas threads extra ({@link PesquisaParalela}), até ao
+ * limite indicado, mas só quando não há mais ninguém à espera na fila: as threads extra
+ * servem para aproveitar processadores parados, nunca para atrasar outras partidas.
+ *
+ * Perto do fim do jogo (quanto mais forte o nível, mais cedo), o computador tenta primeiro
+ * resolver a posição até ao fim com o {@link SolucionadorFinal}, com metade do tempo; se
+ * conseguir, joga a jogada perfeita, senão pesquisa como nas outras jogadas.
+ */
+public class AgendaMotor {
+
+    // Folga deixada antes do fim do turno (a resposta ainda tem de chegar à partida)
+    private static final long MARGEM = TimeUnit.SECONDS.toNanos(2);
+    // Tempo mínimo de uma pesquisa (mesmo com o prazo quase a acabar, joga alguma coisa)
+    private static final long TEMPO_MINIMO = TimeUnit.MILLISECONDS.toNanos(10);
+    // Entradas da tabela de transposição de cada pesquisa (2^18 entradas = 4 MB)
+    private static final int BITS_TABELA = 18;
+
+    private final PriorityBlockingQueue<Pedido> fila = new PriorityBlockingQueue<>();
+    private final int threads;
+    private final int threadsPorPesquisa;
+    // Para desempatar pedidos com o mesmo prazo (pela ordem de chegada)
+    private final AtomicLong contador = new AtomicLong();
+
+    /**
+     * @param threads número de pesquisas ao mesmo tempo
+     * @param threadsPorPesquisa número máximo de threads de cada pesquisa
+     */
+    public AgendaMotor(int threads, int threadsPorPesquisa) {
+        this.threads = threads;
+        this.threadsPorPesquisa = threadsPorPesquisa;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::trabalhar, "motor-" + i);
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1); // A rede e as partidas passam à frente
+            t.start();
+        }
+    }
+
+    /**
+     * Pede uma jogada. A resposta (casa escolhida, ou -1 se não houver jogadas) é dada a
+     * {@code resposta} numa thread do motor.
+     *
+     * @param vez cor de quem joga
+     * @param nivel nível de força (1 a 10)
+     * @param prazo instante (System.nanoTime) em que acaba o turno
+     */
+    public void pedir(long pretas, long brancas, char vez, int nivel, long prazo, IntConsumer resposta) {
+        fila.add(new Pedido(pretas, brancas, vez, nivel, prazo, contador.getAndIncrement(), resposta));
+    }
+
+    /**
+     * Tempo de pesquisa de um nível de força: 50 ms no nível 1, o dobro em cada nível acima.
+     */
+    static long tempoDoNivel(int nivel) {
+        return TimeUnit.MILLISECONDS.toNanos(50L << (nivel - 1));
+    }
+
+    /**
+     * Profundidade máxima de um nível de força (os níveis baixos também erram por ver pouco).
+     */
+    static int profundidadeDoNivel(int nivel) {
+        return nivel * 3;
+    }
+
+    /**
+     * Casas vazias a partir das quais um nível de força tenta resolver o fim do jogo.
+     */
+    static int vaziasDoNivel(int nivel) {
+        return 8 + nivel;
+    }
+
+    private void trabalhar() {
+        PesquisaParalela pesquisa = new PesquisaParalela(threadsPorPesquisa, BITS_TABELA);
+        SolucionadorFinal solucionador = new SolucionadorFinal(BITS_TABELA);
+        while (true) {
+            Pedido p;
+            try {
+                p = fila.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // A parte justa do tempo que falta: os pedidos à espera também têm de ser atendidos
+            long falta = p.prazo - System.nanoTime() - MARGEM;
+            long parte = falta / (1 + fila.size() / threads);
+            long tempo = Math.max(TEMPO_MINIMO, Math.min(tempoDoNivel(p.nivel), parte));
+            int casa;
+            try {
+                casa = escolher(p, tempo, pesquisa, solucionador);
+            } catch (RuntimeException e) {
+                // Com o tipo e onde aconteceu: "Erro no motor: null" não ajudaria ninguém
+                System.err.println("Erro no motor (a partida passa a vez):");
+                e.printStackTrace();
+                casa = -1;
+            }
+            p.resposta.accept(casa);
+        }
+    }
+
+    /**
+     * Escolhe a jogada de um pedido: no fim do jogo tenta resolver a posição; se não houver
+     * tempo para isso, pesquisa com o tempo que sobra.
+     */
+    private int escolher(Pedido p, long tempo, PesquisaParalela pesquisa, SolucionadorFinal solucionador) {
+        long inicio = System.nanoTime();
+        if (Long.bitCount(~(p.pretas | p.brancas)) <= vaziasDoNivel(p.nivel)) {
+            SolucionadorFinal.Resultado r = solucionador.resolver(p.pretas, p.brancas, p.vez, tempo / 2);
+            if (r != null) return r.getJogada();
+        }
+        long resto = Math.max(TEMPO_MINIMO, tempo - (System.nanoTime() - inicio));
+        // Threads extra só se ninguém mais estiver à espera
+        int ajudantes = fila.isEmpty() ? pesquisa.getMaximoAjudantes() : 0;
+        return pesquisa.escolherJogada(p.pretas, p.brancas, p.vez, profundidadeDoNivel(p.nivel), resto, ajudantes);
+    }
+
+    /**
+     * Um pedido de jogada à espera na fila (primeiro os de prazo mais próximo).
+     */
+    private static class Pedido implements Comparable<Pedido> {
+        final long pretas;
+        final long brancas;
+        final char vez;
+        final int nivel;
+        final long prazo;
+        final long ordem;
+        final IntConsumer resposta;
+
+        Pedido(long pretas, long brancas, char vez, int nivel, long prazo, long ordem, IntConsumer resposta) {
+            this.pretas = pretas;
+            this.brancas = brancas;
+            this.vez = vez;
+            this.nivel = nivel;
+            this.prazo = prazo;
+            this.ordem = ordem;
+            this.resposta = resposta;
+        }
+
+        @Override
+        public int compareTo(Pedido outro) {
+            int c = Long.compare(prazo - outro.prazo, 0); // nanoTime: compara-se a diferença
+            return c != 0 ? c : Long.compare(ordem, outro.ordem);
+        }
+    }
+}
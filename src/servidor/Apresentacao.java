@@ -0,0 +1,71 @@
+package servidor;
+
+import protocolo.Mensagem;
+import protocolo.TipoMensagem;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trata a apresentação de um cliente acabado de ligar: a primeira mensagem que envia é o
+ * nome do jogador (no protocolo de texto, a primeira linha). Depois disso o jogador entra na sala de espera.
+ * Em vez do nome, o cliente pode pedir para assistir a uma partida (mensagem ASSISTIR) ou
+ * voltar a uma partida em que estava a jogar quando a ligação caiu (mensagem RETOMAR).
+ *
+ * O cliente tem um prazo para se apresentar; se não o fizer a tempo, a ligação é fechada
+ * (assim, ligações que nunca dizem nada não ficam abertas para sempre).
+ */
+public class Apresentacao implements OuvinteLigacao {
+
+    private final ServidorReversi servidor;
+    private final SalaDeEspera sala;
+    private final RodaTemporizadores roda;
+    private final int prazo; // Segundos para o cliente se apresentar (0 = sem limite)
+
+    // Temporizador de cada ligação que ainda não se apresentou
+    private final Map<Ligacao, RodaTemporizadores.Temporizador> porApresentar = new ConcurrentHashMap<>();
+
+    public Apresentacao(ServidorReversi servidor, SalaDeEspera sala, RodaTemporizadores roda, int prazo) {
+        this.servidor = servidor;
+        this.sala = sala;
+        this.roda = roda;
+        this.prazo = prazo;
+    }
+
+    /**
+     * Chamado quando uma ligação nova é aceite: começa a contar o prazo de apresentação.
+     */
+    public void aoLigar(Ligacao ligacao) {
+        if (prazo <= 0) return;
+        porApresentar.put(ligacao, roda.agendar(prazo, TimeUnit.SECONDS, () -> {
+            if (porApresentar.remove(ligacao) != null) {
+                System.out.println("Cliente não se apresentou a tempo; ligação fechada.");
+                ligacao.fechar();
+            }
+        }));
+    }
+
+    @Override
+    public void aoReceber(Ligacao origem, Mensagem mensagem) {
+        TipoMensagem tipo = mensagem.getTipo();
+        if (tipo != TipoMensagem.APRESENTACAO && tipo != TipoMensagem.ASSISTIR && tipo != TipoMensagem.RETOMAR) return;
+        RodaTemporizadores.Temporizador t = porApresentar.remove(origem);
+        if (t != null) t.cancelar();
+        if (tipo == TipoMensagem.ASSISTIR) {
+            servidor.assistir(origem, mensagem.getValor());
+        } else if (tipo == TipoMensagem.RETOMAR) {
+            servidor.retomar(origem, mensagem.getValor(), mensagem.getChave(), mensagem.getSeq());
+        } else {
+            origem.setNome(mensagem.getTexto());
+            sala.entrar(origem);
+        }
+    }
+
+    @Override
+    public void aoDesligar(Ligacao origem) {
+        // Saiu antes de se apresentar: basta deixar de contar o prazo
+        RodaTemporizadores.Temporizador t = porApresentar.remove(origem);
+        if (t != null) t.cancelar();
+    }
+}
@@ -0,0 +1,979 @@
+package servidor;
+
+import modelo.Tabuleiro;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Arquivo de todas as partidas terminadas, feito para guardar centenas de milhões de
+ * partidas num só disco.
+ *
+ * Cada partida ocupa um cabeçalho pequeno (número, data, resultado, nomes) e um byte por
+ * jogada. As partidas juntam-se em blocos de cerca de {@link #TAMANHO_BLOCO} bytes, que são
+ * comprimidos de uma vez (os nomes que se repetem e as aberturas mais comuns comprimem muito
+ * bem) e escritos, uns a seguir aos outros, em ficheiros de segmento grandes
+ * (arquivo-000001.dat, ...).
+ *
+ * Ao lado fica o índice (arquivo.idx), com uma entrada de tamanho fixo por bloco: onde está
+ * o bloco, o intervalo de números e de datas das suas partidas e um filtro de Bloom com os
+ * nomes dos jogadores. Buscar uma partida, ou as de um jogador ou de um intervalo de datas,
+ * só descomprime os blocos que podem ter partidas que interessam; o resto do arquivo nem é
+ * lido. (O filtro de Bloom pode enganar-se a dizer que um nome está num bloco, mas nunca a
+ * dizer que não está: no pior caso descomprime-se um bloco a mais. Para isso acontecer em
+ * menos de 1% dos blocos, um bloco fecha mais cedo se o seu filtro ficar demasiado cheio.)
+ *
+ * Os intervalos de números de todos os blocos ficam em memória (uns bytes por bloco): a
+ * busca por número é uma pesquisa binária, e só lê o bloco (ou os poucos blocos) onde a
+ * partida pode estar.
+ *
+ * Para a busca por jogador não ter de ler o filtro de todos os blocos (2 KB cada, perto de
+ * 1 GB com 500 milhões de partidas), os filtros de cada grupo de {@link #BLOCOS_POR_GRUPO}
+ * blocos são também guardados "às fatias" em jogadores.idx: para cada um dos bits do filtro,
+ * uma linha com esse bit de todos os blocos do grupo. Um nome só precisa de
+ * {@link #FUNCOES_BLOOM} bits, por isso basta ler {@link #FUNCOES_BLOOM} linhas de 128
+ * bytes por grupo (cerca de 300 KB para 500 milhões de partidas) e juntá-las com um E: os
+ * bits que ficam a 1 são os blocos que podem ter o jogador. Só os blocos do último grupo,
+ * ainda incompleto, têm os filtros lidos um a um.
+ *
+ * Quem guarda uma partida só a copia para o bloco em construção; comprimir e escrever o
+ * bloco é feito por uma thread do arquivo. Os blocos são escritos antes da sua entrada no
+ * índice, por isso, depois de uma queda, o que não estiver no índice é simplesmente ignorado.
+ *
+ * Também pode ser usado na linha de comandos para consultar um arquivo (ver {@link #main}).
+ */
+public class ArquivoPartidas {
+
+    // Tamanho (sem compressão) a partir do qual o bloco em construção é escrito
+    static final int TAMANHO_BLOCO = 64 * 1024;
+    // Tamanho a partir do qual se começa um segmento novo
+    static final long TAMANHO_SEGMENTO = 1L << 30;
+    // Byte guardado em vez da casa quando a vez passou sem jogada
+    public static final int PASSAGEM = 64;
+
+    // Filtro de Bloom de cada bloco: número de bits e de posições marcadas por nome
+    private static final int BITS_BLOOM = 16384;
+    private static final int FUNCOES_BLOOM = 5;
+    // O bloco fecha quando 40% dos bits do filtro estiverem a 1: um nome que não está no
+    // bloco tem então 0,4^5 = 1% de hipóteses de parecer estar
+    private static final int LIMITE_BLOOM = BITS_BLOOM * 2 / 5;
+    // Entrada do índice: 9 campos de 4 bytes, a posição (8 bytes) e o filtro de Bloom
+    private static final int ENTRADA = 9 * 4 + 8 + BITS_BLOOM / 8;
+    // Índice dos jogadores (jogadores.idx): número de blocos de cada grupo (os testes usam
+    // grupos mais pequenos) e o cabeçalho com o número de grupos completos
+    static final int BLOCOS_POR_GRUPO = 1024;
+    private static final int CABECALHO_JOGADORES = 8;
+    // Blocos que ficam em memória à espera de nova tentativa se o disco falhar (cerca de 64 KB cada)
+    private static final int MAXIMO_POR_ESCREVER = 256;
+
+    /**
+     * Uma partida lida do arquivo.
+     */
+    public static final class PartidaArquivada {
+        private final int id;
+        private final long data;
+        private final int pecasPretas;
+        private final int pecasBrancas;
+        private final String pretas;
+        private final String brancas;
+        private final byte[] jogadas;
+
+        PartidaArquivada(int id, long data, int pecasPretas, int pecasBrancas, String pretas, String brancas,
+                         byte[] jogadas) {
+            this.id = id;
+            this.data = data;
+            this.pecasPretas = pecasPretas;
+            this.pecasBrancas = pecasBrancas;
+            this.pretas = pretas;
+            this.brancas = brancas;
+            this.jogadas = jogadas;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /** Instante em que a partida acabou (segundos desde 1970, UTC). */
+        public long getData() {
+            return data;
+        }
+
+        public int getPecasPretas() {
+            return pecasPretas;
+        }
+
+        public int getPecasBrancas() {
+            return pecasBrancas;
+        }
+
+        public String getPretas() {
+            return pretas;
+        }
+
+        public String getBrancas() {
+            return brancas;
+        }
+
+        public int getNumeroJogadas() {
+            return jogadas.length;
+        }
+
+        /** Casa da jogada n (linha*8+coluna), ou {@link #PASSAGEM}. */
+        public int getJogada(int n) {
+            return jogadas[n];
+        }
+
+        /**
+         * Descrição numa linha, com as jogadas na notação habitual (coluna a-h, linha 1-8;
+         * "--" é uma passagem de vez).
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('#').append(id).append(' ').append(Instant.ofEpochSecond(data)).append(' ')
+                    .append(pretas).append(" (B) ").append(pecasPretas).append(" x ")
+                    .append(pecasBrancas).append(' ').append(brancas).append(" (W):");
+            for (byte j : jogadas) {
+                if (j == PASSAGEM) sb.append(" --");
+                else sb.append(' ').append((char) ('a' + j % 8)).append(j / 8 + 1);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Um bloco de partidas: onde está e o que se sabe das partidas que tem.
+     */
+    private static final class Bloco {
+        int indice = -1;   // Número da entrada no índice (-1 enquanto está em construção)
+        int segmento;
+        long posicao;
+        int comprimido;
+        int original;
+        int crc;
+        int partidas;
+        int idMinimo = Integer.MAX_VALUE;
+        int idMaximo = Integer.MIN_VALUE;
+        long dataMinima = Long.MAX_VALUE;
+        long dataMaxima = Long.MIN_VALUE;
+
+        boolean podeTer(int id) {
+            return partidas > 0 && id >= idMinimo && id <= idMaximo;
+        }
+
+        boolean cruza(long desde, long ate) {
+            return partidas > 0 && dataMaxima >= desde && dataMinima <= ate;
+        }
+    }
+
+    /**
+     * Um bloco fechado à espera de ser escrito pela thread do arquivo (ou de nova
+     * tentativa, se a escrita falhou).
+     */
+    private static final class BlocoPorEscrever {
+        final Bloco bloco;
+        final long[] filtro;
+        final byte[] dados;
+
+        BlocoPorEscrever(Bloco bloco, long[] filtro, byte[] dados) {
+            this.bloco = bloco;
+            this.filtro = filtro;
+            this.dados = dados;
+        }
+    }
+
+    private final Path pasta;
+    // false se foi aberto só para consulta
+    private final boolean escrita;
+    // Blocos de cada grupo do índice dos jogadores, bytes de cada linha (um bit por bloco) e
+    // de cada grupo (uma linha por bit do filtro)
+    private final int blocosPorGrupo;
+    private final int linhaGrupo;
+    private final long tamanhoGrupo;
+    private final ExecutorService escritor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "arquivo");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // --- Protegido pelo trinco ---
+    private final ReentrantLock trinco = new ReentrantLock();
+    // Blocos já escritos, pela ordem do índice
+    private final List<Bloco> blocos = new ArrayList<>();
+    // Bloco em construção: as partidas (sem compressão), o seu resumo e o filtro de Bloom
+    private ByteBuffer emConstrucao = ByteBuffer.allocate(TAMANHO_BLOCO + 1024);
+    private Bloco resumo = new Bloco();
+    private long[] bloom = new long[BITS_BLOOM / 64];
+    private int bitsBloom = 0; // Bits a 1 no filtro do bloco em construção
+    private boolean fechado = false;
+    // Maior número de partida dos blocos 0 a i: nunca desce, por isso permite pesquisa binária
+    private int[] maiorIdAte = new int[1024];
+    // Quanto o menor número de um bloco pode ficar atrás do maior número dos blocos até ele
+    // (as partidas não acabam pela ordem em que começaram)
+    private int atrasoMaximo = 0;
+    // Grupos de blocos que já estão no índice dos jogadores
+    private int gruposIndexados = 0;
+
+    // --- Usados pela thread do arquivo (e pelas leituras, que só fazem leituras posicionais) ---
+    private FileChannel indice;
+    private FileChannel jogadores; // null num arquivo só para consulta sem índice dos jogadores
+    // Blocos fechados que ainda não foram escritos (só a thread do arquivo mexe nesta fila)
+    private final ArrayDeque<BlocoPorEscrever> porEscrever = new ArrayDeque<>();
+    private final Map<Integer, FileChannel> segmentos = new HashMap<>();
+    private int segmentoAtual;
+    private long fimSegmento;
+
+    private ArquivoPartidas(Path pasta, boolean escrita, int blocosPorGrupo) {
+        this.pasta = pasta;
+        this.escrita = escrita;
+        this.blocosPorGrupo = blocosPorGrupo;
+        this.linhaGrupo = blocosPorGrupo / 8;
+        this.tamanhoGrupo = (long) BITS_BLOOM * linhaGrupo;
+    }
+
+    /**
+     * Abre (ou cria) o arquivo na pasta indicada. Se o servidor tiver caído a meio de uma
+     * escrita, o que ficou depois do último bloco do índice é descartado.
+     */
+    public static ArquivoPartidas abrir(Path pasta) throws IOException {
+        return abrir(pasta, BLOCOS_POR_GRUPO);
+    }
+
+    /**
+     * Como {@link #abrir(Path)}, mas com grupos de outro tamanho no índice dos jogadores
+     * (múltiplo de 8). Os testes usam grupos pequenos para terem vários grupos com poucas
+     * partidas; um arquivo tem de ser sempre aberto com o mesmo tamanho de grupo.
+     */
+    static ArquivoPartidas abrir(Path pasta, int blocosPorGrupo) throws IOException {
+        Files.createDirectories(pasta);
+        ArquivoPartidas a = new ArquivoPartidas(pasta, true, blocosPorGrupo);
+        a.indice = FileChannel.open(pasta.resolve("arquivo.idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        a.lerIndice();
+        a.indice.truncate((long) a.blocos.size() * ENTRADA);
+
+        if (a.blocos.isEmpty()) {
+            a.segmentoAtual = 1;
+            a.segmento(1).truncate(0);
+            a.fimSegmento = 0;
+        } else {
+            Bloco ultimo = a.blocos.get(a.blocos.size() - 1);
+            a.segmentoAtual = ultimo.segmento;
+            a.fimSegmento = ultimo.posicao + ultimo.comprimido;
+            a.segmento(a.segmentoAtual).truncate(a.fimSegmento);
+        }
+
+        // O índice dos jogadores pode estar atrasado (queda, ou arquivo de uma versão anterior)
+        a.jogadores = FileChannel.open(pasta.resolve("jogadores.idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        a.gruposIndexados = a.lerGruposIndexados();
+        a.jogadores.truncate(CABECALHO_JOGADORES + a.gruposIndexados * a.tamanhoGrupo);
+        // O cabeçalho pode contar grupos de blocos que se perderam: passa a contar só os que
+        // ficaram, senão um grupo refeito a meio de uma queda pareceria completo
+        escreverTudo(a.jogadores, ByteBuffer.allocate(CABECALHO_JOGADORES).putLong(0, a.gruposIndexados), 0);
+        a.jogadores.force(false);
+        a.indexarGrupos();
+        return a;
+    }
+
+    /**
+     * Abre um arquivo só para consulta (por exemplo, enquanto o servidor continua a
+     * escrever nele): não altera nenhum ficheiro e não aceita partidas novas.
+     */
+    public static ArquivoPartidas abrirParaLeitura(Path pasta) throws IOException {
+        ArquivoPartidas a = new ArquivoPartidas(pasta, false, BLOCOS_POR_GRUPO);
+        a.fechado = true;
+        a.indice = FileChannel.open(pasta.resolve("arquivo.idx"), StandardOpenOption.READ);
+        a.lerIndice();
+        Path jogadores = pasta.resolve("jogadores.idx");
+        if (Files.exists(jogadores)) {
+            a.jogadores = FileChannel.open(jogadores, StandardOpenOption.READ);
+            a.gruposIndexados = a.lerGruposIndexados();
+        }
+        return a;
+    }
+
+    /**
+     * Lê as entradas do índice. Pára na primeira cujo bloco não esteja todo no segmento
+     * (o servidor caiu, ou ainda o está a escrever).
+     */
+    private void lerIndice() throws IOException {
+        long entradas = indice.size() / ENTRADA;
+        ByteBuffer e = ByteBuffer.allocate(ENTRADA - BITS_BLOOM / 8);
+        for (int i = 0; i < entradas; i++) {
+            e.clear();
+            lerTudo(indice, e, (long) i * ENTRADA);
+            e.flip();
+            Bloco b = new Bloco();
+            b.indice = i;
+            b.segmento = e.getInt();
+            b.posicao = e.getLong();
+            b.comprimido = e.getInt();
+            b.original = e.getInt();
+            b.crc = e.getInt();
+            b.partidas = e.getInt();
+            b.idMinimo = e.getInt();
+            b.idMaximo = e.getInt();
+            b.dataMinima = Integer.toUnsignedLong(e.getInt());
+            b.dataMaxima = Integer.toUnsignedLong(e.getInt());
+            if (b.posicao + b.comprimido > segmento(b.segmento).size()) break; // Bloco por escrever
+            juntarBloco(b);
+        }
+    }
+
+    /**
+     * Junta um bloco já escrito à lista e ao índice dos números (com o trinco, ou na abertura).
+     */
+    private void juntarBloco(Bloco b) {
+        int n = blocos.size();
+        if (n == maiorIdAte.length) maiorIdAte = Arrays.copyOf(maiorIdAte, n * 2);
+        int maior = n == 0 ? b.idMaximo : Math.max(maiorIdAte[n - 1], b.idMaximo);
+        maiorIdAte[n] = maior;
+        atrasoMaximo = Math.max(atrasoMaximo, maior - b.idMinimo);
+        blocos.add(b);
+    }
+
+    /**
+     * Número de grupos completos no índice dos jogadores (o cabeçalho só é escrito depois
+     * do grupo, por isso um grupo a meio de uma queda não conta).
+     */
+    private int lerGruposIndexados() throws IOException {
+        if (jogadores.size() < CABECALHO_JOGADORES) return 0;
+        ByteBuffer c = ByteBuffer.allocate(CABECALHO_JOGADORES);
+        lerTudo(jogadores, c, 0);
+        long grupos = Math.min(c.getLong(0), (jogadores.size() - CABECALHO_JOGADORES) / tamanhoGrupo);
+        return (int) Math.max(0, Math.min(grupos, blocos.size() / blocosPorGrupo));
+    }
+
+    /**
+     * Canal do segmento indicado (aberto na primeira vez que é preciso).
+     */
+    private FileChannel segmento(int numero) throws IOException {
+        synchronized (segmentos) {
+            FileChannel c = segmentos.get(numero);
+            if (c == null) {
+                Path f = pasta.resolve(String.format("arquivo-%06d.dat", numero));
+                c = escrita ? FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE) : FileChannel.open(f, StandardOpenOption.READ);
+                segmentos.put(numero, c);
+            }
+            return c;
+        }
+    }
+
+    // --- Escrita ---
+
+    /**
+     * Guarda uma partida que acabou agora: os nomes dos jogadores, o resultado e todas as
+     * jogadas (tiradas do histórico do tabuleiro). Só copia a partida para o bloco em
+     * construção; se o bloco ficar cheio, é a thread do arquivo que o escreve.
+     */
+    public void guardar(int id, String pretas, String brancas, Tabuleiro tabuleiro) {
+        guardar(id, pretas, brancas, tabuleiro, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Como {@link #guardar(int, String, String, Tabuleiro)}, com a data indicada (segundos
+     * desde 1970) em vez da hora atual.
+     */
+    void guardar(int id, String pretas, String brancas, Tabuleiro tabuleiro, long data) {
+        byte[] p = pretas.getBytes(StandardCharsets.UTF_8);
+        byte[] b = brancas.getBytes(StandardCharsets.UTF_8);
+        int n = tabuleiro.getNumeroJogadas();
+        trinco.lock();
+        try {
+            if (fechado) return;
+            garantirEspaco(4 + 4 + 2 + 2 + p.length + 2 + b.length + 2 + n);
+            emConstrucao.putInt(id).putInt((int) data);
+            emConstrucao.put((byte) tabuleiro.contarPecas('B')).put((byte) tabuleiro.contarPecas('W'));
+            emConstrucao.putShort((short) p.length).put(p).putShort((short) b.length).put(b);
+            emConstrucao.putShort((short) n);
+            for (int i = 0; i < n; i++) {
+                int casa = tabuleiro.getJogada(i);
+                emConstrucao.put((byte) (casa < 0 ? PASSAGEM : casa));
+            }
+
+            resumo.partidas++;
+            resumo.idMinimo = Math.min(resumo.idMinimo, id);
+            resumo.idMaximo = Math.max(resumo.idMaximo, id);
+            resumo.dataMinima = Math.min(resumo.dataMinima, data);
+            resumo.dataMaxima = Math.max(resumo.dataMaxima, data);
+            bitsBloom += marcar(bloom, pretas) + marcar(bloom, brancas);
+
+            // Fecha o bloco quando está cheio, ou quando o filtro já se enganaria demasiado
+            if (emConstrucao.position() >= TAMANHO_BLOCO || bitsBloom >= LIMITE_BLOOM) fecharBloco();
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    private void garantirEspaco(int tamanho) {
+        if (emConstrucao.remaining() < tamanho) {
+            ByteBuffer maior = ByteBuffer.allocate(emConstrucao.position() + tamanho + 1024);
+            emConstrucao.flip();
+            maior.put(emConstrucao);
+            emConstrucao = maior;
+        }
+    }
+
+    /**
+     * Entrega o bloco em construção à thread do arquivo e começa outro (com o trinco).
+     */
+    private void fecharBloco() {
+        if (resumo.partidas == 0) return;
+        byte[] dados = new byte[emConstrucao.position()];
+        emConstrucao.get(0, dados);
+        BlocoPorEscrever bloco = new BlocoPorEscrever(resumo, bloom, dados);
+        emConstrucao.clear();
+        resumo = new Bloco();
+        bloom = new long[BITS_BLOOM / 64];
+        bitsBloom = 0;
+        escritor.execute(() -> {
+            porEscrever.add(bloco);
+            escreverPendentes();
+        });
+    }
+
+    /**
+     * Escreve já o bloco em construção, mesmo que ainda não esteja cheio (para não perder
+     * partidas se o servidor for abaixo), e volta a tentar os blocos que falharam.
+     */
+    public void despejar() {
+        trinco.lock();
+        try {
+            if (fechado) return;
+            fecharBloco();
+            escritor.execute(this::escreverPendentes);
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Escreve os blocos à espera, pela ordem em que foram fechados (na thread do arquivo).
+     * Se o disco falhar, os blocos ficam em memória e são tentados outra vez com o bloco
+     * seguinte ou no próximo despejo; só se se juntarem mais de {@link #MAXIMO_POR_ESCREVER}
+     * é que os mais antigos se perdem (e isso fica escrito no registo).
+     */
+    private void escreverPendentes() {
+        BlocoPorEscrever p;
+        while ((p = porEscrever.peek()) != null) {
+            try {
+                escreverBloco(p.bloco, p.filtro, p.dados);
+            } catch (IOException e) {
+                System.err.println("Arquivo: erro a escrever um bloco de " + p.bloco.partidas + " partidas ("
+                        + e.getMessage() + "); " + porEscrever.size() + " blocos à espera de nova tentativa");
+                if (porEscrever.size() > MAXIMO_POR_ESCREVER) {
+                    BlocoPorEscrever perdido = porEscrever.poll();
+                    System.err.println("Arquivo: demasiados blocos por escrever; perdidas "
+                            + perdido.bloco.partidas + " partidas");
+                }
+                return;
+            }
+            porEscrever.poll();
+        }
+        indexarGrupos();
+    }
+
+    /**
+     * Comprime e escreve um bloco e depois a sua entrada no índice (na thread do arquivo).
+     */
+    private void escreverBloco(Bloco b, long[] filtro, byte[] dados) throws IOException {
+        Deflater compressor = new Deflater(Deflater.BEST_COMPRESSION);
+        compressor.setInput(dados);
+        compressor.finish();
+        byte[] saida = new byte[dados.length + 64];
+        int tamanho = 0;
+        while (!compressor.finished()) {
+            if (tamanho == saida.length) saida = Arrays.copyOf(saida, saida.length * 2);
+            tamanho += compressor.deflate(saida, tamanho, saida.length - tamanho);
+        }
+        compressor.end();
+        CRC32C crc = new CRC32C();
+        crc.update(saida, 0, tamanho);
+
+        if (fimSegmento > 0 && fimSegmento + tamanho > TAMANHO_SEGMENTO) {
+            segmentoAtual++;
+            segmento(segmentoAtual).truncate(0); // Pode ter ficado lixo de uma queda
+            fimSegmento = 0;
+        }
+        FileChannel canal = segmento(segmentoAtual);
+        escreverTudo(canal, ByteBuffer.wrap(saida, 0, tamanho), fimSegmento);
+        canal.force(false);
+
+        b.segmento = segmentoAtual;
+        b.posicao = fimSegmento;
+        b.comprimido = tamanho;
+        b.original = dados.length;
+        b.crc = (int) crc.getValue();
+        fimSegmento += tamanho;
+
+        ByteBuffer e = ByteBuffer.allocate(ENTRADA);
+        e.putInt(b.segmento).putLong(b.posicao).putInt(b.comprimido).putInt(b.original).putInt(b.crc)
+                .putInt(b.partidas).putInt(b.idMinimo).putInt(b.idMaximo)
+                .putInt((int) b.dataMinima).putInt((int) b.dataMaxima);
+        for (long palavra : filtro) e.putLong(palavra);
+        e.flip();
+        trinco.lock();
+        try {
+            b.indice = blocos.size();
+            escreverTudo(indice, e, (long) b.indice * ENTRADA);
+            indice.force(false);
+            juntarBloco(b);
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Passa para o índice dos jogadores os grupos de blocos que ficaram completos (na
+     * thread do arquivo, ou na abertura). Se falhar, tenta outra vez depois do bloco seguinte.
+     */
+    private void indexarGrupos() {
+        while (true) {
+            int grupo;
+            trinco.lock();
+            try {
+                grupo = gruposIndexados;
+                if (blocos.size() < (grupo + 1) * blocosPorGrupo) return;
+            } finally {
+                trinco.unlock();
+            }
+            try {
+                indexarGrupo(grupo);
+            } catch (IOException e) {
+                System.err.println("Arquivo: erro a escrever o índice dos jogadores: " + e.getMessage());
+                return;
+            }
+            trinco.lock();
+            try {
+                gruposIndexados = grupo + 1;
+            } finally {
+                trinco.unlock();
+            }
+        }
+    }
+
+    /**
+     * Escreve um grupo no índice dos jogadores: lê do arquivo.idx os filtros dos blocos do
+     * grupo e "vira-os": a linha i fica com o bit i do filtro de cada bloco do grupo.
+     */
+    private void indexarGrupo(int grupo) throws IOException {
+        ByteBuffer entradas = ByteBuffer.allocate(blocosPorGrupo * ENTRADA);
+        lerTudo(indice, entradas, (long) grupo * blocosPorGrupo * ENTRADA);
+        byte[] linhas = new byte[(int) tamanhoGrupo];
+        for (int k = 0; k < blocosPorGrupo; k++) {
+            int filtro = k * ENTRADA + ENTRADA - BITS_BLOOM / 8;
+            for (int w = 0; w < BITS_BLOOM / 64; w++) {
+                for (long palavra = entradas.getLong(filtro + w * 8); palavra != 0; palavra &= palavra - 1) {
+                    int bit = w * 64 + Long.numberOfTrailingZeros(palavra);
+                    linhas[bit * linhaGrupo + (k >>> 3)] |= (byte) (1 << (k & 7));
+                }
+            }
+        }
+        escreverTudo(jogadores, ByteBuffer.wrap(linhas), CABECALHO_JOGADORES + grupo * tamanhoGrupo);
+        jogadores.force(false);
+        // Só agora o grupo conta: numa queda a meio, é refeito na próxima abertura
+        escreverTudo(jogadores, ByteBuffer.allocate(CABECALHO_JOGADORES).putLong(0, grupo + 1), 0);
+        jogadores.force(false);
+    }
+
+    /**
+     * Escreve o que falta e fecha os ficheiros. As partidas guardadas depois disto são ignoradas.
+     */
+    public void fechar() {
+        trinco.lock();
+        try {
+            if (!fechado) {
+                fecharBloco();
+                escritor.execute(() -> {
+                    escreverPendentes();
+                    for (BlocoPorEscrever p : porEscrever) {
+                        System.err.println("Arquivo: " + p.bloco.partidas + " partidas não foram escritas");
+                    }
+                });
+            }
+            fechado = true;
+        } finally {
+            trinco.unlock();
+        }
+        escritor.shutdown();
+        try {
+            escritor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            indice.close();
+            if (jogadores != null) jogadores.close();
+            synchronized (segmentos) {
+                for (FileChannel c : segmentos.values()) c.close();
+            }
+        } catch (IOException e) {
+            // Já não há nada a fazer
+        }
+    }
+
+    // --- Leitura ---
+
+    /**
+     * Busca uma partida pelo número. Só descomprime os blocos cujo intervalo de números a
+     * inclui (normalmente um). Devolve null se não estiver no arquivo.
+     */
+    public PartidaArquivada buscar(int id) throws IOException {
+        // Um bloco pode ter a partida se o maior número até ele já chegou a id, mas ainda não
+        // passou de id mais o atraso máximo (senão o menor número do bloco seria maior que id)
+        List<Bloco> candidatos;
+        trinco.lock();
+        try {
+            int n = blocos.size();
+            int inicio = primeiroMaiorOuIgual(maiorIdAte, n, id);
+            int fim = primeiroMaiorOuIgual(maiorIdAte, n, (long) id + atrasoMaximo + 1);
+            candidatos = new ArrayList<>(blocos.subList(inicio, fim));
+        } finally {
+            trinco.unlock();
+        }
+        PartidaArquivada[] encontrada = new PartidaArquivada[1];
+        for (Bloco b : candidatos) {
+            if (!b.podeTer(id)) continue;
+            lerBloco(b, id, null, 0, Long.MAX_VALUE, p -> encontrada[0] = p);
+            if (encontrada[0] != null) return encontrada[0];
+        }
+        return procurarEmConstrucao(id);
+    }
+
+    /**
+     * Percorre as partidas de um jogador (ou de todos, se {@code jogador} for null) que
+     * acabaram entre {@code desde} e {@code ate} (segundos desde 1970, inclusive). Os
+     * blocos fora do intervalo de datas, ou em que o filtro de Bloom diz que o jogador não
+     * está, não são lidos.
+     */
+    public void procurar(String jogador, long desde, long ate, Consumer<PartidaArquivada> acao) throws IOException {
+        List<Bloco> escritos;
+        int grupos;
+        trinco.lock();
+        try {
+            escritos = new ArrayList<>(blocos);
+            grupos = jogador != null ? gruposIndexados : 0;
+        } finally {
+            trinco.unlock();
+        }
+
+        // Os grupos do índice dos jogadores: só as linhas dos bits do nome
+        int[] bits = jogador != null ? bitsDoNome(jogador) : null;
+        for (int g = 0; g < grupos; g++) {
+            List<Bloco> grupo = escritos.subList(g * blocosPorGrupo, (g + 1) * blocosPorGrupo);
+            if (grupo.stream().noneMatch(b -> b.cruza(desde, ate))) continue;
+            byte[] talvez = blocosComBits(g, bits);
+            for (int k = 0; k < blocosPorGrupo; k++) {
+                Bloco b = grupo.get(k);
+                if ((talvez[k >>> 3] & (1 << (k & 7))) != 0 && b.cruza(desde, ate)) {
+                    lerBloco(b, -1, jogador, desde, ate, acao);
+                }
+            }
+        }
+        // Os restantes blocos, um a um
+        for (Bloco b : escritos.subList(grupos * blocosPorGrupo, escritos.size())) {
+            if (!b.cruza(desde, ate)) continue;
+            if (jogador != null && !talvezTenha(b, bits)) continue;
+            lerBloco(b, -1, jogador, desde, ate, acao);
+        }
+        byte[] dados;
+        trinco.lock();
+        try {
+            dados = new byte[emConstrucao.position()];
+            emConstrucao.get(0, dados);
+        } finally {
+            trinco.unlock();
+        }
+        percorrer(ByteBuffer.wrap(dados), -1, jogador, desde, ate, acao);
+    }
+
+    /**
+     * Número de partidas no arquivo (escritas e em construção).
+     */
+    public long contarPartidas() {
+        trinco.lock();
+        try {
+            long total = resumo.partidas;
+            for (Bloco b : blocos) total += b.partidas;
+            return total;
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Maior número de partida no arquivo (0 se estiver vazio). O servidor continua a
+     * numeração a partir daqui, para que cada número só apareça uma vez no arquivo.
+     */
+    public int getMaiorId() {
+        trinco.lock();
+        try {
+            int maior = Math.max(0, resumo.idMaximo);
+            for (Bloco b : blocos) maior = Math.max(maior, b.idMaximo);
+            return maior;
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Primeira posição i (de 0 a n) com a[i] >= valor, num array que nunca desce.
+     */
+    private static int primeiroMaiorOuIgual(int[] a, int n, long valor) {
+        int baixo = 0, alto = n;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (a[meio] < valor) baixo = meio + 1;
+            else alto = meio;
+        }
+        return baixo;
+    }
+
+    private PartidaArquivada procurarEmConstrucao(int id) {
+        PartidaArquivada[] encontrada = new PartidaArquivada[1];
+        trinco.lock();
+        try {
+            if (!resumo.podeTer(id)) return null;
+            ByteBuffer copia = emConstrucao.duplicate().flip();
+            percorrer(copia, id, null, 0, Long.MAX_VALUE, p -> encontrada[0] = p);
+        } finally {
+            trinco.unlock();
+        }
+        return encontrada[0];
+    }
+
+    /**
+     * Verifica no filtro de Bloom do bloco (lido do índice) se o jogador pode lá estar.
+     *
+     * @param bits posições do nome no filtro ({@link #bitsDoNome})
+     */
+    private boolean talvezTenha(Bloco b, int[] bits) throws IOException {
+        ByteBuffer f = ByteBuffer.allocate(BITS_BLOOM / 8);
+        lerTudo(indice, f, (long) b.indice * ENTRADA + ENTRADA - BITS_BLOOM / 8);
+        for (int bit : bits) {
+            if ((f.getLong((bit >>> 6) * 8) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lê do índice dos jogadores as linhas dos bits indicados, no grupo indicado, e junta-as
+     * com um E: fica um bit a 1 por cada bloco do grupo que pode ter o jogador.
+     */
+    private byte[] blocosComBits(int grupo, int[] bits) throws IOException {
+        byte[] talvez = null;
+        ByteBuffer linha = ByteBuffer.allocate(linhaGrupo);
+        for (int bit : bits) {
+            linha.clear();
+            lerTudo(jogadores, linha, CABECALHO_JOGADORES + grupo * tamanhoGrupo + (long) bit * linhaGrupo);
+            if (talvez == null) {
+                talvez = linha.array().clone();
+            } else {
+                for (int i = 0; i < linhaGrupo; i++) talvez[i] &= linha.get(i);
+            }
+        }
+        return talvez;
+    }
+
+    /**
+     * Marca um nome no filtro. Devolve quantos bits passaram de 0 a 1.
+     */
+    private static int marcar(long[] filtro, String nome) {
+        int novos = 0;
+        for (int bit : bitsDoNome(nome)) {
+            if ((filtro[bit >>> 6] & (1L << bit)) == 0) novos++;
+            filtro[bit >>> 6] |= 1L << bit;
+        }
+        return novos;
+    }
+
+    /**
+     * As {@link #FUNCOES_BLOOM} posições de um nome num filtro de Bloom.
+     */
+    private static int[] bitsDoNome(String nome) {
+        long h = hash(nome);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        int[] bits = new int[FUNCOES_BLOOM];
+        for (int i = 0; i < FUNCOES_BLOOM; i++) bits[i] = Math.floorMod(h1 + i * h2, BITS_BLOOM);
+        return bits;
+    }
+
+    /**
+     * Hash de 64 bits de um nome (o hashCode da String, misturado para espalhar os bits).
+     */
+    private static long hash(String nome) {
+        long h = nome.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Lê e descomprime um bloco e passa à ação as partidas que interessam.
+     */
+    private void lerBloco(Bloco b, int id, String jogador, long desde, long ate, Consumer<PartidaArquivada> acao)
+            throws IOException {
+        ByteBuffer comprimido = ByteBuffer.allocate(b.comprimido);
+        lerTudo(segmento(b.segmento), comprimido, b.posicao);
+        CRC32C crc = new CRC32C();
+        crc.update(comprimido.array(), 0, b.comprimido);
+        if ((int) crc.getValue() != b.crc) throw new IOException("Bloco " + b.indice + " do arquivo estragado");
+
+        byte[] dados = new byte[b.original];
+        Inflater descompressor = new Inflater();
+        try {
+            descompressor.setInput(comprimido.array(), 0, b.comprimido);
+            int lidos = 0;
+            while (lidos < dados.length && !descompressor.finished()) {
+                lidos += descompressor.inflate(dados, lidos, dados.length - lidos);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco " + b.indice + " do arquivo estragado", e);
+        } finally {
+            descompressor.end();
+        }
+        percorrer(ByteBuffer.wrap(dados), id, jogador, desde, ate, acao);
+    }
+
+    /**
+     * Percorre as partidas de um bloco sem compressão (só as de número {@code id}, se não
+     * for negativo). As partidas que não interessam são
+     * saltadas sem criar nenhum objeto (os nomes são comparados em bytes UTF-8).
+     */
+    private static void percorrer(ByteBuffer dados, int id, String jogador, long desde, long ate,
+                                  Consumer<PartidaArquivada> acao) {
+        byte[] procurado = jogador != null ? jogador.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] a = dados.array();
+        while (dados.hasRemaining()) {
+            int inicio = dados.position();
+            long data = Integer.toUnsignedLong(dados.getInt(inicio + 4));
+            int tamanhoPretas = Short.toUnsignedInt(dados.getShort(inicio + 10));
+            int inicioBrancas = inicio + 12 + tamanhoPretas;
+            int tamanhoBrancas = Short.toUnsignedInt(dados.getShort(inicioBrancas));
+            int inicioJogadas = inicioBrancas + 2 + tamanhoBrancas;
+            int numeroJogadas = Short.toUnsignedInt(dados.getShort(inicioJogadas));
+            dados.position(inicioJogadas + 2 + numeroJogadas);
+
+            if (id >= 0 && dados.getInt(inicio) != id) continue;
+            if (data < desde || data > ate) continue;
+            if (procurado != null
+                    && !Arrays.equals(a, inicio + 12, inicio + 12 + tamanhoPretas, procurado, 0, procurado.length)
+                    && !Arrays.equals(a, inicioBrancas + 2, inicioJogadas, procurado, 0, procurado.length)) continue;
+
+            acao.accept(new PartidaArquivada(dados.getInt(inicio), data, dados.get(inicio + 8), dados.get(inicio + 9),
+                    new String(a, inicio + 12, tamanhoPretas, StandardCharsets.UTF_8),
+                    new String(a, inicioBrancas + 2, tamanhoBrancas, StandardCharsets.UTF_8),
+                    Arrays.copyOfRange(a, inicioJogadas + 2, inicioJogadas + 2 + numeroJogadas)));
+        }
+    }
+
+    private static void lerTudo(FileChannel canal, ByteBuffer destino, long posicao) throws IOException {
+        while (destino.hasRemaining()) {
+            int n = canal.read(destino, posicao);
+            if (n < 0) throw new IOException("Fim inesperado do ficheiro");
+            posicao += n;
+        }
+    }
+
+    private static void escreverTudo(FileChannel canal, ByteBuffer origem, long posicao) throws IOException {
+        while (origem.hasRemaining()) posicao += canal.write(origem, posicao);
+    }
+
+    /**
+     * Refaz a partida até restarem no máximo {@code vazias} casas vazias e resolve o resto
+     * com jogo perfeito: diz se quem estava a ganhar ainda podia perder (ou vice-versa).
+     */
+    private static String analisarFim(PartidaArquivada partida, int vazias) {
+        Tabuleiro tabuleiro = new Tabuleiro();
+        tabuleiro.inicializar();
+        int n = 0;
+        while (n < partida.getNumeroJogadas() && tabuleiro.contarVazias() > vazias) {
+            int jogada = partida.getJogada(n++);
+            if (jogada == PASSAGEM) tabuleiro.passar();
+            else tabuleiro.jogar(jogada, tabuleiro.getVez());
+        }
+        if (tabuleiro.contarVazias() > vazias) {
+            return "A partida acabou com " + tabuleiro.contarVazias() + " casas vazias.";
+        }
+        return "Depois de " + n + " jogadas: " + SolucionadorFinal.analisar(tabuleiro, 600);
+    }
+
+    /**
+     * Consulta um arquivo na linha de comandos.
+     * Uso: java servidor.ArquivoPartidas &lt;pasta&gt; [--id n [--analisar vazias]] [--jogador nome]
+     *      [--desde AAAA-MM-DD] [--ate AAAA-MM-DD] [--contar]
+     * Com --analisar, a partida indicada é refeita até restarem esse número de casas vazias
+     * e o fim é resolvido com jogo perfeito ({@link SolucionadorFinal}).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Uso: java servidor.ArquivoPartidas <pasta> [--id n [--analisar vazias]]"
+                    + " [--jogador nome] [--desde AAAA-MM-DD] [--ate AAAA-MM-DD] [--contar]");
+            System.exit(2);
+        }
+        int id = -1;
+        String jogador = null;
+        long desde = 0, ate = Long.MAX_VALUE;
+        boolean contar = false;
+        int analisar = -1;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--id" -> id = Integer.parseInt(args[++i]);
+                case "--jogador" -> jogador = args[++i];
+                case "--desde" -> desde = LocalDate.parse(args[++i]).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+                case "--ate" -> ate = LocalDate.parse(args[++i]).plusDays(1).atStartOfDay()
+                        .toEpochSecond(ZoneOffset.UTC) - 1;
+                case "--contar" -> contar = true;
+                case "--analisar" -> analisar = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Opção desconhecida: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        ArquivoPartidas arquivo = abrirParaLeitura(Path.of(args[0]));
+        try {
+            if (id >= 0) {
+                PartidaArquivada p = arquivo.buscar(id);
+                System.out.println(p != null ? p : "A partida " + id + " não está no arquivo.");
+                if (p != null && analisar >= 0) System.out.println(analisarFim(p, analisar));
+            } else {
+                long[] total = new long[1];
+                boolean soContar = contar;
+                arquivo.procurar(jogador, desde, ate, p -> {
+                    total[0]++;
+                    if (!soContar) System.out.println(p);
+                });
+                System.out.println(total[0] + " partidas.");
+            }
+        } finally {
+            arquivo.fechar();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package servidor;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Ciclo de eventos não bloqueante (java.nio) usado no modo "nio" do servidor.
+ *
+ * Cada ciclo corre numa única thread com um {@link Selector}: fica à espera até algum dos
+ * seus canais ter dados para ler (ou espaço para escrever) e trata-os sem nunca bloquear.
+ * Assim, um pequeno número de ciclos (normalmente um por processador) serve milhares de
+ * ligações ao mesmo tempo.
+ *
+ * Outras threads não podem mexer diretamente nos canais de um ciclo; pedem-lhe para
+ * executar uma tarefa ({@link #executar(Runnable)}), que corre na thread do ciclo.
+ *
+ * As tarefas e os tratadores correm a lógica do jogo na thread do ciclo. Um erro inesperado
+ * num deles fica registado e, se vier de um canal, fecha só essa ligação: o ciclo continua,
+ * senão todas as outras ligações do ciclo ficariam paradas.
+ */
+public class CicloEventos implements Runnable {
+
+    /**
+     * Quem está registado num ciclo e é avisado quando o seu canal está pronto.
+     */
+    public interface Tratador {
+        void aoEstarPronto(SelectionKey chave) throws IOException;
+
+        /** Chamado quando o tratamento falha (o canal deve ser fechado). */
+        void aoFalhar(IOException e);
+    }
+
+    private final Selector seletor;
+    private final Queue<Runnable> tarefas = new ConcurrentLinkedQueue<>();
+    private final String nome;
+    private Thread thread;
+
+    public CicloEventos(String nome) throws IOException {
+        this.nome = nome;
+        this.seletor = Selector.open();
+    }
+
+    /**
+     * Arranca a thread do ciclo.
+     */
+    public void iniciar() {
+        thread = new Thread(this, nome);
+        thread.start();
+    }
+
+    /**
+     * Pede ao ciclo que execute uma tarefa na sua thread (pode ser chamado de qualquer thread).
+     */
+    public void executar(Runnable tarefa) {
+        tarefas.add(tarefa);
+        if (Thread.currentThread() != thread) seletor.wakeup();
+    }
+
+    /**
+     * Indica se quem chama está a correr na thread deste ciclo.
+     */
+    public boolean naThreadDoCiclo() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Regista um canal neste ciclo. Só pode ser chamado na thread do ciclo.
+     */
+    public SelectionKey registar(SelectableChannel canal, int interesses, Tratador tratador) throws ClosedChannelException {
+        return canal.register(seletor, interesses, tratador);
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // Tarefas pedidas pela própria thread do ciclo (por exemplo, uma escrita pedida
+                // ao tratar uma leitura) não acordam o seletor: nesse caso não se pode ficar
+                // à espera, só se verifica o que já está pronto.
+                if (tarefas.isEmpty()) seletor.select(); else seletor.selectNow();
+            } catch (IOException e) {
+                System.err.println("Erro no ciclo " + nome + ": " + e.getMessage());
+                return;
+            }
+
+            // Primeiro as tarefas pedidas por outras threads (novas ligações, escritas, fechos)
+            Runnable tarefa;
+            while ((tarefa = tarefas.poll()) != null) {
+                try {
+                    tarefa.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Erro numa tarefa do ciclo " + nome + ":");
+                    e.printStackTrace();
+                }
+            }
+
+            // Depois os canais que estão prontos
+            Iterator<SelectionKey> it = seletor.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey chave = it.next();
+                it.remove();
+                Tratador tratador = (Tratador) chave.attachment();
+                try {
+                    if (chave.isValid()) tratador.aoEstarPronto(chave);
+                } catch (IOException e) {
+                    falhar(tratador, e);
+                } catch (RuntimeException e) {
+                    System.err.println("Erro numa ligação do ciclo " + nome + " (a ligação é fechada):");
+                    e.printStackTrace();
+                    falhar(tratador, new IOException(e));
+                }
+            }
+        }
+    }
+
+    /**
+     * Avisa o tratador de que o seu canal falhou, sem deixar que um erro ao fechá-lo pare o ciclo.
+     */
+    private void falhar(Tratador tratador, IOException e) {
+        try {
+            tratador.aoFalhar(e);
+        } catch (RuntimeException ex) {
+            System.err.println("Erro ao fechar uma ligação do ciclo " + nome + ":");
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package servidor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Classificação (rating Elo) de cada jogador, pelo nome. Usada pela política de
+ * emparelhamento por faixas. Só existe em memória: recomeça quando o servidor reinicia.
+ */
+public class Classificacao {
+
+    // Classificação de quem ainda não jogou
+    public static final int INICIAL = 1500;
+    // Quanto uma partida pode mudar a classificação
+    private static final int FATOR_K = 32;
+
+    private final Map<String, Integer> pontos = new ConcurrentHashMap<>();
+    // Trinco das atualizações (ReentrantLock e não synchronized, para não prender as threads virtuais)
+    private final ReentrantLock trinco = new ReentrantLock();
+
+    public int de(String nome) {
+        return pontos.getOrDefault(nome, INICIAL);
+    }
+
+    /**
+     * Atualiza a classificação dos dois jogadores depois de uma partida.
+     *
+     * @param diferenca peças das pretas menos peças das brancas no fim
+     */
+    public void registarResultado(String pretas, String brancas, int diferenca) {
+        if (pretas.equals(brancas)) return;
+        double resultado = diferenca > 0 ? 1 : diferenca < 0 ? 0 : 0.5; // Do ponto de vista das pretas
+        // Atualização feita de uma vez para os dois, para não misturar partidas simultâneas
+        trinco.lock();
+        try {
+            int rp = de(pretas), rb = de(brancas);
+            double esperado = 1 / (1 + Math.pow(10, (rb - rp) / 400.0));
+            int variacao = (int) Math.round(FATOR_K * (resultado - esperado));
+            pontos.put(pretas, rp + variacao);
+            pontos.put(brancas, rb - variacao);
+        } finally {
+            trinco.unlock();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package servidor;
+
+/**
+ * Opções de arranque do servidor, lidas da linha de comandos.
+ *
+ * Opções disponíveis:
+ * <pre>
+ *   --ip &lt;endereço&gt;      IP onde o servidor escuta (por omissão 10.20.10.100)
+ *   --porta &lt;número&gt;     porta onde o servidor escuta (por omissão 2025)
+ *   --modo &lt;modo&gt;        plataforma | virtual | nio (por omissão plataforma)
+ *   --ciclos &lt;número&gt;    número de ciclos de eventos no modo nio (por omissão, um por processador)
+ *   --emparelhamento &lt;p&gt;  fifo | faixas (por classificação) (por omissão fifo)
+ *   --backlog &lt;número&gt;   ligações à espera de serem aceites que o sistema guarda (por omissão 128)
+ *   --prazo-apresentacao &lt;s&gt;  segundos para o cliente enviar o nome (por omissão 10; 0 = sem limite)
+ *   --inatividade &lt;s&gt;   segundos sem mensagens até desligar o cliente (por omissão 600; 0 = nunca)
+ *   --fila-saida &lt;número&gt;  mensagens à espera de serem enviadas a um cliente (por omissão 256)
+ *   --chat-por-segundo &lt;n&gt;  mensagens de chat aceites por segundo de cada jogador (por omissão 2; 0 = sem limite)
+ *   --prazo-retoma &lt;s&gt;  segundos para um jogador que se desligou voltar à partida (por omissão 30; 0 = não espera)
+ *   --diario &lt;pasta&gt;    pasta do diário das partidas, para as recuperar se o servidor for abaixo
+ *                        (por omissão nenhuma: as partidas só existem em memória)
+ *   --arquivo &lt;pasta&gt;   pasta do arquivo onde ficam guardadas as partidas terminadas (por omissão nenhuma)
+ *   --motor-apos &lt;s&gt;    segundos de espera sem adversário até jogar contra o computador (por omissão 0 = nunca)
+ *   --motor-nivel &lt;n&gt;   força do computador, de 1 a 10 (por omissão 5)
+ *   --motor-threads &lt;n&gt; threads a pensar pelo computador (por omissão, metade dos processadores)
+ *   --motor-threads-pesquisa &lt;n&gt;  threads extra que cada jogada do computador pode usar quando
+ *                        os processadores estão livres, incluindo a própria (por omissão 1)
+ * </pre>
+ */
+public class ConfiguracaoServidor {
+
+    private String ip = "10.20.10.100"; // IP onde o servidor vai escutar (mude para o IP da sua máquina)
+    private int porta = 2025;           // Porta onde o servidor vai escutar
+    private ModoServidor modo = ModoServidor.PLATAFORMA;
+    private int ciclos = Runtime.getRuntime().availableProcessors();
+    private String emparelhamento = "fifo";
+    private int backlog = 128;
+    private int prazoApresentacao = 10;
+    private int inatividade = 600;
+    private int filaSaida = 256;
+    private int chatPorSegundo = 2;
+    private int prazoRetoma = 30;
+    private String diario = null;
+    private String arquivo = null;
+    private int motorApos = 0;
+    private int motorNivel = 5;
+    private int motorThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int motorThreadsPesquisa = 1;
+
+    /**
+     * Lê as opções da linha de comandos. Opções desconhecidas dão erro.
+     *
+     * @throws IllegalArgumentException se alguma opção for inválida
+     */
+    public static ConfiguracaoServidor lerArgumentos(String[] args) {
+        ConfiguracaoServidor c = new ConfiguracaoServidor();
+        for (int i = 0; i < args.length; i++) {
+            String opcao = args[i];
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Falta o valor da opção " + opcao);
+            String valor = args[++i];
+            switch (opcao) {
+                case "--ip" -> c.ip = valor;
+                case "--porta" -> c.porta = Integer.parseInt(valor);
+                case "--modo" -> c.modo = ModoServidor.deTexto(valor);
+                case "--ciclos" -> c.ciclos = Integer.parseInt(valor);
+                case "--emparelhamento" -> {
+                    PoliticaEmparelhamento.deTexto(valor); // Só para validar o nome
+                    c.emparelhamento = valor.toLowerCase();
+                }
+                case "--backlog" -> c.backlog = Integer.parseInt(valor);
+                case "--prazo-apresentacao" -> c.prazoApresentacao = Integer.parseInt(valor);
+                case "--inatividade" -> c.inatividade = Integer.parseInt(valor);
+                case "--fila-saida" -> c.filaSaida = Integer.parseInt(valor);
+                case "--chat-por-segundo" -> c.chatPorSegundo = Integer.parseInt(valor);
+                case "--prazo-retoma" -> c.prazoRetoma = Integer.parseInt(valor);
+                case "--diario" -> c.diario = valor;
+                case "--arquivo" -> c.arquivo = valor;
+                case "--motor-apos" -> c.motorApos = Integer.parseInt(valor);
+                case "--motor-nivel" -> c.motorNivel = Integer.parseInt(valor);
+                case "--motor-threads" -> c.motorThreads = Integer.parseInt(valor);
+                case "--motor-threads-pesquisa" -> c.motorThreadsPesquisa = Integer.parseInt(valor);
+                default -> throw new IllegalArgumentException("Opção desconhecida: " + opcao);
+            }
+        }
+        if (c.ciclos < 1) throw new IllegalArgumentException("--ciclos tem de ser pelo menos 1");
+        if (c.backlog < 1) throw new IllegalArgumentException("--backlog tem de ser pelo menos 1");
+        if (c.prazoApresentacao < 0 || c.inatividade < 0 || c.prazoRetoma < 0)
+            throw new IllegalArgumentException("Os prazos não podem ser negativos");
+        if (c.filaSaida < 1) throw new IllegalArgumentException("--fila-saida tem de ser pelo menos 1");
+        if (c.chatPorSegundo < 0) throw new IllegalArgumentException("--chat-por-segundo não pode ser negativo");
+        if (c.motorApos < 0) throw new IllegalArgumentException("--motor-apos não pode ser negativo");
+        if (c.motorNivel < 1 || c.motorNivel > 10) throw new IllegalArgumentException("--motor-nivel tem de ser de 1 a 10");
+        if (c.motorThreads < 1) throw new IllegalArgumentException("--motor-threads tem de ser pelo menos 1");
+        if (c.motorThreadsPesquisa < 1)
+            throw new IllegalArgumentException("--motor-threads-pesquisa tem de ser pelo menos 1");
+        return c;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public int getPorta() {
+        return porta;
+    }
+
+    public ModoServidor getModo() {
+        return modo;
+    }
+
+    public int getCiclos() {
+        return ciclos;
+    }
+
+    public String getEmparelhamento() {
+        return emparelhamento;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public int getPrazoApresentacao() {
+        return prazoApresentacao;
+    }
+
+    public int getInatividade() {
+        return inatividade;
+    }
+
+    public int getFilaSaida() {
+        return filaSaida;
+    }
+
+    public int getChatPorSegundo() {
+        return chatPorSegundo;
+    }
+
+    public int getPrazoRetoma() {
+        return prazoRetoma;
+    }
+
+    /**
+     * Pasta do diário das partidas, ou null se não houver diário.
+     */
+    public String getDiario() {
+        return diario;
+    }
+
+    /**
+     * Pasta do arquivo das partidas terminadas, ou null se não houver arquivo.
+     */
+    public String getArquivo() {
+        return arquivo;
+    }
+
+    /**
+     * Segundos que um jogador espera por adversário até jogar contra o computador (0 = nunca).
+     */
+    public int getMotorApos() {
+        return motorApos;
+    }
+
+    public int getMotorNivel() {
+        return motorNivel;
+    }
+
+    public int getMotorThreads() {
+        return motorThreads;
+    }
+
+    /**
+     * Número máximo de threads de cada pesquisa do computador (ver {@link PesquisaParalela}).
+     */
+    public int getMotorThreadsPesquisa() {
+        return motorThreadsPesquisa;
+    }
+}
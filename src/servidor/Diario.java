@@ -0,0 +1,478 @@
+package servidor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Diário das partidas: ficheiros onde cada acontecimento de cada partida (partida criada,
+ * jogada, passagem de vez, tempo esgotado, fim) é acrescentado no fim, sem nunca reescrever
+ * o que já lá está. Se o servidor for abaixo, ao arrancar de novo lê o diário e refaz as
+ * partidas que estavam a decorrer, repetindo as jogadas num tabuleiro novo (ver
+ * {@link Partida#recuperar}); os jogadores voltam a elas com a chave que já tinham.
+ *
+ * Gravar no disco (force) demora milissegundos, por isso a partida não espera por isso:
+ * o registo é só copiado para um buffer em memória (uns poucos microssegundos) e a thread
+ * do diário escreve de uma vez tudo o que se juntou enquanto esperava pelo disco ("group
+ * commit"). Se o servidor for abaixo, perdem-se no máximo os registos que ainda não tinham
+ * sido gravados.
+ *
+ * O diário está dividido em segmentos (diario-000001.log, diario-000002.log, ...). Quando
+ * um segmento passa de {@link #TAMANHO_SEGMENTO} bytes começa-se outro, e os segmentos mais
+ * antigos são apagados logo que todas as partidas criadas neles tenham acabado.
+ *
+ * Cada registo tem: tamanho do corpo (2 bytes), corpo (tipo, 1 byte; número da partida,
+ * 4 bytes; dados do tipo) e um CRC32C do corpo (4 bytes), para se saber, ao ler, onde
+ * acaba a parte bem escrita (um registo pode ter ficado a meio quando o servidor caiu).
+ */
+public class Diario {
+
+    // Tipos de registo
+    private static final byte CRIADA = 1;          // chaves das pretas e brancas, nomes das pretas e brancas
+    private static final byte JOGADA = 2;          // casa (linha*8+coluna)
+    private static final byte PASSAGEM = 3;        // o jogador passou a vez
+    private static final byte TEMPO_ESGOTADO = 4;  // acabou o tempo do jogador
+    private static final byte FIM = 5;             // a partida acabou (ou foi abandonada)
+
+    // Valores guardados em vez da casa quando a vez passa sem jogada (ver PartidaGuardada)
+    public static final int PASSOU = -1;
+    public static final int SEM_TEMPO = -2;
+
+    // Tamanho a partir do qual se começa um segmento novo
+    static final long TAMANHO_SEGMENTO = 16L << 20;
+    // Tamanho inicial dos buffers onde os registos se juntam (crescem se for preciso)
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    /**
+     * Uma partida que estava a decorrer, tal como ficou no diário.
+     */
+    public static final class PartidaGuardada {
+        private final int id;
+        private final long[] chaves;
+        private final String[] nomes;
+        // Casas jogadas por ordem (PASSOU ou SEM_TEMPO quando a vez passou sem jogada)
+        private byte[] jogadas = new byte[64];
+        private int numeroJogadas = 0;
+
+        PartidaGuardada(int id, long chavePretas, long chaveBrancas, String pretas, String brancas) {
+            this.id = id;
+            this.chaves = new long[]{chavePretas, chaveBrancas};
+            this.nomes = new String[]{pretas, brancas};
+        }
+
+        void juntar(int jogada) {
+            if (numeroJogadas == jogadas.length) jogadas = Arrays.copyOf(jogadas, jogadas.length * 2);
+            jogadas[numeroJogadas++] = (byte) jogada;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /** Chave do jogador (0 = pretas, 1 = brancas). */
+        public long getChave(int jogador) {
+            return chaves[jogador];
+        }
+
+        /** Nome do jogador (0 = pretas, 1 = brancas). */
+        public String getNome(int jogador) {
+            return nomes[jogador];
+        }
+
+        public int getNumeroJogadas() {
+            return numeroJogadas;
+        }
+
+        /** Casa da jogada n (linha*8+coluna), ou PASSOU / SEM_TEMPO. */
+        public int getJogada(int n) {
+            return jogadas[n];
+        }
+    }
+
+    private final Path pasta;
+    private final long tamanhoSegmento;
+    private final List<PartidaGuardada> recuperadas;
+    private final int maiorId;
+
+    // --- Partilhado entre as partidas e a thread do diário (protegido pelo trinco) ---
+    private final ReentrantLock trinco = new ReentrantLock();
+    private final Condition haRegistos = trinco.newCondition();
+    private final CRC32C crc = new CRC32C();
+    // Onde as partidas juntam os registos; a thread do diário troca-o pelo outro e escreve-o
+    private ByteBuffer aJuntar = ByteBuffer.allocate(TAMANHO_BUFFER);
+    private ByteBuffer aEscrever = ByteBuffer.allocate(TAMANHO_BUFFER);
+    private boolean fechado = false;
+    // Onde começa o corpo do registo que está a ser escrito no buffer
+    private int inicioRegisto;
+
+    // --- Só usados pela thread do diário ---
+    private FileChannel canal;
+    private int segmento;
+    // Segmentos que existem no disco, do mais antigo ao atual
+    private final ArrayDeque<Integer> segmentos = new ArrayDeque<>();
+    // Segmento onde foi criada cada partida ainda a decorrer, e quantas há em cada segmento
+    private final Map<Integer, Integer> segmentoDaPartida = new HashMap<>();
+    private final Map<Integer, Integer> vivasPorSegmento = new HashMap<>();
+
+    private final Thread escritor;
+
+    private Diario(Path pasta, long tamanhoSegmento, List<PartidaGuardada> recuperadas, int maiorId) {
+        this.pasta = pasta;
+        this.tamanhoSegmento = tamanhoSegmento;
+        this.recuperadas = recuperadas;
+        this.maiorId = maiorId;
+        this.escritor = new Thread(this::escrever, "diario");
+        this.escritor.setDaemon(true);
+    }
+
+    /**
+     * Abre o diário na pasta indicada (criando-a se for preciso). Se já houver segmentos,
+     * lê-os e guarda as partidas que ficaram a decorrer ({@link #getRecuperadas}); essas
+     * partidas são copiadas para um segmento novo e os segmentos antigos são apagados.
+     */
+    public static Diario abrir(Path pasta) throws IOException {
+        return abrir(pasta, TAMANHO_SEGMENTO);
+    }
+
+    /**
+     * Como {@link #abrir(Path)}, mas com outro tamanho de segmento (os testes usam segmentos
+     * pequenos para verem os segmentos a mudar e a ser apagados).
+     */
+    static Diario abrir(Path pasta, long tamanhoSegmento) throws IOException {
+        Files.createDirectories(pasta);
+        TreeMap<Integer, Path> antigos = new TreeMap<>();
+        try (DirectoryStream<Path> ficheiros = Files.newDirectoryStream(pasta, "diario-*.log")) {
+            for (Path f : ficheiros) {
+                String nome = f.getFileName().toString();
+                try {
+                    antigos.put(Integer.parseInt(nome.substring(7, nome.length() - 4)), f);
+                } catch (NumberFormatException e) {
+                    // Não é um segmento deste diário
+                }
+            }
+        }
+
+        // Lê os segmentos por ordem; as partidas que chegam ao FIM deixam de interessar
+        Map<Integer, PartidaGuardada> vivas = new LinkedHashMap<>();
+        int maiorId = 0;
+        for (Path f : antigos.values()) {
+            maiorId = Math.max(maiorId, ler(ByteBuffer.wrap(Files.readAllBytes(f)), vivas, f));
+        }
+
+        Diario diario = new Diario(pasta, tamanhoSegmento, new ArrayList<>(vivas.values()), maiorId);
+        diario.segmento = antigos.isEmpty() ? 1 : antigos.lastKey() + 1;
+        diario.abrirSegmento();
+
+        // As partidas recuperadas passam para o segmento novo, gravado antes de apagar os antigos
+        for (PartidaGuardada g : diario.recuperadas) diario.copiar(g);
+        // Um FIM do maior número já usado guarda-o para o próximo arranque (não volta a ser dado)
+        if (maiorId > 0 && !vivas.containsKey(maiorId)) diario.partidaTerminada(maiorId);
+        diario.gravar();
+        for (Path f : antigos.values()) Files.delete(f);
+
+        diario.escritor.start();
+        return diario;
+    }
+
+    /**
+     * Lê os registos de um segmento e aplica-os às partidas. Devolve o maior número de
+     * partida encontrado.
+     */
+    private static int ler(ByteBuffer b, Map<Integer, PartidaGuardada> vivas, Path ficheiro) {
+        CRC32C crc = new CRC32C();
+        int maiorId = 0;
+        while (b.remaining() >= 2) {
+            int inicio = b.position();
+            int tamanho = Short.toUnsignedInt(b.getShort());
+            if (tamanho < 5 || b.remaining() < tamanho + 4) {
+                b.position(inicio);
+                break;
+            }
+            crc.reset();
+            crc.update(b.array(), b.position(), tamanho);
+            if ((int) crc.getValue() != b.getInt(b.position() + tamanho)) {
+                b.position(inicio);
+                break;
+            }
+            int fimRegisto = b.position() + tamanho + 4;
+            byte tipo = b.get();
+            int id = b.getInt();
+            maiorId = Math.max(maiorId, id);
+            PartidaGuardada g = vivas.get(id);
+            switch (tipo) {
+                case CRIADA -> {
+                    long chavePretas = b.getLong(), chaveBrancas = b.getLong();
+                    String pretas = lerTexto(b), brancas = lerTexto(b);
+                    vivas.put(id, new PartidaGuardada(id, chavePretas, chaveBrancas, pretas, brancas));
+                }
+                case JOGADA -> {
+                    if (g != null) g.juntar(b.get());
+                }
+                case PASSAGEM -> {
+                    if (g != null) g.juntar(PASSOU);
+                }
+                case TEMPO_ESGOTADO -> {
+                    if (g != null) g.juntar(SEM_TEMPO);
+                }
+                case FIM -> vivas.remove(id);
+                default -> {
+                    // Tipo desconhecido: ignora-se o registo
+                }
+            }
+            b.position(fimRegisto);
+        }
+        if (b.hasRemaining()) {
+            System.out.println("Diário: " + b.remaining() + " bytes no fim de " + ficheiro.getFileName()
+                    + " ignorados (registo incompleto).");
+        }
+        return maiorId;
+    }
+
+    private static String lerTexto(ByteBuffer b) {
+        int tamanho = Short.toUnsignedInt(b.getShort());
+        String texto = new String(b.array(), b.position(), tamanho, StandardCharsets.UTF_8);
+        b.position(b.position() + tamanho);
+        return texto;
+    }
+
+    /**
+     * Partidas que estavam a decorrer quando o servidor parou.
+     */
+    public List<PartidaGuardada> getRecuperadas() {
+        return recuperadas;
+    }
+
+    /**
+     * Maior número de partida que aparece no diário (as partidas novas devem usar números acima).
+     */
+    public int getMaiorId() {
+        return maiorId;
+    }
+
+    // --- Registos (chamados pelas partidas, com o trinco da partida) ---
+
+    public void partidaCriada(int id, String pretas, String brancas, long chavePretas, long chaveBrancas) {
+        byte[] p = pretas.getBytes(StandardCharsets.UTF_8);
+        byte[] b = brancas.getBytes(StandardCharsets.UTF_8);
+        trinco.lock();
+        try {
+            ByteBuffer buf = comecar(CRIADA, id, 16 + 4 + p.length + b.length);
+            if (buf == null) return;
+            buf.putLong(chavePretas).putLong(chaveBrancas);
+            buf.putShort((short) p.length).put(p).putShort((short) b.length).put(b);
+            acabar(buf);
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    public void jogada(int id, int casa) {
+        trinco.lock();
+        try {
+            ByteBuffer buf = comecar(JOGADA, id, 1);
+            if (buf == null) return;
+            buf.put((byte) casa);
+            acabar(buf);
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * A vez passou sem jogada: porque o jogador passou ou porque acabou o seu tempo.
+     */
+    public void passagem(int id, boolean porTempo) {
+        registoSimples(porTempo ? TEMPO_ESGOTADO : PASSAGEM, id);
+    }
+
+    public void partidaTerminada(int id) {
+        registoSimples(FIM, id);
+    }
+
+    private void registoSimples(byte tipo, int id) {
+        trinco.lock();
+        try {
+            ByteBuffer buf = comecar(tipo, id, 0);
+            if (buf != null) acabar(buf);
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Começa um registo no buffer (que cresce se não tiver espaço). Devolve null se o
+     * diário já estiver fechado.
+     */
+    private ByteBuffer comecar(byte tipo, int id, int tamanhoDados) {
+        if (fechado) return null;
+        int total = 2 + 5 + tamanhoDados + 4;
+        if (aJuntar.remaining() < total) {
+            // O disco está mais lento do que as partidas: o buffer cresce, ninguém espera
+            ByteBuffer maior = ByteBuffer.allocate(Math.max(aJuntar.capacity() * 2, aJuntar.position() + total));
+            aJuntar.flip();
+            maior.put(aJuntar);
+            aJuntar = maior;
+        }
+        aJuntar.putShort((short) (5 + tamanhoDados));
+        inicioRegisto = aJuntar.position();
+        return aJuntar.put(tipo).putInt(id);
+    }
+
+    /**
+     * Acaba o registo (escreve o CRC) e acorda a thread do diário se estava parada.
+     */
+    private void acabar(ByteBuffer buf) {
+        crc.reset();
+        crc.update(buf.array(), inicioRegisto, buf.position() - inicioRegisto);
+        buf.putInt((int) crc.getValue());
+        if (inicioRegisto == 2) haRegistos.signal(); // Primeiro registo do lote
+    }
+
+    // --- Thread do diário ---
+
+    /**
+     * Ciclo da thread do diário: espera por registos, troca os buffers (as partidas
+     * continuam a juntar no outro) e escreve o lote de uma vez, seguido de um só force.
+     */
+    private void escrever() {
+        try {
+            while (true) {
+                ByteBuffer lote;
+                trinco.lock();
+                try {
+                    while (aJuntar.position() == 0 && !fechado) haRegistos.await();
+                    if (aJuntar.position() == 0) return; // Fechado e sem nada por escrever
+                    lote = aJuntar;
+                    aJuntar = aEscrever;
+                    aEscrever = lote;
+                } finally {
+                    trinco.unlock();
+                }
+                lote.flip();
+                acompanharPartidas(lote);
+                while (lote.hasRemaining()) canal.write(lote);
+                canal.force(false);
+                lote.clear();
+                if (canal.size() >= tamanhoSegmento) {
+                    canal.close();
+                    segmento++;
+                    abrirSegmento();
+                }
+                apagarSegmentosAntigos();
+            }
+        } catch (IOException e) {
+            System.err.println("Diário: erro a escrever (" + e.getMessage() + "); deixa de ser escrito.");
+            trinco.lock();
+            try {
+                fechado = true;
+            } finally {
+                trinco.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // Já não há nada a fazer
+            }
+        }
+    }
+
+    /**
+     * Grava já tudo o que está juntado, na thread de quem chama. Só é usado ao abrir,
+     * antes de a thread do diário arrancar.
+     */
+    private void gravar() throws IOException {
+        aJuntar.flip();
+        acompanharPartidas(aJuntar);
+        while (aJuntar.hasRemaining()) canal.write(aJuntar);
+        canal.force(false);
+        aJuntar.clear();
+    }
+
+    /**
+     * Escreve os registos de uma partida recuperada, como se tivesse sido criada agora.
+     */
+    private void copiar(PartidaGuardada g) {
+        partidaCriada(g.id, g.nomes[0], g.nomes[1], g.chaves[0], g.chaves[1]);
+        for (int i = 0; i < g.numeroJogadas; i++) {
+            int j = g.jogadas[i];
+            if (j >= 0) jogada(g.id, j);
+            else passagem(g.id, j == SEM_TEMPO);
+        }
+    }
+
+    private void abrirSegmento() throws IOException {
+        Path f = pasta.resolve(String.format("diario-%06d.log", segmento));
+        canal = FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentos.add(segmento);
+    }
+
+    /**
+     * Toma nota, antes de escrever um lote, das partidas que começam (ficam no segmento
+     * atual) e das que acabam (deixam de prender o segmento onde começaram).
+     */
+    private void acompanharPartidas(ByteBuffer lote) {
+        for (int i = lote.position(); i < lote.limit(); ) {
+            int tamanho = Short.toUnsignedInt(lote.getShort(i));
+            byte tipo = lote.get(i + 2);
+            int id = lote.getInt(i + 3);
+            if (tipo == CRIADA) {
+                segmentoDaPartida.put(id, segmento);
+                vivasPorSegmento.merge(segmento, 1, Integer::sum);
+            } else if (tipo == FIM) {
+                Integer s = segmentoDaPartida.remove(id);
+                if (s != null) vivasPorSegmento.merge(s, -1, Integer::sum);
+            }
+            i += 2 + tamanho + 4;
+        }
+    }
+
+    /**
+     * Apaga os segmentos mais antigos (nunca o atual) onde já não começou nenhuma partida
+     * que ainda esteja a decorrer: as partidas mais recentes estão todas em segmentos
+     * seguintes.
+     */
+    private void apagarSegmentosAntigos() throws IOException {
+        while (segmentos.size() > 1 && vivasPorSegmento.getOrDefault(segmentos.peekFirst(), 0) == 0) {
+            int s = segmentos.pollFirst();
+            vivasPorSegmento.remove(s);
+            Files.deleteIfExists(pasta.resolve(String.format("diario-%06d.log", s)));
+        }
+    }
+
+    /**
+     * Grava o que falta e pára a thread do diário. Os registos seguintes são ignorados.
+     */
+    public void fechar() {
+        trinco.lock();
+        try {
+            fechado = true;
+            haRegistos.signal();
+        } finally {
+            trinco.unlock();
+        }
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
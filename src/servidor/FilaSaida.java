@@ -0,0 +1,214 @@
+package servidor;
+
+import protocolo.TipoMensagem;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fila limitada das mensagens (já codificadas) à espera de serem escritas para um cliente.
+ *
+ * Sem limite, um cliente que deixa de ler faria a fila crescer para sempre; e escrevendo
+ * diretamente no socket, bloquearia a partida inteira quando o socket enchesse. Com esta
+ * fila, quem envia nunca espera: se a fila estiver cheia, a mensagem segue a política do
+ * seu tipo ({@link Transbordo}): é descartada, substitui uma mais antiga do mesmo tipo,
+ * ou a ligação é fechada.
+ *
+ * As mensagens só são retiradas depois de escritas. É usada por várias threads (quem
+ * envia e quem escreve), por isso o estado é protegido por um trinco. (Um trinco e não
+ * synchronized/wait: uma thread virtual parada num wait() prenderia a thread do sistema
+ * que a corre.)
+ */
+public class FilaSaida {
+
+    /**
+     * Uma mensagem à espera de ser escrita.
+     */
+    private static final class Pendente {
+        final TipoMensagem tipo;
+        final ByteBuffer bytes;
+
+        Pendente(TipoMensagem tipo, ByteBuffer bytes) {
+            this.tipo = tipo;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int limite;
+    private final ReentrantLock trinco = new ReentrantLock();
+    private final Condition haDespejadas = trinco.newCondition();
+    private final ArrayDeque<Pendente> fila = new ArrayDeque<>();
+    // Quantas das primeiras mensagens da fila já foram despejadas (podem ser escritas)
+    private int despejadas = 0;
+    // Escritos só com o trinco; voláteis para se poderem ler sem ele
+    private volatile boolean fechada = false;
+    private volatile long descartadas = 0;
+    // Quantas das primeiras mensagens foram entregues a quem escreve e ainda estão a ser escritas
+    private int emEscrita = 0;
+
+    /**
+     * @param limite número máximo de mensagens à espera
+     */
+    public FilaSaida(int limite) {
+        this.limite = limite;
+    }
+
+    /**
+     * Junta uma mensagem à fila. Devolve false se a fila está cheia e a mensagem não pode
+     * ser perdida: nesse caso quem chama deve fechar a ligação.
+     */
+    public boolean adicionar(TipoMensagem tipo, byte[] bytes) {
+        trinco.lock();
+        try {
+            if (fechada) return true; // Ninguém a vai ler: perde-se sem mais
+            if (fila.size() >= limite) {
+                switch (Transbordo.de(tipo)) {
+                    case DESCARTAR -> {
+                        descartadas++;
+                        return true;
+                    }
+                    case SUBSTITUIR -> {
+                        if (!retirarMaisAntiga(tipo)) {
+                            descartadas++;
+                            return true;
+                        }
+                    }
+                    case DESLIGAR -> {
+                        return false;
+                    }
+                }
+            }
+            fila.add(new Pendente(tipo, ByteBuffer.wrap(bytes)));
+            return true;
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Retira a mensagem mais antiga do tipo indicado que ainda não começou a ser escrita.
+     */
+    private boolean retirarMaisAntiga(TipoMensagem tipo) {
+        int indice = 0;
+        for (Iterator<Pendente> it = fila.iterator(); it.hasNext(); indice++) {
+            Pendente p = it.next();
+            if (indice >= emEscrita && p.tipo == tipo && p.bytes.position() == 0) {
+                it.remove();
+                if (indice < despejadas) despejadas--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marca as mensagens acumuladas até agora como prontas a escrever e acorda quem escreve.
+     */
+    public void despejar() {
+        trinco.lock();
+        try {
+            despejadas = fila.size();
+            haDespejadas.signalAll();
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Copia para o lote as primeiras mensagens despejadas (sem as retirar), para uma escrita
+     * "gathering". Devolve quantas copiou. Tal como em {@link #esperarDespejadas}, as
+     * mensagens ainda só acumuladas ficam para a escrita seguinte, e depois de fechada
+     * contam todas. Usado pelo modo nio, que chama {@link #escritaTerminada} depois de
+     * escrever.
+     */
+    public int preencher(ByteBuffer[] lote) {
+        trinco.lock();
+        try {
+            if (fechada) despejadas = fila.size();
+            int n = 0;
+            for (Pendente p : fila) {
+                if (n == lote.length || n == despejadas) break;
+                lote[n++] = p.bytes;
+            }
+            emEscrita = n;
+            return n;
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Espera que haja mensagens despejadas e copia as primeiras para o lote (sem as
+     * retirar). Depois de fechada, todas as mensagens que restam contam como despejadas.
+     * Devolve 0 quando a fila está fechada e vazia. Usado pela thread de escrita dos
+     * modos com threads, que chama {@link #escritaTerminada} no fim de cada escrita.
+     */
+    public int esperarDespejadas(ByteBuffer[] lote) throws InterruptedException {
+        trinco.lock();
+        try {
+            while (despejadas == 0 && !(fechada && !fila.isEmpty())) {
+                if (fechada) return 0;
+                haDespejadas.await();
+            }
+            if (fechada) despejadas = fila.size();
+            int n = 0;
+            for (Pendente p : fila) {
+                if (n == lote.length || n == despejadas) break;
+                lote[n++] = p.bytes;
+            }
+            emEscrita = n;
+            return n;
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Quem escreve acabou de escrever o lote: as mensagens escritas por inteiro saem da fila.
+     */
+    public void escritaTerminada() {
+        trinco.lock();
+        try {
+            emEscrita = 0;
+            Pendente p;
+            while ((p = fila.peek()) != null && !p.bytes.hasRemaining()) {
+                fila.poll();
+                if (despejadas > 0) despejadas--;
+            }
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Fecha a fila: as mensagens seguintes são ignoradas e quem escreve acaba as que
+     * restam. Devolve true se a fila acabou de ser fechada (não estava já) e ainda há
+     * mensagens por escrever: quem escreve pode estar só a meio de uma escrita normal, ou
+     * bloqueado porque o cliente não lê, e não há forma de saber qual dos dois.
+     */
+    public boolean fechar() {
+        trinco.lock();
+        try {
+            if (fechada) return false;
+            fechada = true;
+            haDespejadas.signalAll();
+            return emEscrita > 0 || !fila.isEmpty();
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    public boolean isFechada() {
+        return fechada;
+    }
+
+    /**
+     * Número de mensagens perdidas por a fila estar cheia.
+     */
+    public long getDescartadas() {
+        return descartadas;
+    }
+}
@@ -0,0 +1,98 @@
+package servidor;
+
+/**
+ * Um jogador que está na fila de emparelhamento à espera de adversário.
+ *
+ * Guarda o que as políticas de emparelhamento precisam para decidir: a classificação do
+ * jogador, quando entrou na fila e, se pediu a desforra, de que partida e com que cor jogou.
+ */
+public class JogadorEmEspera {
+
+    private final Ligacao ligacao;
+    private final int classificacao;
+    private final long chegada = System.nanoTime();
+    // Desforra: id da partida anterior (0 se não pediu desforra), as chaves de sessão que a
+    // partida deu a este jogador e ao adversário, e a cor com que jogou. As chaves são
+    // secretas, por isso ninguém se pode fazer passar pelo adversário (o nome podia ser copiado).
+    private final int partidaAnterior;
+    private final long chaveAnterior;
+    private final long chaveAdversario;
+    private final char corAnterior;
+
+    // Passa a true quando o jogador sai da fila (desistiu, desligou-se ou foi emparelhado)
+    private volatile boolean saiu = false;
+
+    public JogadorEmEspera(Ligacao ligacao, int classificacao) {
+        this(ligacao, classificacao, 0, 0, 0, ' ');
+    }
+
+    public JogadorEmEspera(Ligacao ligacao, int classificacao, int partidaAnterior,
+                           long chaveAnterior, long chaveAdversario, char corAnterior) {
+        this.ligacao = ligacao;
+        this.classificacao = classificacao;
+        this.partidaAnterior = partidaAnterior;
+        this.chaveAnterior = chaveAnterior;
+        this.chaveAdversario = chaveAdversario;
+        this.corAnterior = corAnterior;
+    }
+
+    public Ligacao getLigacao() {
+        return ligacao;
+    }
+
+    public String getNome() {
+        return ligacao.getNome();
+    }
+
+    public int getClassificacao() {
+        return classificacao;
+    }
+
+    /**
+     * Instante (System.nanoTime) em que o jogador entrou na fila.
+     */
+    public long getChegada() {
+        return chegada;
+    }
+
+    /**
+     * Há quanto tempo (em nanossegundos) o jogador está à espera.
+     */
+    public long tempoDeEspera(long agora) {
+        return agora - chegada;
+    }
+
+    /**
+     * Indica se o jogador voltou à fila a pedir a desforra.
+     */
+    public boolean pediuDesforra() {
+        return partidaAnterior != 0;
+    }
+
+    public int getPartidaAnterior() {
+        return partidaAnterior;
+    }
+
+    public long getChaveAnterior() {
+        return chaveAnterior;
+    }
+
+    public long getChaveAdversario() {
+        return chaveAdversario;
+    }
+
+    public char getCorAnterior() {
+        return corAnterior;
+    }
+
+    /**
+     * Indica se o jogador ainda pode ser emparelhado.
+     */
+    public boolean disponivel() {
+        return !saiu && !ligacao.isFechada();
+    }
+
+    void marcarSaida() {
+        saiu = true;
+    }
+}
@@ -0,0 +1,74 @@
+package servidor;
+
+import protocolo.Mensagem;
+import protocolo.MensagemCodificada;
+
+/**
+ * Representa a ligação do servidor a um cliente (jogador).
+ * A partida só conhece esta interface, por isso não precisa de saber como é que as
+ * mensagens chegam ou são enviadas (threads bloqueantes, canais não bloqueantes, etc.),
+ * nem em que protocolo (texto ou binário) fala o cliente.
+ */
+public interface Ligacao {
+
+    /**
+     * Envia uma mensagem ao cliente, no protocolo que o cliente escolheu.
+     * É o mesmo que {@link #acumular} seguido de {@link #despejar}.
+     */
+    default void enviar(Mensagem mensagem) {
+        acumular(mensagem);
+        despejar();
+    }
+
+    /**
+     * Junta uma mensagem às que vão ser enviadas ao cliente, sem a enviar já.
+     * Um acontecimento de uma partida (por exemplo, uma jogada aceite) produz várias
+     * mensagens para cada jogador; acumulando-as e chamando {@link #despejar} no fim,
+     * seguem todas juntas numa só escrita no socket (e num só pacote), em vez de uma
+     * escrita por mensagem.
+     */
+    void acumular(Mensagem mensagem);
+
+    /**
+     * Como {@link #acumular(Mensagem)}, para uma mensagem já codificada que é enviada a
+     * muitas ligações: os bytes são partilhados, não são criados de novo para esta ligação.
+     */
+    void acumular(MensagemCodificada mensagem);
+
+    /**
+     * Envia de uma vez tudo o que foi acumulado. Não faz nada se não houver nada acumulado.
+     */
+    void despejar();
+
+    /**
+     * Fecha a ligação. Pode ser chamado mais do que uma vez.
+     */
+    void fechar();
+
+    /**
+     * Nome com que o jogador se apresentou.
+     */
+    String getNome();
+
+    /**
+     * Define o nome do jogador (lido na apresentação).
+     */
+    void setNome(String nome);
+
+    /**
+     * Muda quem trata as mensagens recebidas por esta ligação
+     * (por exemplo, da sala de espera para a partida).
+     */
+    void setOuvinte(OuvinteLigacao ouvinte);
+
+    /**
+     * Instante (System.nanoTime) em que chegou a última mensagem do cliente.
+     * Serve para desligar clientes inativos.
+     */
+    long getUltimaAtividade();
+
+    /**
+     * Indica se a ligação já foi fechada.
+     */
+    boolean isFechada();
+}
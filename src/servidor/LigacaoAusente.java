@@ -0,0 +1,57 @@
+package servidor;
+
+import protocolo.Mensagem;
+import protocolo.MensagemCodificada;
+
+/**
+ * Lugar de um jogador numa partida recuperada do diário (ver {@link Partida#recuperar})
+ * enquanto ele não volta a ligar-se. Está sempre fechada: o que lhe é enviado perde-se.
+ */
+class LigacaoAusente implements Ligacao {
+
+    private String nome;
+
+    LigacaoAusente(String nome) {
+        this.nome = nome;
+    }
+
+    @Override
+    public void acumular(Mensagem mensagem) {
+    }
+
+    @Override
+    public void acumular(MensagemCodificada mensagem) {
+    }
+
+    @Override
+    public void despejar() {
+    }
+
+    @Override
+    public void fechar() {
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public void setNome(String nome) {
+        this.nome = nome;
+    }
+
+    @Override
+    public void setOuvinte(OuvinteLigacao ouvinte) {
+    }
+
+    @Override
+    public long getUltimaAtividade() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public boolean isFechada() {
+        return true;
+    }
+}
@@ -0,0 +1,191 @@
+package servidor;
+
+import protocolo.LeitorMensagens;
+import protocolo.Mensagem;
+import protocolo.MensagemCodificada;
+import protocolo.Negociacao;
+import protocolo.TipoMensagem;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ligação a um cliente com entrada/saída bloqueante (java.io).
+ * Cada ligação tem uma thread própria que fica bloqueada a ler do socket e entrega cada
+ * mensagem à partida. Com threads virtuais, ter milhares destas threads quase paradas
+ * custa muito pouco.
+ *
+ * O protocolo (texto ou binário) é escolhido pelo cliente nos primeiros bytes que envia
+ * (ver {@link Negociacao}).
+ *
+ * A escrita também tem uma thread própria: as mensagens enviadas ficam numa
+ * {@link FilaSaida} limitada e é essa thread que as escreve. Assim, um cliente que não lê
+ * (com o socket cheio) só bloqueia a sua thread de escrita, nunca a partida.
+ *
+ * Ao fechar, a thread de escrita acaba de enviar o que falta (por exemplo, o FIM) e só
+ * depois fecha o socket. Se passado {@link #PRAZO_FECHO} segundos ainda não acabou, é
+ * porque o cliente não está a ler, e o socket é fechado à força.
+ */
+public class LigacaoBloqueante implements Ligacao {
+
+    // Tamanho do buffer de saída (chega para todas as mensagens de um acontecimento)
+    private static final int TAMANHO_SAIDA = 8192;
+    // Número máximo de mensagens retiradas da fila de cada vez pela thread de escrita
+    private static final int MAXIMO_POR_ESCRITA = 64;
+    // Tempo dado à thread de escrita para enviar o que falta depois de fechar (segundos)
+    private static final int PRAZO_FECHO = 5;
+
+    private final Socket socket;
+    private final InputStream entrada; // Para receber mensagens
+    // Para enviar mensagens (só usado pela thread de escrita)
+    private final OutputStream saida;
+    // Mensagens à espera da thread de escrita
+    private final FilaSaida fila;
+    private final Negociacao negociacao = new Negociacao();
+    // Para fechar o socket à força se a escrita não acabar depois de fechar
+    private final RodaTemporizadores roda;
+    private volatile RodaTemporizadores.Temporizador fechoForcado;
+    private String nome = "";
+    // Quem trata as mensagens recebidas (pode mudar enquanto a thread de leitura corre)
+    private volatile OuvinteLigacao ouvinte;
+    private volatile long ultimaAtividade = System.nanoTime();
+
+    /**
+     * Prepara os canais de comunicação com o cliente.
+     *
+     * @param ouvinte quem trata as primeiras mensagens (normalmente a apresentação)
+     * @param limiteFila número máximo de mensagens à espera de serem escritas
+     * @param roda onde é agendado o fecho à força, se a escrita não acabar a tempo
+     */
+    public LigacaoBloqueante(Socket socket, OuvinteLigacao ouvinte, int limiteFila, RodaTemporizadores roda)
+            throws IOException {
+        this.socket = socket;
+        this.roda = roda;
+        this.fila = new FilaSaida(limiteFila);
+        this.ouvinte = ouvinte;
+        this.entrada = socket.getInputStream();
+        this.saida = new BufferedOutputStream(socket.getOutputStream(), TAMANHO_SAIDA);
+    }
+
+    @Override
+    public void setNome(String nome) {
+        this.nome = nome;
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public void setOuvinte(OuvinteLigacao ouvinte) {
+        this.ouvinte = ouvinte;
+    }
+
+    /**
+     * Arranca as threads de leitura e de escrita. Cada mensagem recebida é entregue ao
+     * ouvinte atual (definido antes com {@link #setOuvinte}), e quando a ligação cai (ou o
+     * cliente a fecha, ou envia algo que não se percebe) o ouvinte é avisado.
+     *
+     * @param fabrica fábrica de threads (virtuais ou de plataforma, conforme o modo do servidor)
+     */
+    public void iniciarLeitura(ThreadFactory fabrica) {
+        fabrica.newThread(this::escrever).start();
+        fabrica.newThread(() -> {
+            LeitorMensagens leitor = new LeitorMensagens(entrada, negociacao);
+            Mensagem mensagem = new Mensagem(); // Reutilizada em todas as mensagens
+            try {
+                while (leitor.ler(mensagem)) {
+                    ultimaAtividade = System.nanoTime();
+                    this.ouvinte.aoReceber(this, mensagem);
+                }
+            } catch (IOException e) {
+                // Ligação caiu: tratado em baixo, tal como um fecho normal
+            } finally {
+                fechar();
+                this.ouvinte.aoDesligar(this);
+            }
+        }).start();
+    }
+
+    @Override
+    public long getUltimaAtividade() {
+        return ultimaAtividade;
+    }
+
+    @Override
+    public boolean isFechada() {
+        return fila.isFechada() || socket.isClosed();
+    }
+
+    @Override
+    public void acumular(Mensagem mensagem) {
+        // Nunca bloqueia: a mensagem fica na fila até ao próximo despejar
+        adicionar(mensagem.getTipo(), negociacao.getCodec().codificar(mensagem));
+    }
+
+    @Override
+    public void acumular(MensagemCodificada mensagem) {
+        adicionar(mensagem.getTipo(), mensagem.getBytes(negociacao.getCodec()));
+    }
+
+    private void adicionar(TipoMensagem tipo, byte[] bytes) {
+        if (!fila.adicionar(tipo, bytes)) {
+            System.out.println("Jogador " + nome + " não está a ler as mensagens; ligação fechada.");
+            fechar();
+        }
+    }
+
+    @Override
+    public void despejar() {
+        fila.despejar();
+    }
+
+    /**
+     * Ciclo da thread de escrita: espera por mensagens despejadas e escreve-as todas
+     * numa só escrita no socket. Quando a ligação é fechada, escreve o que ainda falta
+     * (por exemplo, "SAIU") e fecha o socket.
+     */
+    private void escrever() {
+        ByteBuffer[] lote = new ByteBuffer[MAXIMO_POR_ESCRITA];
+        try {
+            int n;
+            while ((n = fila.esperarDespejadas(lote)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    ByteBuffer b = lote[i];
+                    saida.write(b.array(), b.position(), b.remaining()); // Fica no buffer
+                    b.position(b.limit());
+                    lote[i] = null;
+                }
+                saida.flush(); // Uma só escrita no socket com o lote inteiro
+                fila.escritaTerminada();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Ligação caiu: a thread de leitura também dá por isso
+        } finally {
+            fecharSocket();
+            RodaTemporizadores.Temporizador t = fechoForcado;
+            if (t != null) t.cancelar(); // Acabou a tempo
+        }
+    }
+
+    @Override
+    public void fechar() {
+        // A thread de escrita acaba de enviar o que falta e fecha o socket; se ainda tem
+        // mensagens por escrever, dá-se-lhe algum tempo, mas não para sempre (o cliente
+        // pode não estar a ler)
+        if (fila.fechar()) fechoForcado = roda.agendar(PRAZO_FECHO, TimeUnit.SECONDS, this::fecharSocket);
+    }
+
+    private void fecharSocket() {
+        try {
+            socket.close();
+        } catch (IOException ex) {}
+    }
+}
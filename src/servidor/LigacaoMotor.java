@@ -0,0 +1,129 @@
+package servidor;
+
+import modelo.Tabuleiro;
+import protocolo.CodecBinario;
+import protocolo.Mensagem;
+import protocolo.MensagemCodificada;
+import protocolo.TipoMensagem;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lugar do computador numa partida. Para a {@link Partida} é uma ligação como as outras:
+ * recebe as mesmas mensagens que um cliente e responde com JOGADA (ou TEMPO_ESGOTADO, se
+ * não puder jogar), por isso as regras, o tempo de cada turno e o diário são os mesmos
+ * das partidas entre pessoas.
+ *
+ * Acompanha a partida num tabuleiro seu, com as jogadas que recebe; quando lhe dão a vez,
+ * pede a jogada à {@link AgendaMotor}. A resposta chega numa thread do motor e é entregue
+ * à partida como se tivesse chegado da rede.
+ */
+class LigacaoMotor implements Ligacao {
+
+    private final AgendaMotor agenda;
+    private final int nivel;
+    private final Tabuleiro tabuleiro = new Tabuleiro();
+    // Para ler as mensagens já codificadas que a partida envia a todos
+    private final Mensagem lida = new Mensagem();
+
+    private String nome;
+    private volatile OuvinteLigacao ouvinte;
+    private volatile boolean fechada = false;
+    private char cor = ' ';
+    // Recebeu a vez e ainda não pediu a jogada (o pedido segue no despejar)
+    private boolean pedirJogada = false;
+    // Conta as vezes recebidas: uma resposta atrasada de um turno anterior é ignorada
+    private volatile int turno = 0;
+
+    LigacaoMotor(AgendaMotor agenda, int nivel) {
+        this.agenda = agenda;
+        this.nivel = nivel;
+        this.nome = "Computador (nível " + nivel + ")";
+    }
+
+    @Override
+    public void acumular(Mensagem mensagem) {
+        if (fechada) return;
+        switch (mensagem.getTipo()) {
+            case COR -> cor = mensagem.getCor();
+            case COMECAR -> tabuleiro.inicializar();
+            case JOGADA -> tabuleiro.jogar(mensagem.getLinha(), mensagem.getColuna(), mensagem.getCor());
+            case TABULEIRO -> tabuleiro.definirPosicao(mensagem.getCasasPretas(), mensagem.getCasasBrancas(),
+                    mensagem.getCor());
+            case SUA_VEZ -> {
+                turno++;
+                pedirJogada = true;
+            }
+            case FIM, SAIU -> {
+                // A partida acabou: o computador sai logo (não pede desforra)
+                fechada = true;
+                OuvinteLigacao o = ouvinte;
+                if (o != null) Thread.ofVirtual().start(() -> o.aoDesligar(this));
+            }
+            default -> {
+                // Nome do adversário, sessão, tempo, chat, confirmações: não interessam
+            }
+        }
+    }
+
+    @Override
+    public void acumular(MensagemCodificada mensagem) {
+        if (fechada) return;
+        CodecBinario codec = CodecBinario.INSTANCIA;
+        codec.descodificar(ByteBuffer.wrap(mensagem.getBytes(codec)), lida);
+        acumular(lida);
+    }
+
+    /**
+     * Chamado no fim de cada acontecimento da partida: se o computador recebeu a vez, é
+     * agora que pede a jogada (com a posição já com todas as jogadas do acontecimento).
+     */
+    @Override
+    public void despejar() {
+        if (!pedirJogada || fechada) return;
+        pedirJogada = false;
+        int t = turno;
+        long prazo = System.nanoTime() + TimeUnit.SECONDS.toNanos(Partida.TEMPO_TURNO);
+        agenda.pedir(tabuleiro.getPretas(), tabuleiro.getBrancas(), cor, nivel, prazo, casa -> responder(t, casa));
+    }
+
+    /**
+     * Entrega à partida a jogada escolhida (numa thread do motor).
+     */
+    private void responder(int t, int casa) {
+        OuvinteLigacao o = ouvinte;
+        if (fechada || t != turno || o == null) return; // O turno já acabou (por exemplo, por tempo)
+        o.aoReceber(this, casa < 0 ? Mensagem.de(TipoMensagem.TEMPO_ESGOTADO) : Mensagem.jogada(casa / 8, casa % 8, ' '));
+    }
+
+    @Override
+    public void fechar() {
+        fechada = true;
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public void setNome(String nome) {
+        this.nome = nome;
+    }
+
+    @Override
+    public void setOuvinte(OuvinteLigacao ouvinte) {
+        this.ouvinte = ouvinte;
+    }
+
+    @Override
+    public long getUltimaAtividade() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public boolean isFechada() {
+        return fechada;
+    }
+}
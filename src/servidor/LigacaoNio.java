@@ -0,0 +1,219 @@
+package servidor;
+
+import protocolo.Codec;
+import protocolo.Mensagem;
+import protocolo.MensagemCodificada;
+import protocolo.Negociacao;
+import protocolo.TipoMensagem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ligação a um cliente através de um canal não bloqueante (modo "nio").
+ *
+ * A leitura é feita pelo {@link CicloEventos} a que a ligação pertence: os bytes recebidos
+ * vão para um buffer próprio da ligação e, sempre que se completa uma mensagem (no
+ * protocolo que o cliente escolheu, ver {@link Negociacao}), ela é entregue ao ouvinte. As mensagens a enviar ficam numa
+ * {@link FilaSaida} limitada e são escritas pela thread do ciclo quando o canal tiver
+ * espaço, por isso {@link #enviar} nunca bloqueia quem o chama. As mensagens acumuladas (ver {@link #acumular}) só pedem
+ * a escrita no {@link #despejar}, e são escritas todas de uma vez.
+ */
+public class LigacaoNio implements Ligacao, CicloEventos.Tratador {
+
+    // Tamanho máximo de uma mensagem recebida; mensagens maiores fazem fechar a ligação
+    private static final int TAMANHO_MAXIMO_MENSAGEM = 8192;
+    // Número máximo de mensagens pendentes escritas numa só chamada ao sistema
+    private static final int MAXIMO_POR_ESCRITA = 64;
+
+    private final SocketChannel canal;
+    private final CicloEventos ciclo;
+    private SelectionKey chave;
+
+    // Bytes recebidos que ainda não formam uma mensagem completa
+    private final ByteBuffer leitura = ByteBuffer.allocate(TAMANHO_MAXIMO_MENSAGEM);
+    private final Negociacao negociacao = new Negociacao();
+    private final Mensagem recebida = new Mensagem(); // Reutilizada em todas as leituras
+    // Mensagens à espera de serem escritas no canal
+    private final FilaSaida pendentes;
+    // Evita pedir várias escritas ao ciclo quando já há uma pedida
+    private final AtomicBoolean escritaAgendada = new AtomicBoolean();
+    // Mensagens pendentes a escrever de uma vez (só usado na thread do ciclo)
+    private final ByteBuffer[] lote = new ByteBuffer[MAXIMO_POR_ESCRITA];
+
+    private volatile OuvinteLigacao ouvinte;
+    private volatile String nome = "";
+    private volatile long ultimaAtividade = System.nanoTime();
+    private volatile boolean fechada = false; // Só é alterado na thread do ciclo
+
+    /**
+     * Cria a ligação. O canal tem de estar em modo não bloqueante.
+     */
+    public LigacaoNio(SocketChannel canal, CicloEventos ciclo, OuvinteLigacao ouvinte, int limiteFila) {
+        this.pendentes = new FilaSaida(limiteFila);
+        this.canal = canal;
+        this.ciclo = ciclo;
+        this.ouvinte = ouvinte;
+    }
+
+    /**
+     * Regista o canal no ciclo para começar a receber dados. Corre na thread do ciclo.
+     */
+    public void registar() {
+        try {
+            chave = ciclo.registar(canal, SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            encerrar();
+        }
+    }
+
+    @Override
+    public void aoEstarPronto(SelectionKey chave) throws IOException {
+        if (chave.isReadable()) ler();
+        if (chave.isValid() && chave.isWritable()) escrever();
+    }
+
+    @Override
+    public void aoFalhar(IOException e) {
+        encerrar();
+    }
+
+    /**
+     * Lê o que estiver disponível no canal e entrega as mensagens completas ao ouvinte.
+     */
+    private void ler() throws IOException {
+        int lidos = canal.read(leitura);
+        if (lidos < 0) {
+            encerrar(); // O cliente fechou a ligação
+            return;
+        }
+
+        ultimaAtividade = System.nanoTime();
+        leitura.flip();
+        Codec.Resultado r = Codec.Resultado.INCOMPLETA;
+        while (!fechada && (r = negociacao.descodificar(leitura, recebida)) == Codec.Resultado.MENSAGEM) {
+            ouvinte.aoReceber(this, recebida);
+        }
+        leitura.compact();
+
+        // Mensagem que não se percebe, ou buffer cheio sem nenhuma mensagem completa
+        if (r == Codec.Resultado.INVALIDA || !leitura.hasRemaining()) encerrar();
+    }
+
+    /**
+     * Escreve as mensagens pendentes enquanto o canal as aceitar. Se o canal ficar cheio,
+     * pede ao seletor para avisar quando houver espaço. Corre na thread do ciclo.
+     */
+    private void escrever() {
+        escritaAgendada.set(false);
+        if (fechada || chave == null) return;
+        try {
+            escreverPendentes();
+        } catch (IOException | CancelledKeyException e) {
+            encerrar(); // CancelledKeyException: a ligação foi fechada entretanto
+        }
+    }
+
+    /**
+     * Escreve as mensagens pendentes com escritas "gathering": várias mensagens (cada uma
+     * no seu buffer) seguem numa só chamada ao sistema, sem as copiar para um buffer único.
+     */
+    private void escreverPendentes() throws IOException {
+        while (true) {
+            int n = pendentes.preencher(lote);
+            if (n == 0) break;
+
+            boolean canalCheio;
+            try {
+                canal.write(lote, 0, n);
+                canalCheio = lote[n - 1].hasRemaining();
+            } finally {
+                Arrays.fill(lote, 0, n, null); // Não prender mensagens já enviadas
+                pendentes.escritaTerminada(); // Retira da fila as que foram escritas por inteiro
+            }
+            if (canalCheio) {
+                chave.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        chave.interestOps(SelectionKey.OP_READ);
+    }
+
+    @Override
+    public void acumular(Mensagem mensagem) {
+        adicionar(mensagem.getTipo(), negociacao.getCodec().codificar(mensagem));
+    }
+
+    @Override
+    public void acumular(MensagemCodificada mensagem) {
+        adicionar(mensagem.getTipo(), mensagem.getBytes(negociacao.getCodec()));
+    }
+
+    private void adicionar(TipoMensagem tipo, byte[] bytes) {
+        // A fila é limitada: um cliente que não lê não a faz crescer para sempre
+        if (!pendentes.adicionar(tipo, bytes)) {
+            System.out.println("Jogador " + nome + " não está a ler as mensagens; ligação fechada.");
+            fechar();
+        }
+    }
+
+    @Override
+    public void despejar() {
+        pendentes.despejar(); // Só as mensagens acumuladas até aqui podem ser escritas
+        if (escritaAgendada.compareAndSet(false, true)) ciclo.executar(this::escrever);
+    }
+
+    @Override
+    public void fechar() {
+        ciclo.executar(this::encerrar);
+    }
+
+    /**
+     * Fecha o canal (depois de tentar enviar o que ainda estava pendente) e avisa o ouvinte.
+     * Corre na thread do ciclo.
+     */
+    private void encerrar() {
+        if (fechada) return;
+        pendentes.fechar(); // As mensagens seguintes já não são guardadas
+        try {
+            // Última tentativa de enviar mensagens como "SAIU" antes de fechar
+            if (chave != null && chave.isValid()) escreverPendentes();
+        } catch (IOException | CancelledKeyException ignorar) {}
+        fechada = true;
+        if (chave != null) chave.cancel();
+        try {
+            canal.close();
+        } catch (IOException ex) {}
+        ouvinte.aoDesligar(this);
+    }
+
+    @Override
+    public long getUltimaAtividade() {
+        return ultimaAtividade;
+    }
+
+    @Override
+    public boolean isFechada() {
+        return fechada;
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public void setNome(String nome) {
+        this.nome = nome;
+    }
+
+    @Override
+    public void setOuvinte(OuvinteLigacao ouvinte) {
+        this.ouvinte = ouvinte;
+    }
+}
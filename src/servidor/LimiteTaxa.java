@@ -0,0 +1,40 @@
+package servidor;
+
+/**
+ * Limite de mensagens por segundo ("balde de fichas"): o balde enche-se a um ritmo fixo
+ * até um máximo, e cada mensagem gasta uma ficha. Permite pequenas rajadas, mas a longo
+ * prazo nunca passa do ritmo definido.
+ *
+ * Serve para um jogador não inundar o chat (e com ele o adversário e o servidor).
+ * Não é thread-safe: quem o usa já tem o seu trinco (a partida).
+ */
+public class LimiteTaxa {
+
+    private final double fichasPorNano;
+    private final double maximo;
+    private double fichas;
+    private long ultimaVez;
+
+    /**
+     * @param porSegundo mensagens aceites por segundo, em média
+     * @param rajada número de mensagens seguidas aceites depois de algum tempo parado
+     */
+    public LimiteTaxa(double porSegundo, int rajada) {
+        this.fichasPorNano = porSegundo / 1_000_000_000.0;
+        this.maximo = rajada;
+        this.fichas = rajada;
+        this.ultimaVez = System.nanoTime();
+    }
+
+    /**
+     * Indica se a mensagem pode passar (e gasta uma ficha se puder).
+     */
+    public boolean permitir() {
+        long agora = System.nanoTime();
+        fichas = Math.min(maximo, fichas + (agora - ultimaVez) * fichasPorNano);
+        ultimaVez = agora;
+        if (fichas < 1) return false;
+        fichas--;
+        return true;
+    }
+}
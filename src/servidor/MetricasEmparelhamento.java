@@ -0,0 +1,77 @@
+package servidor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Números do emparelhamento: quantos jogadores estão na fila e quanto tempo esperam até
+ * terem adversário. Podem ser lidos a qualquer momento por qualquer thread.
+ */
+public class MetricasEmparelhamento {
+
+    private final AtomicInteger emEspera = new AtomicInteger();
+    private final AtomicInteger maiorFila = new AtomicInteger();
+    private final LongAdder emparelhados = new LongAdder();    // Jogadores (não pares) emparelhados
+    private final LongAdder tempoTotal = new LongAdder();      // Soma dos tempos de espera (ns)
+    private final AtomicLong tempoMaximo = new AtomicLong();   // Maior tempo de espera (ns)
+
+    void entrou() {
+        int n = emEspera.incrementAndGet();
+        maiorFila.accumulateAndGet(n, Math::max);
+    }
+
+    void saiu() {
+        emEspera.decrementAndGet();
+    }
+
+    /**
+     * Um jogador foi emparelhado depois de esperar o tempo indicado (em nanossegundos).
+     */
+    void emparelhado(long espera) {
+        emEspera.decrementAndGet();
+        emparelhados.increment();
+        tempoTotal.add(espera);
+        tempoMaximo.accumulateAndGet(espera, Math::max);
+    }
+
+    /**
+     * Número de jogadores na fila neste momento.
+     */
+    public int getProfundidadeFila() {
+        return emEspera.get();
+    }
+
+    /**
+     * Maior número de jogadores que estiveram na fila ao mesmo tempo.
+     */
+    public int getMaiorFila() {
+        return maiorFila.get();
+    }
+
+    public long getJogadoresEmparelhados() {
+        return emparelhados.sum();
+    }
+
+    /**
+     * Tempo médio entre entrar na fila e ter adversário, em milissegundos.
+     */
+    public double getTempoMedioMs() {
+        long n = emparelhados.sum();
+        return n == 0 ? 0 : tempoTotal.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Maior tempo entre entrar na fila e ter adversário, em milissegundos.
+     */
+    public double getTempoMaximoMs() {
+        return tempoMaximo.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Emparelhamento: %d na fila (máximo %d), %d jogadores emparelhados, espera média %.1f ms, máxima %.1f ms",
+                getProfundidadeFila(), getMaiorFila(), getJogadoresEmparelhados(), getTempoMedioMs(), getTempoMaximoMs());
+    }
+}
@@ -0,0 +1,48 @@
+package servidor;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Modos de funcionamento do servidor (escolhidos com a opção --modo).
+ * Permitem comparar o comportamento do servidor com diferentes tipos de threads.
+ */
+public enum ModoServidor {
+
+    /**
+     * Duas threads de plataforma (do sistema operativo) por ligação: uma lê, a outra escreve.
+     * As partidas não têm thread própria: cada jogada é tratada na thread de leitura de quem
+     * joga, com o trinco da partida, e os prazos correm na {@link RodaTemporizadores}.
+     */
+    PLATAFORMA,
+
+    /**
+     * Como {@link #PLATAFORMA}, mas com threads virtuais: muito mais leves quando estão
+     * paradas à espera.
+     */
+    VIRTUAL,
+
+    /**
+     * Canais não bloqueantes (java.nio) tratados por um pequeno número fixo de ciclos de
+     * eventos; não há threads por ligação, e as jogadas são tratadas no ciclo de eventos
+     * de quem joga, também com o trinco da partida.
+     */
+    NIO;
+
+    /**
+     * Devolve a fábrica das threads de leitura e escrita das ligações neste modo
+     * (no modo NIO não é usada: as ligações são tratadas pelos ciclos de eventos).
+     *
+     * @param prefixo prefixo do nome das threads (útil para depuração)
+     */
+    public ThreadFactory fabricaDeThreads(String prefixo) {
+        if (this != PLATAFORMA) return Thread.ofVirtual().name(prefixo, 0).factory();
+        return Thread.ofPlatform().name(prefixo, 0).factory();
+    }
+
+    /**
+     * Converte o texto da linha de comandos ("plataforma", "virtual", "nio") no modo correspondente.
+     */
+    public static ModoServidor deTexto(String texto) {
+        return valueOf(texto.trim().toUpperCase());
+    }
+}
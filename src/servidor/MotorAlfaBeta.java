@@ -0,0 +1,267 @@
+package servidor;
+
+import modelo.Tabuleiro;
+
+/**
+ * Motor de jogo: escolhe uma jogada com uma pesquisa alfa-beta sobre o gerador de jogadas
+ * do {@link Tabuleiro} (jogar e desfazer no mesmo tabuleiro, sem cópias).
+ *
+ * A pesquisa é feita por aprofundamento progressivo: primeiro a 1 jogada de distância,
+ * depois a 2, a 3, ... até acabar o tempo ou chegar à profundidade máxima. Parece um
+ * desperdício, mas cada iteração deixa na {@link TabelaTransposicao} a melhor jogada de
+ * cada posição, e a iteração seguinte experimenta essas jogadas primeiro; com boas jogadas
+ * primeiro, o alfa-beta corta quase tudo o resto. Se o tempo acabar a meio de uma
+ * iteração, fica a jogada da última iteração completa.
+ *
+ * As outras jogadas são ordenadas pelo valor da casa (cantos primeiro, casas ao lado dos
+ * cantos por último). Nas folhas, a posição é avaliada pelo valor das casas ocupadas e pela
+ * mobilidade (número de jogadas de cada lado); no fim do jogo, pela diferença de peças.
+ *
+ * Não é thread-safe: cada thread que pesquisa tem o seu motor. Vários motores podem
+ * partilhar a mesma tabela para pesquisarem juntos a mesma posição ({@link PesquisaParalela}).
+ */
+public class MotorAlfaBeta {
+
+    // Valor de uma posição ganha (mais a diferença de peças): maior do que qualquer avaliação
+    static final int VITORIA = 10_000;
+    private static final int INFINITO = 1_000_000;
+    // Profundidade máxima de qualquer pesquisa (jogadas e passagens)
+    static final int PROFUNDIDADE_LIMITE = 64;
+    // Nós entre cada verificação do relógio
+    private static final int NOS_ENTRE_RELOGIO = 2048;
+
+    // Valor de cada casa para quem a ocupa (tabela clássica: cantos muito bons, casas
+    // diagonais aos cantos muito más enquanto o canto está vazio)
+    private static final int[] PESOS = {
+            100, -20, 10,  5,  5, 10, -20, 100,
+            -20, -50, -2, -2, -2, -2, -50, -20,
+             10,  -2,  1,  1,  1,  1,  -2,  10,
+              5,  -2,  1,  0,  0,  1,  -2,   5,
+              5,  -2,  1,  0,  0,  1,  -2,   5,
+             10,  -2,  1,  1,  1,  1,  -2,  10,
+            -20, -50, -2, -2, -2, -2, -50, -20,
+            100, -20, 10,  5,  5, 10, -20, 100,
+    };
+    // As casas agrupadas por peso, para avaliar com bitCount em vez de percorrer as 64 casas
+    private static final int[] VALORES_GRUPO;
+    private static final long[] MASCARAS_GRUPO;
+
+    static {
+        int[] valores = java.util.Arrays.stream(PESOS).distinct().toArray();
+        VALORES_GRUPO = valores;
+        MASCARAS_GRUPO = new long[valores.length];
+        for (int i = 0; i < 64; i++) {
+            for (int g = 0; g < valores.length; g++) {
+                if (PESOS[i] == valores[g]) MASCARAS_GRUPO[g] |= 1L << i;
+            }
+        }
+    }
+
+    private final TabelaTransposicao tabela;
+    private final Tabuleiro tabuleiro = new Tabuleiro();
+    // Jogadas de cada nível da árvore (reutilizadas, para não criar arrays durante a pesquisa)
+    private final int[][] jogadas = new int[PROFUNDIDADE_LIMITE + 2][32];
+    private final int[][] notas = new int[PROFUNDIDADE_LIMITE + 2][32];
+
+    // Estado da pesquisa em curso
+    private long limite;        // Instante (System.nanoTime) em que a pesquisa tem de parar
+    private boolean parada;     // O tempo acabou: os valores da iteração atual não servem
+    private long nos;
+    private int melhorRaiz;     // Melhor jogada da raiz na iteração em curso
+    // Pedido de outra thread para parar (a pesquisa paralela acabou)
+    private volatile boolean cancelada;
+
+    // Resultado da última pesquisa
+    private int profundidadeAlcancada;
+    private int valor;
+
+    public MotorAlfaBeta(TabelaTransposicao tabela) {
+        this.tabela = tabela;
+    }
+
+    /**
+     * Escolhe a jogada para quem tem a vez na posição indicada.
+     *
+     * @param pretas bitboard das peças pretas
+     * @param brancas bitboard das peças brancas
+     * @param vez cor de quem joga ('B' ou 'W')
+     * @param profundidadeMaxima profundidade a que a pesquisa pára, mesmo que sobre tempo
+     * @param tempoNanos tempo máximo de pesquisa
+     * @return casa escolhida (linha*8+coluna), ou -1 se não houver jogadas
+     */
+    public int escolherJogada(long pretas, long brancas, char vez, int profundidadeMaxima, long tempoNanos) {
+        return escolherJogada(pretas, brancas, vez, 1, profundidadeMaxima, tempoNanos);
+    }
+
+    /**
+     * Como {@link #escolherJogada(long, long, char, int, long)}, mas o aprofundamento começa
+     * em {@code primeiraProfundidade} (as threads que ajudam uma pesquisa paralela não
+     * começam todas na mesma, para não fazerem exatamente o mesmo trabalho).
+     */
+    int escolherJogada(long pretas, long brancas, char vez, int primeiraProfundidade, int profundidadeMaxima,
+                       long tempoNanos) {
+        long inicio = System.nanoTime();
+        limite = inicio + tempoNanos;
+        parada = false;
+        nos = 0;
+        profundidadeAlcancada = 0;
+        valor = 0;
+        tabuleiro.definirPosicao(pretas, brancas, vez);
+
+        long movimentos = tabuleiro.movimentosValidos(vez);
+        if (movimentos == 0) return -1;
+        int melhor = Long.numberOfTrailingZeros(movimentos); // Se nem a 1.ª iteração acabar
+        if (Long.bitCount(movimentos) == 1) return melhor;    // Não há nada a pensar
+
+        int maximo = Math.min(profundidadeMaxima, PROFUNDIDADE_LIMITE);
+        for (int profundidade = Math.min(primeiraProfundidade, maximo); profundidade <= maximo; profundidade++) {
+            int v = pesquisar(0, profundidade, -INFINITO, INFINITO, false);
+            if (parada) break;
+            melhor = melhorRaiz;
+            profundidadeAlcancada = profundidade;
+            valor = v;
+            if (Math.abs(v) >= VITORIA) break; // Já se vê o fim do jogo: pesquisar mais não muda nada
+            // A iteração seguinte demora bastante mais do que todas as anteriores juntas:
+            // se já passou metade do tempo, não vale a pena começá-la
+            if (System.nanoTime() - inicio > tempoNanos / 2) break;
+        }
+        return melhor;
+    }
+
+    /**
+     * Pesquisa alfa-beta (negamax: o valor é sempre do ponto de vista de quem joga).
+     *
+     * @param nivel distância à raiz (índice dos arrays de jogadas)
+     * @param profundidade jogadas que ainda faltam até às folhas
+     * @param passou o adversário acabou de passar a vez
+     */
+    private int pesquisar(int nivel, int profundidade, int alfa, int beta, boolean passou) {
+        if ((++nos & (NOS_ENTRE_RELOGIO - 1)) == 0 && (cancelada || System.nanoTime() > limite)) parada = true;
+        if (parada) return 0;
+
+        char vez = tabuleiro.getVez();
+        long movimentos = tabuleiro.movimentosValidos(vez);
+        if (movimentos == 0) {
+            if (passou) return valorFinal(vez); // Nenhum dos dois pode jogar: fim do jogo
+            tabuleiro.passar();
+            int v = -pesquisar(nivel + 1, profundidade, -beta, -alfa, true);
+            tabuleiro.desfazer();
+            return v;
+        }
+        if (profundidade == 0 || nivel >= PROFUNDIDADE_LIMITE) return avaliar(vez, movimentos);
+
+        // A tabela pode já ter a resposta (ou, pelo menos, a melhor jogada a experimentar)
+        long hash = tabuleiro.getHash();
+        long entrada = tabela.procurar(hash);
+        int jogadaTabela = -1;
+        if (entrada != 0) {
+            jogadaTabela = TabelaTransposicao.jogada(entrada);
+            if (nivel > 0 && TabelaTransposicao.profundidade(entrada) >= profundidade) {
+                int v = TabelaTransposicao.valor(entrada);
+                int tipo = TabelaTransposicao.tipo(entrada);
+                if (tipo == TabelaTransposicao.EXATO
+                        || (tipo == TabelaTransposicao.INFERIOR && v >= beta)
+                        || (tipo == TabelaTransposicao.SUPERIOR && v <= alfa)) return v;
+            }
+        }
+
+        int n = ordenar(nivel, movimentos, jogadaTabela);
+        int alfaInicial = alfa;
+        int melhorValor = -INFINITO;
+        int melhorJogada = -1;
+        for (int i = 0; i < n; i++) {
+            int casa = jogadas[nivel][i];
+            tabuleiro.jogar(casa, vez);
+            int v = -pesquisar(nivel + 1, profundidade - 1, -beta, -alfa, false);
+            tabuleiro.desfazer();
+            if (parada) return 0;
+            if (v > melhorValor) {
+                melhorValor = v;
+                melhorJogada = casa;
+                if (nivel == 0) melhorRaiz = casa;
+                if (v > alfa) alfa = v;
+                if (alfa >= beta) break; // O adversário nunca deixaria chegar aqui: corte
+            }
+        }
+
+        int tipo = melhorValor <= alfaInicial ? TabelaTransposicao.SUPERIOR
+                : melhorValor >= beta ? TabelaTransposicao.INFERIOR : TabelaTransposicao.EXATO;
+        tabela.guardar(hash, profundidade, melhorValor, tipo, melhorJogada);
+        return melhorValor;
+    }
+
+    /**
+     * Põe as jogadas do nível por ordem: a da tabela primeiro, depois as casas mais valiosas.
+     * Devolve o número de jogadas.
+     */
+    private int ordenar(int nivel, long movimentos, int jogadaTabela) {
+        int[] js = jogadas[nivel];
+        int[] ns = notas[nivel];
+        int n = 0;
+        for (long m = movimentos; m != 0; m &= m - 1) {
+            int casa = Long.numberOfTrailingZeros(m);
+            int nota = casa == jogadaTabela ? INFINITO : PESOS[casa];
+            // Ordenação por inserção (são poucas jogadas)
+            int i = n++;
+            while (i > 0 && ns[i - 1] < nota) {
+                js[i] = js[i - 1];
+                ns[i] = ns[i - 1];
+                i--;
+            }
+            js[i] = casa;
+            ns[i] = nota;
+        }
+        return n;
+    }
+
+    /**
+     * Avaliação de uma posição a meio do jogo, do ponto de vista de quem joga.
+     */
+    private int avaliar(char vez, long movimentos) {
+        long proprias = vez == 'B' ? tabuleiro.getPretas() : tabuleiro.getBrancas();
+        long adversarias = vez == 'B' ? tabuleiro.getBrancas() : tabuleiro.getPretas();
+        int v = 0;
+        for (int g = 0; g < MASCARAS_GRUPO.length; g++) {
+            v += VALORES_GRUPO[g] * (Long.bitCount(proprias & MASCARAS_GRUPO[g])
+                    - Long.bitCount(adversarias & MASCARAS_GRUPO[g]));
+        }
+        // Mobilidade: ter muitas jogadas e deixar poucas ao adversário
+        int minhas = Long.bitCount(movimentos);
+        int dele = Long.bitCount(tabuleiro.movimentosValidos(vez == 'B' ? 'W' : 'B'));
+        return v + 10 * (minhas - dele);
+    }
+
+    /**
+     * Valor de uma posição final: ganhar (ou perder) vale sempre mais do que qualquer
+     * avaliação, e entre vitórias vale mais a de mais peças.
+     */
+    private int valorFinal(char vez) {
+        int diferenca = tabuleiro.diferencaPecas(vez);
+        if (diferenca > 0) return VITORIA + diferenca;
+        if (diferenca < 0) return -VITORIA + diferenca;
+        return 0;
+    }
+
+    /**
+     * Pede (de outra thread) que a pesquisa em curso pare assim que possível, ou volta a
+     * permitir pesquisas. Quem cancela tem de voltar a permitir antes da pesquisa seguinte.
+     */
+    void setCancelada(boolean cancelada) {
+        this.cancelada = cancelada;
+    }
+
+    /** Profundidade da última iteração completa da última pesquisa. */
+    public int getProfundidadeAlcancada() {
+        return profundidadeAlcancada;
+    }
+
+    /** Valor da posição segundo a última pesquisa (do ponto de vista de quem jogava). */
+    public int getValor() {
+        return valor;
+    }
+
+    /** Número de posições visitadas na última pesquisa. */
+    public long getNos() {
+        return nos;
+    }
+}
@@ -0,0 +1,21 @@
+package servidor;
+
+import protocolo.Mensagem;
+
+/**
+ * Quem trata as mensagens que chegam por uma ligação: primeiro a sala de espera e,
+ * depois de o jogador ser emparelhado, a sua partida.
+ */
+public interface OuvinteLigacao {
+
+    /**
+     * Chamado por cada mensagem recebida do cliente. O objeto da mensagem é reutilizado
+     * pela ligação, por isso não deve ser guardado depois de a chamada terminar.
+     */
+    void aoReceber(Ligacao origem, Mensagem mensagem);
+
+    /**
+     * Chamado uma única vez, quando a ligação cai ou é fechada.
+     */
+    void aoDesligar(Ligacao origem);
+}
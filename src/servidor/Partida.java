@@ -0,0 +1,619 @@
+package servidor;
+
+import modelo.Tabuleiro;
+import protocolo.Mensagem;
+import protocolo.MensagemCodificada;
+import protocolo.TipoMensagem;
+
+import java.security.SecureRandom;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Representa uma partida (uma "sala") entre dois jogadores.
+ * Cada partida tem o seu próprio tabuleiro e as suas ligações, por isso o servidor pode
+ * ter muitas partidas a decorrer ao mesmo tempo sem que umas interfiram com as outras.
+ *
+ * A partida reage a acontecimentos: uma mensagem recebida ({@link #aoReceber}), uma ligação
+ * que caiu ({@link #aoDesligar}) ou o tempo do turno que acabou (um temporizador da
+ * {@link RodaTemporizadores} do servidor). Estes acontecimentos chegam de threads
+ * diferentes, por isso todo o estado da partida é protegido por um trinco.
+ *
+ * As mensagens produzidas por um acontecimento são só acumuladas nas ligações e seguem
+ * todas juntas no fim do acontecimento (ver {@link #despejar}): uma jogada aceite, por
+ * exemplo, chega a cada jogador numa só escrita em vez de três ou quatro.
+ *
+ * Qualquer número de espectadores pode assistir à partida ({@link #adicionarEspectador}):
+ * recebem a posição atual e depois as jogadas, o chat e o fim. Cada uma destas mensagens
+ * é codificada uma só vez ({@link MensagemCodificada}) e os mesmos bytes seguem para os
+ * jogadores e para todos os espectadores.
+ *
+ * Cada jogada tem um número de sequência (1, 2, 3, ...). Se a ligação de um jogador cair a
+ * meio do jogo, a partida espera algum tempo por ele: o cliente volta a ligar-se com a
+ * chave que recebeu no início (mensagem SESSAO) e o número da última jogada que viu, e
+ * recebe só as jogadas que perdeu (das últimas {@link #TAMANHO_HISTORICO}, guardadas em
+ * memória) ou, se perdeu mais do que isso, a posição completa.
+ *
+ * Se o servidor tiver um {@link Diario}, cada acontecimento que muda o jogo (início,
+ * jogada, passagem de vez, fim) fica lá registado, e uma partida interrompida por uma
+ * queda do servidor pode ser refeita quando ele volta ({@link #recuperar}). Se tiver um
+ * {@link ArquivoPartidas}, as partidas que acabam normalmente ficam lá guardadas.
+ */
+public class Partida implements OuvinteLigacao {
+
+    // Cores atribuídas aos jogadores: 'B' para preto, 'W' para branco
+    static final char[] CORES = {'B', 'W'};
+
+    // Tempo limite por jogada (segundos)
+    static final int TEMPO_TURNO = 30;
+
+    // Mensagens fixas, já codificadas e partilhadas por todas as partidas
+    private static final MensagemCodificada COMECAR = MensagemCodificada.de(Mensagem.de(TipoMensagem.COMECAR));
+    private static final MensagemCodificada SUA_VEZ = MensagemCodificada.de(Mensagem.de(TipoMensagem.SUA_VEZ));
+    private static final MensagemCodificada JOGADA_CONFIRMADA =
+            MensagemCodificada.de(Mensagem.de(TipoMensagem.JOGADA_CONFIRMADA));
+    private static final MensagemCodificada JOGADA_INVALIDA =
+            MensagemCodificada.de(Mensagem.de(TipoMensagem.JOGADA_INVALIDA));
+    static final MensagemCodificada SAIU = MensagemCodificada.de(Mensagem.de(TipoMensagem.SAIU));
+    private static final MensagemCodificada TEMPO = MensagemCodificada.de(Mensagem.tempo(TEMPO_TURNO));
+
+    // Mensagens de chat seguidas que um jogador pode enviar antes de o limite começar a contar
+    private static final int RAJADA_CHAT = 5;
+
+    // Número de jogadas recentes guardadas para reenviar a quem volta à partida
+    static final int TAMANHO_HISTORICO = 16;
+
+    // Gerador das chaves para retomar uma partida (não podem ser adivinhadas)
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    // Depois do FIM, tempo dado aos clientes para saírem antes de o servidor fechar as ligações (segundos)
+    private static final int ESPERA_APOS_FIM = 60;
+
+    // Identificador da partida (único dentro do servidor)
+    private final int id;
+    // Servidor que criou a partida (é avisado quando a partida termina)
+    private final ServidorReversi servidor;
+    // Onde ficam registados os acontecimentos da partida (null se o servidor não tiver diário)
+    private final Diario diario;
+    // Onde fica guardada a partida quando acabar (null se o servidor não tiver arquivo)
+    private final ArquivoPartidas arquivo;
+
+    // Tabuleiro desta partida (mantém o estado das peças)
+    private final Tabuleiro tabuleiro = new Tabuleiro();
+    // Ligações dos dois jogadores (índice 0 = pretas, 1 = brancas)
+    private final Ligacao[] jogadores = new Ligacao[2];
+    // Indica, para cada jogador, se a sua ligação já foi fechada
+    private final boolean[] desligado = new boolean[2];
+    // Indica, para cada jogador, se voltou à sala de espera para a desforra (a ligação não é fechada)
+    private final boolean[] devolvido = new boolean[2];
+    // Limite de mensagens de chat de cada jogador (null se não houver limite)
+    private final LimiteTaxa[] limiteChat = new LimiteTaxa[2];
+    // Ligações de quem está a assistir
+    private final Set<Ligacao> espectadores = new LinkedHashSet<>();
+    // Os espectadores receberam mensagens neste acontecimento (falta despejá-las)
+    private boolean espectadoresPorDespejar = false;
+
+    // Chave de cada jogador para retomar a partida se a ligação cair
+    private final long[] chaves = {ALEATORIO.nextLong(), ALEATORIO.nextLong()};
+    // Segundos que se espera por um jogador cuja ligação caiu (0 = a partida acaba logo)
+    private final int prazoRetoma;
+    // Prazo de cada jogador desligado que ainda pode voltar (null se está ligado)
+    private final RodaTemporizadores.Temporizador[] esperaRetoma = new RodaTemporizadores.Temporizador[2];
+    // Número da última jogada e as últimas jogadas enviadas (a jogada n fica na posição n % TAMANHO_HISTORICO)
+    private int seq = 0;
+    private final MensagemCodificada[] historico = new MensagemCodificada[TAMANHO_HISTORICO];
+    // Quando começou o turno atual (System.nanoTime), para dizer o tempo que falta a quem volta
+    private long inicioTurno;
+
+    // Trinco que protege o estado da partida
+    private final ReentrantLock trinco = new ReentrantLock();
+
+    private int jogadorAtual = 0;   // Índice do jogador que está a jogar
+    private boolean ativa = false;  // O jogo está a decorrer
+    private boolean encerrada = false; // Já não há nada a fazer (ligações fechadas)
+    // Temporizador do turno atual (ou da espera depois do fim) e número do turno a que pertence
+    private RodaTemporizadores.Temporizador temporizador;
+    private long numeroTurno = 0;
+
+    /**
+     * Cria uma partida nova entre dois jogadores.
+     *
+     * @param id identificador da partida
+     * @param servidor servidor a avisar quando a partida terminar
+     * @param pretas ligação do jogador com as pretas
+     * @param brancas ligação do jogador com as brancas
+     */
+    public Partida(int id, ServidorReversi servidor, Ligacao pretas, Ligacao brancas) {
+        this.id = id;
+        this.servidor = servidor;
+        this.diario = servidor.getDiario();
+        this.arquivo = servidor.getArquivo();
+        this.jogadores[0] = pretas;
+        this.jogadores[1] = brancas;
+        this.prazoRetoma = servidor.getConfiguracao().getPrazoRetoma();
+        int chatPorSegundo = servidor.getConfiguracao().getChatPorSegundo();
+        if (chatPorSegundo > 0) {
+            for (int i = 0; i < limiteChat.length; i++) limiteChat[i] = new LimiteTaxa(chatPorSegundo, RAJADA_CHAT);
+        }
+    }
+
+    /**
+     * Refaz uma partida que estava a decorrer quando o servidor parou, repetindo num
+     * tabuleiro novo as jogadas guardadas no diário. Os dois jogadores começam como
+     * desligados: têm o prazo de retoma para voltar com a chave que já tinham (RETOMAR).
+     *
+     * @return a partida, já a decorrer, ou null se as jogadas guardadas não levarem a um
+     *         jogo por acabar
+     */
+    static Partida recuperar(ServidorReversi servidor, Diario.PartidaGuardada guardada) {
+        Partida p = new Partida(guardada.getId(), servidor,
+                new LigacaoAusente(guardada.getNome(0)), new LigacaoAusente(guardada.getNome(1)));
+        p.trinco.lock();
+        try {
+            p.chaves[0] = guardada.getChave(0);
+            p.chaves[1] = guardada.getChave(1);
+            p.tabuleiro.inicializar();
+            for (int i = 0; i < guardada.getNumeroJogadas(); i++) {
+                int casa = guardada.getJogada(i);
+                if (casa < 0) {
+                    p.tabuleiro.passar();
+                } else if (p.tabuleiro.jogar(casa, p.tabuleiro.getVez()) != 0) {
+                    p.seq++;
+                } else {
+                    return null; // Diário estragado: a jogada não é válida nesta posição
+                }
+            }
+            if (p.fimDeJogo()) return null; // Acabou mesmo antes de o servidor parar
+            p.jogadorAtual = p.tabuleiro.getVez() == CORES[0] ? 0 : 1;
+            p.ativa = true;
+            p.comecarTurno();
+            for (int i = 0; i < p.jogadores.length; i++) {
+                int indice = i;
+                Ligacao ausente = p.jogadores[i];
+                p.esperaRetoma[i] = servidor.getRodaTemporizadores().agendar(p.prazoRetoma, TimeUnit.SECONDS,
+                        () -> p.naoVoltou(indice, ausente));
+            }
+            return p;
+        } finally {
+            p.trinco.unlock();
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Começa o jogo: avisa os jogadores, dá a vez às pretas e começa a contar o tempo.
+     */
+    public void iniciar() {
+        trinco.lock();
+        try {
+            // A partir de agora é a partida que trata as mensagens dos dois jogadores
+            for (Ligacao l : jogadores) l.setOuvinte(this);
+
+            // Informa cada jogador do nome do adversário
+            jogadores[0].acumular(Mensagem.comTexto(TipoMensagem.NOME_ADVERSARIO, jogadores[1].getNome()));
+            jogadores[1].acumular(Mensagem.comTexto(TipoMensagem.NOME_ADVERSARIO, jogadores[0].getNome()));
+            // E da chave para voltar à partida se a ligação cair
+            for (int i = 0; i < jogadores.length; i++) {
+                jogadores[i].acumular(Mensagem.de(TipoMensagem.SESSAO).setValor(id).setChave(chaves[i]));
+            }
+
+            // O servidor avisa os dois jogadores que o jogo vai começar, inicializa o
+            // tabuleiro e diz a quem começa que é a sua vez.
+            enviarATodos(COMECAR);
+            tabuleiro.inicializar();
+            ativa = true;
+            if (diario != null) {
+                diario.partidaCriada(id, jogadores[0].getNome(), jogadores[1].getNome(), chaves[0], chaves[1]);
+            }
+            jogadores[jogadorAtual].acumular(SUA_VEZ);
+            comecarTurno();
+
+            // Se uma ligação caiu antes de a partida ser o seu ouvinte, o aviso perdeu-se
+            for (Ligacao l : jogadores) {
+                if (l.isFechada()) aoDesligar(l);
+            }
+        } finally {
+            despejar();
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Junta um espectador à partida: recebe logo a posição atual e, a partir daí, as
+     * mesmas jogadas que os jogadores. Devolve false se a partida já acabou.
+     */
+    public boolean adicionarEspectador(Ligacao espectador) {
+        trinco.lock();
+        try {
+            if (!ativa) return false;
+            // A posição e as jogadas seguintes são enviadas com o trinco: nenhuma jogada
+            // fica de fora nem aparece duas vezes
+            espectador.setOuvinte(this);
+            espectadores.add(espectador);
+            espectador.acumular(posicaoAtual());
+            espectador.despejar();
+            // Se a ligação caiu antes de a partida ser o seu ouvinte, o aviso perdeu-se
+            if (espectador.isFechada()) espectadores.remove(espectador);
+            return true;
+        } finally {
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Um jogador cuja ligação caiu voltou com uma ligação nova. Recebe as jogadas que
+     * perdeu depois de {@code ultimaSeq} (ou a posição completa, se já não estiverem no
+     * histórico) e, se for a sua vez, o tempo que lhe resta.
+     *
+     * @return false se a chave não for de nenhum jogador ou a partida já tiver acabado
+     */
+    public boolean retomar(Ligacao nova, long chave, int ultimaSeq) {
+        trinco.lock();
+        try {
+            int indice = chave == chaves[0] ? 0 : chave == chaves[1] ? 1 : -1;
+            if (indice < 0 || !ativa) return false;
+
+            Ligacao antiga = jogadores[indice];
+            if (esperaRetoma[indice] != null) {
+                esperaRetoma[indice].cancelar();
+                esperaRetoma[indice] = null;
+            } else {
+                antiga.fechar(); // O cliente deu pela falha antes do servidor
+            }
+            nova.setNome(antiga.getNome());
+            nova.setOuvinte(this);
+            jogadores[indice] = nova;
+
+            if (ultimaSeq < seq - TAMANHO_HISTORICO || ultimaSeq > seq || ultimaSeq < 0
+                    || (ultimaSeq < seq && historico[(ultimaSeq + 1) % TAMANHO_HISTORICO] == null)) {
+                // (Numa partida recuperada do diário, as jogadas de antes da queda não estão no histórico)
+                nova.acumular(posicaoAtual());
+            } else {
+                for (int s = ultimaSeq + 1; s <= seq; s++) nova.acumular(historico[s % TAMANHO_HISTORICO]);
+            }
+            if (indice == jogadorAtual) {
+                long passou = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - inicioTurno);
+                nova.acumular(SUA_VEZ);
+                nova.acumular(Mensagem.tempo((int) Math.max(1, TEMPO_TURNO - passou)));
+            }
+            System.out.println("Jogador " + nova.getNome() + " voltou à partida " + id + ".");
+
+            // Se a ligação nova já caiu, o aviso perdeu-se
+            if (nova.isFechada()) aoDesligar(nova);
+            return true;
+        } finally {
+            despejar();
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Posição atual do tabuleiro, com o número da última jogada.
+     */
+    private Mensagem posicaoAtual() {
+        return Mensagem.tabuleiro(tabuleiro.getPretas(), tabuleiro.getBrancas(), CORES[jogadorAtual]).setSeq(seq);
+    }
+
+    /**
+     * Trata uma mensagem recebida de um dos jogadores (ou de um espectador).
+     */
+    @Override
+    public void aoReceber(Ligacao origem, Mensagem mensagem) {
+        trinco.lock();
+        try {
+            int indice = indiceDe(origem);
+            if (indice < 0) {
+                // Um espectador só pode deixar de assistir
+                if (mensagem.getTipo() == TipoMensagem.SAIR && espectadores.remove(origem)) origem.fechar();
+                return;
+            }
+
+            if (!ativa) {
+                // O jogo já acabou: o cliente pode sair ou pedir a desforra
+                if (mensagem.getTipo() == TipoMensagem.SAIR) {
+                    origem.fechar();
+                } else if (mensagem.getTipo() == TipoMensagem.DESFORRA && !encerrada && !desligado[indice]) {
+                    devolvido[indice] = desligado[indice] = true;
+                    servidor.pedirDesforra(origem, id, chaves[indice], chaves[1 - indice], CORES[indice]);
+                    if (desligado[1 - indice]) encerrar();
+                }
+                return;
+            }
+
+            // --- Tratamento das mensagens recebidas ---
+            switch (mensagem.getTipo()) {
+                case JOGADA -> {
+                    // Só o jogador da vez pode jogar (mensagens fora de vez são ignoradas)
+                    if (indice == jogadorAtual) tratarJogada(mensagem.getLinha(), mensagem.getColuna());
+                }
+                case TEMPO_ESGOTADO -> {
+                    // Jogador informou que perdeu o tempo
+                    if (indice == jogadorAtual) passarAVez(false);
+                }
+                case CHAT -> {
+                    // Mensagem de chat enviada a todos; acima do limite é simplesmente ignorada
+                    if (limiteChat[indice] == null || limiteChat[indice].permitir()) transmitir(mensagem);
+                }
+                case SAIR -> {
+                    // Jogador saiu do jogo
+                    System.out.println("Jogador " + origem.getNome() + " saiu do jogo.");
+                    jogadores[1 - indice].acumular(SAIU);
+                    encerrar();
+                }
+                default -> {
+                    // Outras mensagens não interessam durante o jogo
+                }
+            }
+        } finally {
+            despejar();
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Chamado quando a ligação de um jogador cai (ou é fechada).
+     */
+    @Override
+    public void aoDesligar(Ligacao origem) {
+        trinco.lock();
+        try {
+            int indice = indiceDe(origem);
+            if (indice < 0) {
+                espectadores.remove(origem);
+                return;
+            }
+            if (encerrada || esperaRetoma[indice] != null) return;
+            if (ativa && prazoRetoma > 0) {
+                // A partida continua (o tempo dos turnos também): o jogador pode voltar
+                System.out.println("Jogador " + origem.getNome() + " desligado; pode voltar durante "
+                        + prazoRetoma + " s.");
+                esperaRetoma[indice] = servidor.getRodaTemporizadores().agendar(prazoRetoma, TimeUnit.SECONDS,
+                        () -> naoVoltou(indice, origem));
+                return;
+            }
+            desligado(indice);
+        } finally {
+            despejar();
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * O jogador saiu de vez (a ligação caiu e não vai voltar).
+     */
+    private void desligado(int indice) {
+        desligado[indice] = true;
+        if (ativa) {
+            // Jogador desconectado a meio do jogo: notifica o outro jogador
+            System.out.println("Jogador desconectado.");
+            jogadores[1 - indice].acumular(SAIU);
+            encerrar();
+        } else if (desligado[1 - indice]) {
+            // O jogo já tinha acabado e agora saíram os dois
+            encerrar();
+        }
+    }
+
+    /**
+     * Acabou o prazo para um jogador desligado voltar: é como se tivesse saído.
+     */
+    private void naoVoltou(int indice, Ligacao ligacao) {
+        trinco.lock();
+        try {
+            if (esperaRetoma[indice] == null || jogadores[indice] != ligacao) return; // Já voltou
+            esperaRetoma[indice] = null;
+            System.out.println("Jogador " + ligacao.getNome() + " não voltou a tempo.");
+            desligado(indice);
+        } finally {
+            despejar();
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Trata uma jogada do jogador da vez. Uma jogada mal escrita chega com linha e
+     * coluna fora do tabuleiro e é recusada como qualquer outra jogada inválida.
+     */
+    private void tratarJogada(int x, int y) {
+        Ligacao atual = jogadores[jogadorAtual];
+        char cor = CORES[jogadorAtual];
+
+        // Tenta jogar: se a jogada for válida, o tabuleiro é atualizado
+        // e são devolvidas as peças viradas (0 se for inválida)
+        long viradas = tabuleiro.jogar(x, y, cor);
+        if (viradas == 0) {
+            atual.acumular(JOGADA_INVALIDA);
+            comecarTurno();
+            return;
+        }
+
+        if (diario != null) diario.jogada(id, x * 8 + y);
+
+        // Informa ambos (e os espectadores), e guarda a jogada para quem se desligar
+        seq++;
+        historico[seq % TAMANHO_HISTORICO] = transmitir(Mensagem.jogada(x, y, cor).setSeq(seq));
+        atual.acumular(JOGADA_CONFIRMADA);
+
+        // Verifica se o jogo terminou
+        if (fimDeJogo()) {
+            transmitir(Mensagem.fim(tabuleiro.contarPecas(CORES[0]), tabuleiro.contarPecas(CORES[1])));
+            despedirEspectadores(null); // Já viram o FIM
+            terminarJogo();
+        } else {
+            // Passa a vez ao outro jogador
+            jogadorAtual = 1 - jogadorAtual;
+            jogadores[jogadorAtual].acumular(SUA_VEZ);
+            comecarTurno();
+        }
+    }
+
+    /**
+     * O jogador da vez não jogou (passou, ou acabou-lhe o tempo): passa a vez ao adversário.
+     */
+    private void passarAVez(boolean porTempo) {
+        if (diario != null) diario.passagem(id, porTempo);
+        tabuleiro.passar();
+        jogadorAtual = 1 - jogadorAtual;
+        jogadores[jogadorAtual].acumular(SUA_VEZ);
+        comecarTurno();
+    }
+
+    /**
+     * Começa a contar o tempo do turno do jogador da vez e informa-o do tempo disponível.
+     */
+    private void comecarTurno() {
+        long turno = ++numeroTurno;
+        inicioTurno = System.nanoTime();
+        agendar(TEMPO_TURNO, () -> tempoEsgotado(turno));
+        jogadores[jogadorAtual].acumular(TEMPO);
+    }
+
+    /**
+     * Chamado pela roda de temporizadores quando acaba o tempo de um turno.
+     * Se entretanto o turno já mudou (o jogador jogou mesmo a tempo), não faz nada.
+     */
+    private void tempoEsgotado(long turno) {
+        trinco.lock();
+        try {
+            if (!ativa || turno != numeroTurno) return;
+            // Se o tempo esgotou, passa a vez
+            jogadores[jogadorAtual].acumular(JOGADA_INVALIDA);
+            passarAVez(true);
+        } finally {
+            despejar();
+            trinco.unlock();
+        }
+    }
+
+    /**
+     * Substitui o temporizador atual da partida (o anterior deixa de contar).
+     */
+    private void agendar(int segundos, Runnable tarefa) {
+        if (temporizador != null) temporizador.cancelar();
+        temporizador = servidor.getRodaTemporizadores().agendar(segundos, TimeUnit.SECONDS, tarefa);
+    }
+
+    /**
+     * O jogo acabou normalmente: deixa de aceitar jogadas mas dá tempo aos clientes para
+     * verem o resultado e saírem pelos seus meios; depois disso fecha o que estiver aberto.
+     */
+    private void terminarJogo() {
+        ativa = false;
+        if (diario != null) diario.partidaTerminada(id);
+        // Quem estava desligado já não pode voltar: fica como tendo saído
+        for (int i = 0; i < jogadores.length; i++) {
+            if (esperaRetoma[i] != null) {
+                esperaRetoma[i].cancelar();
+                esperaRetoma[i] = null;
+                desligado[i] = true;
+            }
+        }
+        servidor.getClassificacao().registarResultado(jogadores[0].getNome(), jogadores[1].getNome(),
+                tabuleiro.diferencaPecas(CORES[0]));
+        if (arquivo != null) arquivo.guardar(id, jogadores[0].getNome(), jogadores[1].getNome(), tabuleiro);
+        agendar(ESPERA_APOS_FIM, () -> {
+            trinco.lock();
+            try {
+                encerrar();
+            } finally {
+                trinco.unlock();
+            }
+        });
+        servidor.partidaTerminada(this);
+    }
+
+    /**
+     * Fecha as ligações dos jogadores (menos as de quem voltou à sala de espera para a
+     * desforra) e dá a partida por terminada.
+     */
+    private void encerrar() {
+        if (encerrada) return;
+        if (ativa && diario != null) diario.partidaTerminada(id); // Abandonada a meio
+        ativa = false;
+        encerrada = true;
+        if (temporizador != null) temporizador.cancelar();
+        for (RodaTemporizadores.Temporizador t : esperaRetoma) {
+            if (t != null) t.cancelar();
+        }
+        despedirEspectadores(SAIU);
+        for (int i = 0; i < jogadores.length; i++) {
+            if (!devolvido[i]) jogadores[i].fechar();
+        }
+        servidor.partidaTerminada(this);
+        System.out.println("Partida " + id + " terminada ou jogador saiu.");
+    }
+
+    /**
+     * Envia uma mensagem a todos os jogadores (só segue no {@link #despejar}).
+     */
+    private void enviarATodos(MensagemCodificada msg) {
+        for (Ligacao l : jogadores) {
+            l.acumular(msg);
+        }
+    }
+
+    /**
+     * Envia uma mensagem aos jogadores e aos espectadores. A mensagem é codificada uma
+     * só vez e todos partilham os mesmos bytes (a mensagem codificada é devolvida).
+     */
+    private MensagemCodificada transmitir(Mensagem msg) {
+        MensagemCodificada codificada = MensagemCodificada.de(msg);
+        enviarATodos(codificada);
+        for (Ligacao l : espectadores) {
+            l.acumular(codificada);
+        }
+        espectadoresPorDespejar |= !espectadores.isEmpty();
+        return codificada;
+    }
+
+    /**
+     * Fecha as ligações dos espectadores (depois de lhes enviar a última mensagem, se houver).
+     */
+    private void despedirEspectadores(MensagemCodificada ultima) {
+        for (Ligacao l : espectadores) {
+            if (ultima != null) l.acumular(ultima);
+            l.fechar(); // O que ainda estiver na fila é enviado antes de fechar
+        }
+        espectadores.clear();
+        espectadoresPorDespejar = false;
+    }
+
+    /**
+     * Envia de uma vez, a cada jogador, as mensagens acumuladas durante o acontecimento.
+     * É chamado no fim de cada acontecimento, ainda com o trinco, para as mensagens de
+     * acontecimentos seguidos não se misturarem.
+     */
+    private void despejar() {
+        for (Ligacao l : jogadores) {
+            l.despejar();
+        }
+        if (espectadoresPorDespejar) {
+            for (Ligacao l : espectadores) {
+                l.despejar();
+            }
+            espectadoresPorDespejar = false;
+        }
+    }
+
+    /**
+     * Devolve o índice (0 ou 1) de uma ligação, ou -1 se não pertencer a esta partida.
+     */
+    private int indiceDe(Ligacao l) {
+        if (jogadores[0] == l) return 0;
+        if (jogadores[1] == l) return 1;
+        return -1;
+    }
+
+    /**
+     * Verifica se o jogo terminou (sem jogadas válidas para nenhum jogador).
+     */
+    private boolean fimDeJogo() {
+        // Tabuleiro cheio é o caso mais comum e verifica-se numa só operação
+        return tabuleiro.tabuleiroCheio() || tabuleiro.jogoTerminado();
+    }
+}
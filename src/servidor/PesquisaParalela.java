@@ -0,0 +1,171 @@
+package servidor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pesquisa de uma jogada com várias threads ao mesmo tempo ("Lazy SMP").
+ *
+ * Todas as threads pesquisam a mesma posição, cada uma com o seu {@link MotorAlfaBeta},
+ * mas partilham a mesma {@link TabelaTransposicao} (sem trincos). Não há divisão explícita
+ * do trabalho: o que uma thread descobre fica na tabela e as outras aproveitam-no
+ * (cortam mais cedo, ou saltam posições já pesquisadas). Como as threads não esperam umas
+ * pelas outras, o número de posições pesquisadas por segundo cresce quase na proporção das
+ * threads. Metade das ajudantes começa uma profundidade acima, para não andarem todas a
+ * fazer o mesmo.
+ *
+ * A jogada escolhida é a da thread que completou a iteração mais funda (em caso de empate,
+ * a da thread principal). Quando a thread principal acaba, as ajudantes são mandadas parar.
+ *
+ * O número de threads de cada pesquisa é limitado no construtor, para que uma análise
+ * funda não tire os processadores às partidas a decorrer.
+ */
+public class PesquisaParalela {
+
+    // Marca a jogada de uma ajudante que terminou com erro
+    private static final int FALHOU = Integer.MIN_VALUE;
+
+    private final TabelaTransposicao tabela;
+    private final MotorAlfaBeta principal;
+    private final MotorAlfaBeta[] ajudantes;
+    // Threads das ajudantes (null se a pesquisa for só com uma thread)
+    private final ExecutorService executor;
+    private final Future<?>[] resultados;
+    // Jogada devolvida por cada ajudante na última pesquisa
+    private final int[] jogadasAjudantes;
+
+    private long nos;
+    private int profundidadeAlcancada;
+    private int valor;
+
+    /**
+     * @param maximoThreads número máximo de threads de cada pesquisa (incluindo quem chama)
+     * @param bitsTabela a tabela partilhada tem 2^bitsTabela entradas
+     */
+    public PesquisaParalela(int maximoThreads, int bitsTabela) {
+        tabela = new TabelaTransposicao(bitsTabela);
+        principal = new MotorAlfaBeta(tabela);
+        ajudantes = new MotorAlfaBeta[maximoThreads - 1];
+        for (int i = 0; i < ajudantes.length; i++) ajudantes[i] = new MotorAlfaBeta(tabela);
+        resultados = new Future<?>[ajudantes.length];
+        jogadasAjudantes = new int[ajudantes.length];
+        executor = ajudantes.length == 0 ? null : Executors.newFixedThreadPool(ajudantes.length, r -> {
+            Thread t = new Thread(r, "motor-ajudante");
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    /**
+     * Escolhe a jogada para quem tem a vez, como {@link MotorAlfaBeta#escolherJogada},
+     * com a ajuda de até {@code numAjudantes} threads.
+     *
+     * @return casa escolhida (linha*8+coluna), ou -1 se não houver jogadas
+     */
+    public int escolherJogada(long pretas, long brancas, char vez, int profundidadeMaxima, long tempoNanos,
+                              int numAjudantes) {
+        int n = Math.min(numAjudantes, ajudantes.length);
+        tabela.novaPesquisa(); // O que ficou das jogadas anteriores dá lugar a esta pesquisa
+        for (int i = 0; i < n; i++) {
+            MotorAlfaBeta ajudante = ajudantes[i];
+            int primeira = 1 + i % 2;
+            ajudante.setCancelada(false);
+            resultados[i] = executor.submit(
+                    () -> ajudante.escolherJogada(pretas, brancas, vez, primeira, profundidadeMaxima, tempoNanos));
+        }
+
+        int melhor;
+        try {
+            melhor = principal.escolherJogada(pretas, brancas, vez, profundidadeMaxima, tempoNanos);
+        } finally {
+            // A principal acabou (ou falhou): as ajudantes param sempre e espera-se por elas,
+            // para que os seus motores não sejam usados por duas pesquisas ao mesmo tempo
+            for (int i = 0; i < n; i++) ajudantes[i].setCancelada(true);
+            for (int i = 0; i < n; i++) {
+                try {
+                    jogadasAjudantes[i] = (Integer) resultados[i].get();
+                } catch (Exception e) {
+                    jogadasAjudantes[i] = FALHOU; // Uma ajudante que falhou não estraga a pesquisa
+                } finally {
+                    resultados[i] = null;
+                }
+            }
+        }
+        nos = principal.getNos();
+        profundidadeAlcancada = principal.getProfundidadeAlcancada();
+        valor = principal.getValor();
+
+        // Fica a jogada da iteração mais funda
+        for (int i = 0; i < n; i++) {
+            if (jogadasAjudantes[i] == FALHOU) continue;
+            MotorAlfaBeta ajudante = ajudantes[i];
+            nos += ajudante.getNos();
+            if (jogadasAjudantes[i] >= 0 && ajudante.getProfundidadeAlcancada() > profundidadeAlcancada) {
+                melhor = jogadasAjudantes[i];
+                profundidadeAlcancada = ajudante.getProfundidadeAlcancada();
+                valor = ajudante.getValor();
+            }
+        }
+        return melhor;
+    }
+
+    /** Número máximo de ajudantes (threads além de quem chama). */
+    public int getMaximoAjudantes() {
+        return ajudantes.length;
+    }
+
+    /** Posições visitadas por todas as threads na última pesquisa. */
+    public long getNos() {
+        return nos;
+    }
+
+    /** Profundidade da iteração completa mais funda da última pesquisa. */
+    public int getProfundidadeAlcancada() {
+        return profundidadeAlcancada;
+    }
+
+    /** Valor da posição segundo a última pesquisa (do ponto de vista de quem jogava). */
+    public int getValor() {
+        return valor;
+    }
+
+    /**
+     * Análise de uma posição na linha de comandos, por exemplo:
+     * <pre>
+     *   java servidor.PesquisaParalela --posicao "---------------------------WB------BW--------------------------- B"
+     *        --threads 8 --tempo 10
+     * </pre>
+     * Mostra a jogada escolhida, a profundidade, o valor e as posições por segundo.
+     */
+    public static void main(String[] args) {
+        String posicao = "---------------------------WB------BW--------------------------- B";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int tempo = 5;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--posicao" -> posicao = args[i + 1];
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--tempo" -> tempo = Integer.parseInt(args[i + 1]);
+                default -> {
+                    System.out.println("Opção desconhecida: " + args[i]);
+                    return;
+                }
+            }
+        }
+        modelo.Tabuleiro tabuleiro = new modelo.Tabuleiro();
+        tabuleiro.definirPosicao(posicao);
+
+        PesquisaParalela pesquisa = new PesquisaParalela(threads, 22);
+        long inicio = System.nanoTime();
+        int casa = pesquisa.escolherJogada(tabuleiro.getPretas(), tabuleiro.getBrancas(), tabuleiro.getVez(),
+                MotorAlfaBeta.PROFUNDIDADE_LIMITE, TimeUnit.SECONDS.toNanos(tempo), threads - 1);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println(casa < 0 ? "Sem jogadas (passa a vez)" : "Jogada: " + casa / 8 + " " + casa % 8);
+        System.out.printf("Profundidade %d, valor %d, %d posições em %.1f s (%.0f por segundo, %d threads)%n",
+                pesquisa.getProfundidadeAlcancada(), pesquisa.getValor(), pesquisa.getNos(), segundos,
+                pesquisa.getNos() / segundos, threads);
+    }
+}
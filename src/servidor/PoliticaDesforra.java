@@ -0,0 +1,83 @@
+package servidor;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Emparelhamento de desforras: dois jogadores que acabaram de jogar um contra o outro e
+ * ambos pediram a desforra (mensagem "DESFORRA" depois do FIM) voltam a jogar juntos,
+ * com as cores trocadas.
+ *
+ * Os pedidos são reconhecidos pelo id da partida que acabou e pelas chaves de sessão que a
+ * partida deu a cada jogador, nunca pelo nome: qualquer cliente se pode apresentar com o
+ * nome de outro, mas não conhece a chave dele.
+ *
+ * Os restantes jogadores (e quem pediu a desforra mas o adversário não respondeu a tempo)
+ * são entregues à política de base.
+ */
+public class PoliticaDesforra implements PoliticaEmparelhamento {
+
+    // Tempo que se espera pelo pedido de desforra do adversário
+    private static final long ESPERA_DESFORRA = TimeUnit.SECONDS.toNanos(15);
+
+    private final PoliticaEmparelhamento base;
+    // Pedidos de desforra pendentes, pela chave de sessão de quem os fez
+    private final Map<Long, JogadorEmEspera> pedidos = new HashMap<>();
+
+    public PoliticaDesforra(PoliticaEmparelhamento base) {
+        this.base = base;
+    }
+
+    @Override
+    public void adicionar(JogadorEmEspera jogador) {
+        if (!jogador.pediuDesforra()) {
+            base.adicionar(jogador);
+            return;
+        }
+        // Dois pedidos com a mesma chave: o mais antigo deixa de esperar pela desforra
+        JogadorEmEspera anterior = pedidos.put(jogador.getChaveAnterior(), jogador);
+        if (anterior != null) base.adicionar(anterior);
+    }
+
+    @Override
+    public void remover(JogadorEmEspera jogador) {
+        if (!pedidos.remove(jogador.getChaveAnterior(), jogador)) base.remover(jogador);
+    }
+
+    @Override
+    public void emparelhar(long agora, BiConsumer<JogadorEmEspera, JogadorEmEspera> aoEmparelhar) {
+        Iterator<JogadorEmEspera> it = pedidos.values().iterator();
+        while (it.hasNext()) {
+            JogadorEmEspera a = it.next();
+            if (!a.disponivel()) {
+                it.remove();
+                continue;
+            }
+            // O adversário tem de vir da mesma partida e ter a chave que ela lhe deu
+            JogadorEmEspera b = pedidos.get(a.getChaveAdversario());
+            if (b != null && b != a && b.disponivel()
+                    && b.getPartidaAnterior() == a.getPartidaAnterior()
+                    && b.getChaveAdversario() == a.getChaveAnterior()) {
+                it.remove();
+                pedidos.remove(b.getChaveAnterior(), b);
+                // Cores trocadas: quem jogou com as brancas fica agora com as pretas
+                if (a.getCorAnterior() == Partida.CORES[1]) aoEmparelhar.accept(a, b);
+                else aoEmparelhar.accept(b, a);
+                // O mapa mudou fora do iterador: recomeça a percorrê-lo
+                it = pedidos.values().iterator();
+            } else if (a.tempoDeEspera(agora) > ESPERA_DESFORRA) {
+                it.remove();
+                base.adicionar(a);
+            }
+        }
+        base.emparelhar(agora, aoEmparelhar);
+    }
+
+    @Override
+    public int tamanho() {
+        return pedidos.size() + base.tamanho();
+    }
+}
@@ -0,0 +1,50 @@
+package servidor;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Regra usada para escolher quem joga contra quem.
+ *
+ * As políticas só são usadas pela thread de emparelhamento da {@link SalaDeEspera}, por
+ * isso não precisam de ser seguras para várias threads.
+ */
+public interface PoliticaEmparelhamento {
+
+    /**
+     * Um jogador entrou na fila.
+     */
+    void adicionar(JogadorEmEspera jogador);
+
+    /**
+     * Um jogador saiu da fila antes de ser emparelhado.
+     */
+    void remover(JogadorEmEspera jogador);
+
+    /**
+     * Forma os pares possíveis neste momento e entrega cada um a quem chama
+     * (primeiro o jogador que fica com as pretas, depois o das brancas).
+     * Os jogadores emparelhados deixam de estar na fila.
+     *
+     * @param agora instante atual (System.nanoTime)
+     */
+    void emparelhar(long agora, BiConsumer<JogadorEmEspera, JogadorEmEspera> aoEmparelhar);
+
+    /**
+     * Número de jogadores na fila.
+     */
+    int tamanho();
+
+    /**
+     * Cria a política com o nome indicado (ver {@link ConfiguracaoServidor}).
+     * Os pedidos de desforra são sempre atendidos antes da política escolhida.
+     */
+    static PoliticaEmparelhamento deTexto(String texto) {
+        PoliticaEmparelhamento base = switch (texto.toLowerCase()) {
+            case "fifo" -> new PoliticaFifo();
+            case "faixas" -> new PoliticaFaixas();
+            default -> throw new IllegalArgumentException("Política de emparelhamento desconhecida: " + texto
+                    + " (use fifo ou faixas)");
+        };
+        return new PoliticaDesforra(base);
+    }
+}
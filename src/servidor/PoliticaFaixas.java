@@ -0,0 +1,128 @@
+package servidor;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Emparelhamento por faixas de classificação: cada jogador só joga contra alguém com
+ * classificação parecida com a sua.
+ *
+ * A faixa aceite começa estreita e vai alargando com o tempo de espera, para que ninguém
+ * fique parado para sempre só por não haver adversários do seu nível. Quem espera há mais
+ * tempo escolhe primeiro, e escolhe o adversário com a classificação mais próxima.
+ *
+ * Os jogadores estão também arrumados pela classificação, por isso o adversário mais
+ * próximo encontra-se olhando só para os vizinhos de cada lado (em tempo logarítmico), em
+ * vez de comparar cada jogador com toda a fila: mesmo com milhares de jogadores à espera,
+ * cada revisão da fila é rápida.
+ */
+public class PoliticaFaixas implements PoliticaEmparelhamento {
+
+    // Diferença de classificação aceite logo à chegada
+    private static final int FAIXA_INICIAL = 100;
+    // Quanto a faixa alarga por cada intervalo de espera
+    private static final int AUMENTO_FAIXA = 50;
+    private static final long INTERVALO_AUMENTO = TimeUnit.SECONDS.toNanos(5);
+
+    // Jogadores por ordem de chegada (remover qualquer jogador é O(1))
+    private final LinkedHashSet<JogadorEmEspera> fila = new LinkedHashSet<>();
+    // Os mesmos jogadores agrupados pela classificação (em cada grupo, por ordem de chegada)
+    private final TreeMap<Integer, LinkedHashSet<JogadorEmEspera>> porClassificacao = new TreeMap<>();
+
+    @Override
+    public void adicionar(JogadorEmEspera jogador) {
+        if (fila.add(jogador)) {
+            porClassificacao.computeIfAbsent(jogador.getClassificacao(), c -> new LinkedHashSet<>()).add(jogador);
+        }
+    }
+
+    @Override
+    public void remover(JogadorEmEspera jogador) {
+        if (!fila.remove(jogador)) return;
+        LinkedHashSet<JogadorEmEspera> grupo = porClassificacao.get(jogador.getClassificacao());
+        grupo.remove(jogador);
+        if (grupo.isEmpty()) porClassificacao.remove(jogador.getClassificacao());
+    }
+
+    /**
+     * Diferença de classificação que o jogador aceita neste momento.
+     */
+    static int faixa(JogadorEmEspera jogador, long agora) {
+        long intervalos = jogador.tempoDeEspera(agora) / INTERVALO_AUMENTO;
+        return (int) Math.min(Integer.MAX_VALUE, FAIXA_INICIAL + intervalos * AUMENTO_FAIXA);
+    }
+
+    @Override
+    public void emparelhar(long agora, BiConsumer<JogadorEmEspera, JogadorEmEspera> aoEmparelhar) {
+        // Percorre uma cópia da ordem de chegada, porque os pares saem da fila pelo caminho
+        for (JogadorEmEspera a : fila.toArray(new JogadorEmEspera[0])) {
+            if (!fila.contains(a)) continue; // Já foi emparelhado nesta revisão
+            if (!a.disponivel()) {
+                remover(a);
+                continue;
+            }
+            JogadorEmEspera b = maisProximo(a, agora);
+            if (b != null) {
+                remover(a);
+                remover(b);
+                aoEmparelhar.accept(a, b);
+            }
+        }
+    }
+
+    /**
+     * Procura o adversário com a classificação mais próxima da de {@code a} (em caso de
+     * empate, o que chegou primeiro), se a diferença for aceite por um dos dois.
+     *
+     * @return o adversário, ou null se não houver nenhum dentro da faixa
+     */
+    private JogadorEmEspera maisProximo(JogadorEmEspera a, long agora) {
+        int classificacao = a.getClassificacao();
+        while (true) {
+            // Primeiro alguém com a mesma classificação, senão o vizinho mais próximo de cada lado
+            JogadorEmEspera b = primeiroExceto(porClassificacao.get(classificacao), a);
+            if (b == null) {
+                Map.Entry<Integer, LinkedHashSet<JogadorEmEspera>> abaixo = porClassificacao.lowerEntry(classificacao);
+                Map.Entry<Integer, LinkedHashSet<JogadorEmEspera>> acima = porClassificacao.higherEntry(classificacao);
+                JogadorEmEspera menor = abaixo != null ? abaixo.getValue().iterator().next() : null;
+                JogadorEmEspera maior = acima != null ? acima.getValue().iterator().next() : null;
+                if (menor == null) {
+                    b = maior;
+                } else if (maior == null) {
+                    b = menor;
+                } else {
+                    int d = Integer.compare(classificacao - abaixo.getKey(), acima.getKey() - classificacao);
+                    b = d < 0 || (d == 0 && menor.getChegada() - maior.getChegada() <= 0) ? menor : maior;
+                }
+                if (b == null) return null;
+            }
+            if (!b.disponivel()) {
+                remover(b); // Saiu entretanto: tira-se e procura-se o seguinte
+                continue;
+            }
+            int diferenca = Math.abs(classificacao - b.getClassificacao());
+            // Basta que um dos dois já aceite a diferença (o que espera há mais tempo); se o
+            // mais próximo não serve, nenhum outro serve
+            return diferenca <= Math.max(faixa(a, agora), faixa(b, agora)) ? b : null;
+        }
+    }
+
+    /**
+     * Primeiro jogador do grupo que não seja {@code jogador} (null se não houver).
+     */
+    private static JogadorEmEspera primeiroExceto(LinkedHashSet<JogadorEmEspera> grupo, JogadorEmEspera jogador) {
+        if (grupo == null) return null;
+        for (JogadorEmEspera j : grupo) {
+            if (j != jogador) return j;
+        }
+        return null;
+    }
+
+    @Override
+    public int tamanho() {
+        return fila.size();
+    }
+}
@@ -0,0 +1,49 @@
+package servidor;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Emparelhamento por ordem de chegada: os dois jogadores que esperam há mais tempo
+ * jogam um contra o outro (o que chegou primeiro fica com as pretas).
+ */
+public class PoliticaFifo implements PoliticaEmparelhamento {
+
+    // Mantém a ordem de chegada e permite remover qualquer jogador em O(1)
+    private final LinkedHashSet<JogadorEmEspera> fila = new LinkedHashSet<>();
+
+    @Override
+    public void adicionar(JogadorEmEspera jogador) {
+        fila.add(jogador);
+    }
+
+    @Override
+    public void remover(JogadorEmEspera jogador) {
+        fila.remove(jogador);
+    }
+
+    @Override
+    public void emparelhar(long agora, BiConsumer<JogadorEmEspera, JogadorEmEspera> aoEmparelhar) {
+        Iterator<JogadorEmEspera> it = fila.iterator();
+        JogadorEmEspera primeiro = null;
+        while (it.hasNext()) {
+            JogadorEmEspera j = it.next();
+            it.remove();
+            if (!j.disponivel()) continue;
+            if (primeiro == null) {
+                primeiro = j;
+            } else {
+                aoEmparelhar.accept(primeiro, j);
+                primeiro = null;
+            }
+        }
+        // Sobrou um jogador sem par: como a fila ficou vazia, volta a ser o primeiro
+        if (primeiro != null) fila.add(primeiro);
+    }
+
+    @Override
+    public int tamanho() {
+        return fila.size();
+    }
+}
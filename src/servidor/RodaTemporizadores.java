@@ -0,0 +1,201 @@
+package servidor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * "Roda" de temporizadores (hashed timer wheel): um único relógio central para todos os
+ * prazos do servidor (tempo de cada turno, tempo para o cliente se apresentar, ligações
+ * inativas, etc.).
+ *
+ * A roda tem um número fixo de ranhuras; a cada "tique" (por exemplo, 10 ms) avança uma
+ * ranhura e dispara os temporizadores que lá estão e cujo prazo já chegou. Agendar ou
+ * cancelar um temporizador custa sempre o mesmo (O(1)), por isso milhares de partidas
+ * podem ter o seu relógio a contar sem precisarem cada uma de uma thread.
+ *
+ * O tempo é medido com {@link System#nanoTime()}, que não anda para trás nem salta quando
+ * o relógio do sistema é acertado. Os temporizadores nunca disparam antes do prazo, mas
+ * podem disparar até um tique depois.
+ */
+public class RodaTemporizadores {
+
+    // Estados de um temporizador
+    private static final int PENDENTE = 0;
+    private static final int CANCELADO = 1;
+    private static final int DISPARADO = 2;
+
+    /**
+     * Um temporizador agendado. Serve para o cancelar.
+     */
+    public static final class Temporizador {
+        private final long prazo;      // Em nanossegundos, contados a partir do arranque da roda
+        private final Runnable tarefa;
+        private final AtomicInteger estado = new AtomicInteger(PENDENTE);
+        private final RodaTemporizadores roda;
+
+        // Campos só usados pela thread da roda
+        private long voltas;           // Quantas voltas completas faltam até disparar
+        private Ranhura ranhura;
+        private Temporizador anterior, seguinte;
+
+        private Temporizador(RodaTemporizadores roda, long prazo, Runnable tarefa) {
+            this.roda = roda;
+            this.prazo = prazo;
+            this.tarefa = tarefa;
+        }
+
+        /**
+         * Cancela o temporizador. Se já tiver disparado, não faz nada.
+         *
+         * @return true se o temporizador foi cancelado a tempo
+         */
+        public boolean cancelar() {
+            if (!estado.compareAndSet(PENDENTE, CANCELADO)) return false;
+            roda.cancelados.add(this);
+            return true;
+        }
+    }
+
+    /**
+     * Lista duplamente ligada dos temporizadores de uma ranhura (remoção em O(1)).
+     */
+    private static final class Ranhura {
+        private Temporizador primeiro, ultimo;
+
+        void adicionar(Temporizador t) {
+            t.ranhura = this;
+            t.anterior = ultimo;
+            t.seguinte = null;
+            if (ultimo == null) primeiro = t; else ultimo.seguinte = t;
+            ultimo = t;
+        }
+
+        void remover(Temporizador t) {
+            if (t.anterior == null) primeiro = t.seguinte; else t.anterior.seguinte = t.seguinte;
+            if (t.seguinte == null) ultimo = t.anterior; else t.seguinte.anterior = t.anterior;
+            t.ranhura = null;
+            t.anterior = t.seguinte = null;
+        }
+    }
+
+    private final long duracaoTique;      // Duração de um tique, em nanossegundos
+    private final Ranhura[] ranhuras;
+    private final int mascara;            // ranhuras.length - 1 (o tamanho é potência de 2)
+    private final Executor executor;      // Onde correm as tarefas dos temporizadores
+    private final long arranque = System.nanoTime();
+
+    // Pedidos feitos por outras threads, tratados pela thread da roda no tique seguinte
+    private final Queue<Temporizador> novos = new ConcurrentLinkedQueue<>();
+    private final Queue<Temporizador> cancelados = new ConcurrentLinkedQueue<>();
+
+    private final Thread thread;
+    private volatile boolean parada = false;
+    private long tique = 0; // Só usado pela thread da roda
+
+    /**
+     * Cria e arranca uma roda de temporizadores.
+     *
+     * @param duracaoTique duração de cada tique (precisão dos temporizadores)
+     * @param unidade unidade de duracaoTique
+     * @param numeroRanhuras número de ranhuras (arredondado para a potência de 2 seguinte)
+     * @param executor onde correm as tarefas dos temporizadores que disparam
+     */
+    public RodaTemporizadores(long duracaoTique, TimeUnit unidade, int numeroRanhuras, Executor executor) {
+        this.duracaoTique = unidade.toNanos(duracaoTique);
+        int tamanho = Integer.highestOneBit(Math.max(1, numeroRanhuras - 1)) << 1;
+        this.ranhuras = new Ranhura[tamanho];
+        for (int i = 0; i < tamanho; i++) ranhuras[i] = new Ranhura();
+        this.mascara = tamanho - 1;
+        this.executor = executor;
+        this.thread = new Thread(this::rodar, "roda-temporizadores");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Agenda uma tarefa para correr depois do atraso indicado. Pode ser chamado de qualquer thread.
+     *
+     * @return o temporizador, que pode ser cancelado
+     */
+    public Temporizador agendar(long atraso, TimeUnit unidade, Runnable tarefa) {
+        long prazo = System.nanoTime() - arranque + unidade.toNanos(Math.max(0, atraso));
+        Temporizador t = new Temporizador(this, prazo, tarefa);
+        novos.add(t);
+        return t;
+    }
+
+    /**
+     * Para a roda. Os temporizadores pendentes deixam de disparar.
+     */
+    public void parar() {
+        parada = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Ciclo da thread da roda: espera pelo tique seguinte e trata a ranhura correspondente.
+     */
+    private void rodar() {
+        while (!parada) {
+            esperarPeloTique();
+            if (parada) return;
+            removerCancelados();
+            colocarNovos();
+            dispararRanhura(ranhuras[(int) (tique & mascara)]);
+            tique++;
+        }
+    }
+
+    /**
+     * Dorme até ao início do tique atual (calculado a partir do arranque, para não acumular atrasos).
+     */
+    private void esperarPeloTique() {
+        long alvo = tique * duracaoTique;
+        long falta;
+        while ((falta = alvo - (System.nanoTime() - arranque)) > 0 && !parada) {
+            LockSupport.parkNanos(this, falta);
+        }
+    }
+
+    private void removerCancelados() {
+        Temporizador t;
+        while ((t = cancelados.poll()) != null) {
+            if (t.ranhura != null) t.ranhura.remover(t);
+        }
+    }
+
+    private void colocarNovos() {
+        Temporizador t;
+        while ((t = novos.poll()) != null) {
+            if (t.estado.get() == CANCELADO) continue;
+            // Tique em que o prazo é atingido (arredondado para cima, para nunca disparar cedo)
+            long alvo = Math.max((t.prazo + duracaoTique - 1) / duracaoTique, tique);
+            t.voltas = (alvo - tique) / ranhuras.length;
+            ranhuras[(int) (alvo & mascara)].adicionar(t);
+        }
+    }
+
+    private void dispararRanhura(Ranhura ranhura) {
+        Temporizador t = ranhura.primeiro;
+        while (t != null) {
+            Temporizador seguinte = t.seguinte;
+            if (t.voltas <= 0) {
+                ranhura.remover(t);
+                if (t.estado.compareAndSet(PENDENTE, DISPARADO)) {
+                    try {
+                        executor.execute(t.tarefa);
+                    } catch (RuntimeException e) {
+                        System.err.println("Erro ao disparar temporizador: " + e.getMessage());
+                    }
+                }
+            } else {
+                t.voltas--;
+            }
+            t = seguinte;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package servidor;
+
+import protocolo.Mensagem;
+import protocolo.TipoMensagem;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sala onde os jogadores esperam por um adversário (emparelhamento).
+ *
+ * As threads de rede nunca ficam à espera aqui: quem entra ou sai da sala só põe um
+ * pedido numa fila sem trincos ({@link ConcurrentLinkedQueue}) e acorda a thread de
+ * emparelhamento. É só essa thread que mexe na {@link PoliticaEmparelhamento}, forma os
+ * pares e começa as partidas, por isso mesmo com centenas de ligações por segundo
+ * ninguém fica bloqueado à espera de um trinco global.
+ *
+ * A cor de cada jogador só é enviada quando ele é emparelhado (o primeiro do par fica com
+ * as pretas). Enquanto espera, o jogador pode sair (SAIR) ou perder a ligação, e deixa de
+ * contar como estando à espera.
+ *
+ * Se o servidor tiver computador (opção "--motor-apos"), quem espera mais do que esse tempo
+ * sem adversário joga contra o computador: fica com as pretas e o computador com as brancas.
+ */
+public class SalaDeEspera implements OuvinteLigacao {
+
+    // De quanto em quanto tempo a thread acorda mesmo sem pedidos (as faixas alargam com o tempo)
+    private static final long INTERVALO_REVISAO = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ServidorReversi servidor;
+    private final PoliticaEmparelhamento politica;
+    private final MetricasEmparelhamento metricas = new MetricasEmparelhamento();
+
+    // Pedidos das threads de rede, tratados pela thread de emparelhamento
+    private final Queue<JogadorEmEspera> chegadas = new ConcurrentLinkedQueue<>();
+    private final Queue<JogadorEmEspera> saidas = new ConcurrentLinkedQueue<>();
+    // Jogador em espera de cada ligação (para o encontrar quando sai)
+    private final Map<Ligacao, JogadorEmEspera> emEspera = new ConcurrentHashMap<>();
+
+    private final Thread thread = new Thread(this::emparelhar, "emparelhamento");
+
+    // Espera até jogar contra o computador (0 = nunca)
+    private final long esperaMotor;
+
+    public SalaDeEspera(ServidorReversi servidor, PoliticaEmparelhamento politica) {
+        this.servidor = servidor;
+        this.politica = politica;
+        this.esperaMotor = TimeUnit.SECONDS.toNanos(servidor.getConfiguracao().getMotorApos());
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Arranca a thread de emparelhamento.
+     */
+    public void iniciar() {
+        thread.start();
+    }
+
+    /**
+     * Um jogador que acabou de se apresentar entra na fila.
+     */
+    public void entrar(Ligacao ligacao) {
+        entrar(new JogadorEmEspera(ligacao, servidor.getClassificacao().de(ligacao.getNome())));
+    }
+
+    /**
+     * Um jogador volta à fila a pedir a desforra contra o adversário da partida anterior
+     * (identificados pelo id da partida e pelas chaves de sessão que ela lhes deu).
+     */
+    public void pedirDesforra(Ligacao ligacao, int partida, long chave, long chaveAdversario, char corAnterior) {
+        entrar(new JogadorEmEspera(ligacao, servidor.getClassificacao().de(ligacao.getNome()),
+                partida, chave, chaveAdversario, corAnterior));
+    }
+
+    private void entrar(JogadorEmEspera jogador) {
+        Ligacao ligacao = jogador.getLigacao();
+        ligacao.setOuvinte(this);
+        emEspera.put(ligacao, jogador);
+        metricas.entrou();
+        chegadas.add(jogador);
+        LockSupport.unpark(thread);
+        // Se a ligação caiu antes de o ouvinte mudar, o aviso não chegou à sala
+        if (ligacao.isFechada()) aoDesligar(ligacao);
+    }
+
+    @Override
+    public void aoReceber(Ligacao origem, Mensagem mensagem) {
+        // Enquanto espera, só interessa saber se o jogador desistiu
+        if (mensagem.getTipo() == TipoMensagem.SAIR) origem.fechar();
+    }
+
+    @Override
+    public void aoDesligar(Ligacao origem) {
+        JogadorEmEspera jogador = emEspera.remove(origem);
+        if (jogador == null) return;
+        jogador.marcarSaida();
+        metricas.saiu();
+        saidas.add(jogador);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Ciclo da thread de emparelhamento.
+     */
+    private void emparelhar() {
+        while (true) {
+            JogadorEmEspera j;
+            // Primeiro as chegadas, depois as saídas (quem entrou e saiu logo fica de fora)
+            while ((j = chegadas.poll()) != null) politica.adicionar(j);
+            while ((j = saidas.poll()) != null) politica.remover(j);
+
+            long agora = System.nanoTime();
+            if (esperaMotor > 0) chamarMotor(agora);
+            politica.emparelhar(agora, this::comecar);
+
+            if (chegadas.isEmpty() && saidas.isEmpty()) LockSupport.parkNanos(this, INTERVALO_REVISAO);
+        }
+    }
+
+    /**
+     * Dois jogadores foram emparelhados: cada um recebe a sua cor e a partida começa.
+     */
+    private void comecar(JogadorEmEspera pretas, JogadorEmEspera brancas) {
+        long agora = System.nanoTime();
+        // Quem sai do mapa primeiro fica com o jogador; se já não estiver lá, desligou-se
+        boolean pretasPresente = emEspera.remove(pretas.getLigacao(), pretas);
+        boolean brancasPresente = emEspera.remove(brancas.getLigacao(), brancas);
+        if (!pretasPresente || !brancasPresente) {
+            // Um dos dois saiu entretanto: o outro volta para a fila
+            if (pretasPresente) devolver(pretas);
+            if (brancasPresente) devolver(brancas);
+            return;
+        }
+        pretas.marcarSaida();
+        brancas.marcarSaida();
+        metricas.emparelhado(pretas.tempoDeEspera(agora));
+        metricas.emparelhado(brancas.tempoDeEspera(agora));
+
+        // Sem nome: fica "Jogador1" ou "Jogador2", conforme a cor
+        if (pretas.getNome().isEmpty()) pretas.getLigacao().setNome("Jogador1");
+        if (brancas.getNome().isEmpty()) brancas.getLigacao().setNome("Jogador2");
+        // A cor segue no mesmo envio que as primeiras mensagens da partida
+        pretas.getLigacao().acumular(Mensagem.cor(Partida.CORES[0]));
+        brancas.getLigacao().acumular(Mensagem.cor(Partida.CORES[1]));
+        servidor.criarPartida(pretas.getLigacao(), brancas.getLigacao());
+    }
+
+    /**
+     * Quem já espera há demasiado tempo sai da fila e joga contra o computador.
+     */
+    private void chamarMotor(long agora) {
+        for (JogadorEmEspera j : emEspera.values()) {
+            if (!j.disponivel() || j.tempoDeEspera(agora) < esperaMotor) continue;
+            if (!emEspera.remove(j.getLigacao(), j)) continue; // Desligou-se entretanto
+            politica.remover(j);
+            j.marcarSaida();
+            metricas.emparelhado(j.tempoDeEspera(agora));
+
+            ConfiguracaoServidor configuracao = servidor.getConfiguracao();
+            Ligacao motor = new LigacaoMotor(servidor.getAgendaMotor(), configuracao.getMotorNivel());
+            if (j.getNome().isEmpty()) j.getLigacao().setNome("Jogador1");
+            j.getLigacao().acumular(Mensagem.cor(Partida.CORES[0]));
+            motor.acumular(Mensagem.cor(Partida.CORES[1]));
+            servidor.criarPartida(j.getLigacao(), motor);
+        }
+    }
+
+    /**
+     * Volta a pôr na fila um jogador cujo par se desligou (mantém a hora de chegada).
+     */
+    private void devolver(JogadorEmEspera jogador) {
+        emEspera.put(jogador.getLigacao(), jogador);
+        chegadas.add(jogador); // A política está a meio de emparelhar: só na próxima volta
+        if (jogador.getLigacao().isFechada()) aoDesligar(jogador.getLigacao());
+    }
+
+    public MetricasEmparelhamento getMetricas() {
+        return metricas;
+    }
+}
@@ -0,0 +1,79 @@
+package servidor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Motor de rede não bloqueante do servidor (modo "nio").
+ *
+ * Em vez de uma thread por ligação, um pequeno conjunto fixo de {@link CicloEventos}
+ * trata todas as ligações: o primeiro ciclo também aceita as ligações novas e distribui-as
+ * pelos ciclos de forma rotativa. As mensagens são tratadas assim que chegam, sem
+ * esperas artificiais, por isso a latência de cada jogada depende só da rede.
+ */
+public class ServidorNio {
+
+    private final ServidorReversi servidor;
+    private final ConfiguracaoServidor configuracao;
+    private final CicloEventos[] ciclos;
+    private int proximoCiclo = 0; // Ciclo que recebe a próxima ligação (só usado pelo ciclo 0)
+
+    public ServidorNio(ServidorReversi servidor, ConfiguracaoServidor configuracao) throws IOException {
+        this.servidor = servidor;
+        this.configuracao = configuracao;
+        this.ciclos = new CicloEventos[configuracao.getCiclos()];
+        for (int i = 0; i < ciclos.length; i++) ciclos[i] = new CicloEventos("ciclo-nio-" + i);
+    }
+
+    /**
+     * Abre o canal de escuta e arranca os ciclos de eventos.
+     */
+    public void executar() throws IOException {
+        ServerSocketChannel escuta = ServerSocketChannel.open();
+        escuta.configureBlocking(false);
+        escuta.bind(new InetSocketAddress(InetAddress.getByName(configuracao.getIp()), configuracao.getPorta()),
+                configuracao.getBacklog());
+
+        // O ciclo 0 também trata das ligações novas
+        CicloEventos aceitador = ciclos[0];
+        aceitador.executar(() -> {
+            try {
+                aceitador.registar(escuta, SelectionKey.OP_ACCEPT, new CicloEventos.Tratador() {
+                    @Override
+                    public void aoEstarPronto(SelectionKey chave) throws IOException {
+                        aceitar(escuta);
+                    }
+
+                    @Override
+                    public void aoFalhar(IOException e) {
+                        System.err.println("Erro ao aceitar ligação: " + e.getMessage());
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Erro no servidor: " + e.getMessage());
+            }
+        });
+        for (CicloEventos c : ciclos) c.iniciar();
+    }
+
+    /**
+     * Aceita todas as ligações pendentes e entrega cada uma a um ciclo.
+     */
+    private void aceitar(ServerSocketChannel escuta) throws IOException {
+        SocketChannel canal;
+        while ((canal = escuta.accept()) != null) {
+            canal.configureBlocking(false);
+            canal.socket().setTcpNoDelay(true);
+            CicloEventos ciclo = ciclos[proximoCiclo];
+            proximoCiclo = (proximoCiclo + 1) % ciclos.length;
+
+            LigacaoNio ligacao = new LigacaoNio(canal, ciclo, servidor.getApresentacao(), configuracao.getFilaSaida());
+            servidor.ligacaoAceite(ligacao);
+            ciclo.executar(ligacao::registar);
+        }
+    }
+}
@@ -1,314 +1,366 @@
 package servidor;
 
-// Importações das classes do modelo do jogo
-import modelo.Tabuleiro;
-import modelo.Casa;
-import modelo.Peca;
-
 // Importações para comunicação de rede e listas
 import java.io.*;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Classe principal do servidor do jogo Reversi.
- * Responsável por aceitar ligações dos jogadores, gerir o jogo e comunicar com os clientes.
+ * Responsável por aceitar ligações dos jogadores e distribuí-los por partidas.
+ *
+ * O servidor pode ter muitas partidas a decorrer ao mesmo tempo: cada {@link Partida}
+ * tem o seu próprio tabuleiro e jogadores. Cada ligação tem uma thread que lê as mensagens
+ * do cliente; com a opção "--modo virtual" estas threads são threads virtuais, o que permite
+ * ter dezenas de milhares de ligações quase paradas sem o custo de uma thread do sistema
+ * operativo por cada uma.
+ *
+ * Todos os prazos (tempo de cada turno, tempo para o cliente se apresentar, ligações
+ * inativas) são contados por uma única {@link RodaTemporizadores} partilhada.
+ *
+ * Com a opção "--diario", as partidas ficam registadas num {@link Diario}; se o servidor
+ * for abaixo, as partidas que estavam a decorrer são refeitas quando ele volta a arrancar
+ * e os jogadores podem voltar a elas. Com a opção "--arquivo", as partidas terminadas
+ * ficam guardadas num {@link ArquivoPartidas}.
+ *
+ * Com a opção "--motor-apos", quem espera demasiado tempo por um adversário joga contra o
+ * computador; as jogadas do computador são pensadas pelas threads da {@link AgendaMotor}.
  *
  * Comentários detalhados para facilitar a compreensão de quem não tem experiência com programação.
  */
 public class ServidorReversi {
 
-    // Tabuleiro do jogo (mantém o estado das peças)
-    private static final Tabuleiro tabuleiro = new Tabuleiro();
-
-    // Listas para guardar a comunicação e dados dos jogadores
-    private static final ArrayList<PrintWriter> jogadores = new ArrayList<>(); // Para enviar mensagens
-    private static final ArrayList<BufferedReader> entradas = new ArrayList<>(); // Para receber mensagens
-    private static final ArrayList<String> nomes = new ArrayList<>(); // Nomes dos jogadores
-    private static final ArrayList<Socket> sockets = new ArrayList<>(); // Sockets de cada jogador
+    // De quanto em quanto tempo são mostradas as métricas do emparelhamento (segundos)
+    private static final int INTERVALO_METRICAS = 60;
+    // De quanto em quanto tempo as partidas terminadas são escritas no arquivo, mesmo que o bloco não esteja cheio (segundos)
+    private static final int INTERVALO_ARQUIVO = 300;
+
+    // Opções de arranque (IP, porta, modo)
+    private final ConfiguracaoServidor configuracao;
+    // Fábrica das threads usadas pelas ligações (virtuais ou de plataforma)
+    private final ThreadFactory fabricaDeThreads;
+    // Relógio central de todos os prazos (tique de 10 ms; as tarefas correm em threads virtuais)
+    private final RodaTemporizadores roda =
+            new RodaTemporizadores(10, TimeUnit.MILLISECONDS, 512, Executors.newVirtualThreadPerTaskExecutor());
+
+    // Partidas a decorrer neste momento, por identificador
+    private final Map<Integer, Partida> partidasAtivas = new ConcurrentHashMap<>();
+    // Contador usado para dar um identificador único a cada partida (continua depois do maior
+    // número do diário e do arquivo, se houver)
+    private final AtomicInteger proximoId = new AtomicInteger(1);
+
+    // Sala onde os jogadores esperam por adversário, e quem trata da sua apresentação
+    private final SalaDeEspera sala;
+    private final Apresentacao apresentacao;
+    // Classificação dos jogadores (usada para emparelhar jogadores de nível parecido)
+    private final Classificacao classificacao = new Classificacao();
+    // Ligações de espectadores (não enviam nada, por isso não são desligadas por inatividade).
+    // Cada uma sai daqui quando o vigia da inatividade a encontra fechada.
+    private final Set<Ligacao> espectadores = ConcurrentHashMap.newKeySet();
+    // Diário das partidas (null se não foi pedido); aberto no arranque, antes de haver partidas
+    private Diario diario;
+    // Arquivo das partidas terminadas (null se não foi pedido)
+    private ArquivoPartidas arquivo;
+    // Threads que pensam pelo computador (null se não houver partidas contra o computador)
+    private final AgendaMotor agendaMotor;
 
-    // Cores atribuídas aos jogadores: 'B' para preto, 'W' para branco
-    private static final char[] cores = {'B', 'W'};
-    private static int jogadorAtual = 0; // Índice do jogador que está a jogar
+    /**
+     * Cria um servidor com as opções indicadas.
+     */
+    public ServidorReversi(ConfiguracaoServidor configuracao) {
+        this.configuracao = configuracao;
+        this.fabricaDeThreads = configuracao.getModo().fabricaDeThreads("reversi-");
+        this.sala = new SalaDeEspera(this, PoliticaEmparelhamento.deTexto(configuracao.getEmparelhamento()));
+        this.apresentacao = new Apresentacao(this, sala, roda, configuracao.getPrazoApresentacao());
+        this.agendaMotor = configuracao.getMotorApos() > 0
+                ? new AgendaMotor(configuracao.getMotorThreads(), configuracao.getMotorThreadsPesquisa()) : null;
+    }
 
     /**
-     * Método principal. Inicia o servidor e gere o ciclo de espera e jogo.
+     * Método principal. Inicia o servidor.
+     * Opções: ver {@link ConfiguracaoServidor}.
      */
     public static void main(String[] args) {
+        ConfiguracaoServidor configuracao;
+        try {
+            configuracao = ConfiguracaoServidor.lerArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        new ServidorReversi(configuracao).executar();
+    }
 
-        String ipManual = "10.20.10.100"; // IP onde o servidor vai escutar (mude para o IP da sua máquina)
-        int porta = 2025; // Porta onde o servidor vai escutar
+    /**
+     * Arranca o servidor no modo escolhido.
+     */
+    public void executar() {
+        String ip = configuracao.getIp();
+        int porta = configuracao.getPorta();
+        System.out.println("Servidor Reversi a correr em " + ip + ":" + porta
+                + " (modo " + configuracao.getModo().name().toLowerCase()
+                + ", emparelhamento " + configuracao.getEmparelhamento() + ")");
+        try {
+            if (configuracao.getArquivo() != null) abrirArquivo(Path.of(configuracao.getArquivo()));
+            if (configuracao.getDiario() != null) abrirDiario(Path.of(configuracao.getDiario()));
+            sala.iniciar();
+            mostrarMetricas();
+            if (configuracao.getModo() == ModoServidor.NIO) {
+                new ServidorNio(this, configuracao).executar();
+            } else {
+                aceitarLigacoes();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro no servidor: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-        try (ServerSocket serverSocket = new ServerSocket(porta, 0, InetAddress.getByName(ipManual))) {
-            System.out.println("Servidor Reversi a correr em " + ipManual + ":" + porta);
+    /**
+     * Abre o arquivo das partidas terminadas. O bloco em construção é escrito de tempos a
+     * tempos e quando o servidor termina, para não se perderem partidas.
+     */
+    private void abrirArquivo(Path pasta) throws IOException {
+        arquivo = ArquivoPartidas.abrir(pasta);
+        proximoId.accumulateAndGet(arquivo.getMaiorId() + 1, Math::max); // Sem números repetidos no arquivo
+        Runtime.getRuntime().addShutdownHook(new Thread(arquivo::fechar));
+        despejarArquivo();
+        System.out.println("Arquivo em " + pasta + ": " + arquivo.contarPartidas() + " partidas.");
+    }
 
-            // Ciclo infinito: o servidor nunca termina, fica sempre à espera de novos jogos
+    private void despejarArquivo() {
+        roda.agendar(INTERVALO_ARQUIVO, TimeUnit.SECONDS, () -> {
+            arquivo.despejar();
+            despejarArquivo();
+        });
+    }
+
+    /**
+     * Abre o diário e refaz as partidas que estavam a decorrer quando o servidor parou.
+     * Os jogadores têm o prazo de retoma para voltar a elas; se esse prazo for 0, as
+     * partidas recuperadas são dadas por terminadas.
+     */
+    private void abrirDiario(Path pasta) throws IOException {
+        diario = Diario.abrir(pasta);
+        Runtime.getRuntime().addShutdownHook(new Thread(diario::fechar)); // Grava o que falta ao sair
+        proximoId.accumulateAndGet(diario.getMaiorId() + 1, Math::max);
+        for (Diario.PartidaGuardada guardada : diario.getRecuperadas()) {
+            Partida partida = configuracao.getPrazoRetoma() > 0 ? Partida.recuperar(this, guardada) : null;
+            if (partida == null) {
+                diario.partidaTerminada(guardada.getId());
+                continue;
+            }
+            partidasAtivas.put(partida.getId(), partida);
+        }
+        System.out.println("Diário em " + pasta + ": " + partidasAtivas.size() + " partidas recuperadas.");
+    }
+
+    /**
+     * Ciclo de aceitação dos modos com threads: para cada jogador que se liga, arranca a
+     * thread que lê as suas mensagens e volta logo a aceitar. A apresentação (nome e cor)
+     * é tratada nessa thread, por isso um cliente lento a dizer o nome não atrasa os outros.
+     */
+    private void aceitarLigacoes() throws IOException {
+        String ip = configuracao.getIp();
+        int porta = configuracao.getPorta();
+        try (ServerSocket serverSocket = new ServerSocket(porta, configuracao.getBacklog(), InetAddress.getByName(ip))) {
+            System.out.println("À escuta de clientes...");
+
+            // Ciclo infinito: o servidor nunca termina, fica sempre à espera de novos jogadores
             while (true) {
-                // Limpa listas para preparar um novo jogo
-                jogadores.clear();
-                entradas.clear();
-                nomes.clear();
-                sockets.clear();
-                jogadorAtual = 0;
-
-                System.out.println("À escuta de clientes...");
-
-                // Aceita ligações até ter dois jogadores
-                while (jogadores.size() < 2) {
-                    Socket cliente = serverSocket.accept(); // Espera ligação
-                    System.out.println("Jogador ligado.");
-
-                    // Prepara canais de comunicação com o cliente
-                    PrintWriter out = new PrintWriter(cliente.getOutputStream(), true); // Para enviar
-                    BufferedReader in = new BufferedReader(new InputStreamReader(cliente.getInputStream())); // Para receber
-
-                    jogadores.add(out);
-                    entradas.add(in);
-                    sockets.add(cliente);
-
-                    // Lê o nome do jogador enviado pelo cliente, ou atribui um nome padrão
-                    String nome = in.readLine();
-                    if (nome == null || nome.isEmpty()) nome = "Jogador" + jogadores.size();
-                    nomes.add(nome);
-
-                    // Envia ao cliente a cor que lhe foi atribuída ('B' ou 'W')
-                    out.println(cores[jogadores.size() - 1]);
+                Socket cliente = serverSocket.accept(); // Espera ligação
+                System.out.println("Jogador ligado.");
+                LigacaoBloqueante ligacao;
+                try {
+                    ligacao = new LigacaoBloqueante(cliente, apresentacao, configuracao.getFilaSaida(), roda);
+                } catch (IOException e) {
+                    try { cliente.close(); } catch (IOException ex) {}
+                    continue;
                 }
+                // A primeira linha (o nome) vai para a apresentação, que depois põe o
+                // jogador na sala de espera; se não chegar a tempo, a ligação é fechada
+                ligacaoAceite(ligacao);
+                ligacao.iniciarLeitura(fabricaDeThreads);
+            }
+        }
+    }
 
-                // Informa cada jogador do nome do adversário
-                jogadores.get(0).println("NOME_ADVERSARIO " + nomes.get(1));
-                jogadores.get(1).println("NOME_ADVERSARIO " + nomes.get(0));
-
-                // Início do jogo: envia mensagem para ambos e inicializa o tabuleiro
-                // Aqui começa o jogo de verdade. O servidor avisa os dois jogadores que o jogo vai começar,
-                // inicializa o tabuleiro (coloca as peças iniciais) e diz a quem começa que é a sua vez.
-                enviarMensagemATodos("COMEÇAR");
-                tabuleiro.inicializar();
-                jogadores.get(jogadorAtual).println("SUA_VEZ"); // Diz a quem começa que é a sua vez
-
-                boolean jogoAtivo = true; // Controla se o jogo está a decorrer
-
-                // Ciclo principal do jogo (enquanto não terminar)
-                // Este ciclo fica a correr enquanto o jogo não acabar. Ele vai alternando entre os jogadores,
-                // esperando que cada um faça a sua jogada, controlando o tempo e tratando as mensagens recebidas.
-                while (jogoAtivo) {
-                    boolean mensagemProcessada = false; // Controla se já tratou a mensagem do turno
-
-                    // --- INÍCIO: controlo de tempo ---
-                    // Cada jogador tem 30 segundos para jogar. Se não jogar a tempo, perde a vez.
-                    int tempoTurno = 30; // Tempo limite por jogada (segundos)
-                    long inicioTurno = System.currentTimeMillis(); // Marca o início do turno
-                    try {
-                        sockets.get(jogadorAtual).setSoTimeout(tempoTurno * 1000); // Define timeout no socket
-                    } catch (IOException ex) {}
-
-                    jogadores.get(jogadorAtual).println("TEMPO " + tempoTurno); // Informa o tempo ao cliente
-
-                    // Espera e processa a mensagem do jogador da vez
-                    // Aqui o servidor fica à espera de uma mensagem do jogador da vez. Só processa mensagens desse jogador.
-                    while (!mensagemProcessada) {
-                        for (int i = 0; i < entradas.size(); i++) {
-                            if (i != jogadorAtual) continue; // Só processa o jogador da vez
-
-                            BufferedReader entrada = entradas.get(i);
-                            try {
-                                String linha = null;
-
-                                try {
-                                    if (entrada.ready()) {
-                                        // Se já há mensagem, lê imediatamente
-                                        linha = entrada.readLine();
-                                    } else {
-                                        // Espera pelo tempo restante
-                                        // Se o jogador ainda não enviou nada, espera até acabar o tempo do turno
-                                        long tempoRestante = tempoTurno * 1000 - (System.currentTimeMillis() - inicioTurno);
-                                        if (tempoRestante > 0) {
-                                            sockets.get(jogadorAtual).setSoTimeout((int) tempoRestante);
-                                            linha = entrada.readLine();
-                                        }
-                                    }
-                                } catch (SocketTimeoutException ste) {
-                                    // Se o tempo esgotou, passa a vez
-                                    jogadores.get(jogadorAtual).println("JOGADA_INVALIDA");
-                                    jogadorAtual = (jogadorAtual + 1) % 2;
-                                    jogadores.get(jogadorAtual).println("SUA_VEZ");
-                                    mensagemProcessada = true;
-                                    break;
-                                }
-
-                                if (linha == null) continue; // Se não recebeu nada, volta ao início
-
-                                PrintWriter atual = jogadores.get(jogadorAtual);
-
-                                // --- Tratamento das mensagens recebidas ---
-                                if (linha.startsWith("JOGADA")) {
-                                    // Jogador fez uma jogada
-                                    String[] partes = linha.split(" ");
-                                    int x = Integer.parseInt(partes[1]);
-                                    int y = Integer.parseInt(partes[2]);
-                                    char cor = cores[jogadorAtual];
-
-                                    if (tabuleiro.jogadaValida(x, y, cor)) {
-                                        // Se a jogada é válida, atualiza o tabuleiro
-                                        tabuleiro.jogar(x, y, cor);
-                                        enviarJogadaParaJogadores(x, y, cor); // Informa ambos
-                                        atual.println("JOGADA_CONFIRMADA");
-
-                                        // Verifica se o jogo terminou
-                                        if (fimDeJogo()) {
-                                            enviarMensagemATodos("FIM");
-                                            jogoAtivo = false;
-                                            break;
-                                        } else {
-                                            // Passa a vez ao outro jogador
-                                            jogadorAtual = (jogadorAtual + 1) % 2;
-                                            jogadores.get(jogadorAtual).println("SUA_VEZ");
-                                        }
-                                    } else {
-                                        // Jogada inválida
-                                        atual.println("JOGADA_INVALIDA");
-                                    }
-                                    mensagemProcessada = true;
-                                    break;
-
-                                } else if (linha.equals("TEMPO_ESGOTADO")) {
-                                    // Jogador informou que perdeu o tempo
-                                    jogadorAtual = (jogadorAtual + 1) % 2;
-                                    jogadores.get(jogadorAtual).println("SUA_VEZ");
-                                    mensagemProcessada = true;
-                                    break;
-
-                                } else if (linha.startsWith("CHAT ")) {
-                                    // Mensagem de chat enviada a todos
-                                    for (PrintWriter p : jogadores) {
-                                        p.println(linha);
-                                    }
-
-                                } else if (linha.startsWith("SAIR")) {
-                                    // Jogador saiu do jogo
-                                    System.out.println("Jogador " + nomes.get(jogadorAtual) + " saiu do jogo.");
-                                    try {
-                                        int outro = (jogadorAtual == 0) ? 1 : 0;
-                                        if (jogadores.size() > outro) {
-                                            jogadores.get(outro).println("SAIU");
-                                        }
-                                    } catch (Exception ex) {}
-                                    removerJogador(jogadorAtual);
-                                    jogoAtivo = false;
-                                    break;
-                                }
-                            } catch (SocketTimeoutException ste) {
-                                // Tempo esgotado, mudar jogador
-                                jogadores.get(jogadorAtual).println("JOGADA_INVALIDA");
-                                jogadorAtual = (jogadorAtual + 1) % 2;
-                                jogadores.get(jogadorAtual).println("SUA_VEZ");
-                                mensagemProcessada = true;
-                                break;
-
-                            } catch (IOException ex) {
-                                // Jogador desconectado
-                                System.out.println("Jogador desconectado.");
-                                try {
-                                    // Notifica o outro jogador, se ainda estiver conectado
-                                    int outro = (i == 0) ? 1 : 0;
-                                    if (jogadores.size() > outro) {
-                                        jogadores.get(outro).println("SAIU");
-                                    }
-                                } catch (Exception ignore) {}
-                                removerJogador(i);
-                                jogoAtivo = false;
-                                break;
-                            }
-                        }
-                        try { Thread.sleep(20); } catch (InterruptedException e) {}
-                    }
-                    // --- FIM: controlo de tempo ---
-                }
+    /**
+     * Cria e começa uma partida nova entre dois jogadores já emparelhados.
+     *
+     * @param pretas jogador com as pretas
+     * @param brancas jogador com as brancas
+     */
+    void criarPartida(Ligacao pretas, Ligacao brancas) {
+        Partida partida = new Partida(proximoId.getAndIncrement(), this, pretas, brancas);
+        partidasAtivas.put(partida.getId(), partida);
+        partida.iniciar();
+        System.out.println("Partida " + partida.getId() + " iniciada (" + partidasAtivas.size() + " a decorrer).");
+    }
 
-                // Após o jogo, fecha todas as conexões
-                for (Socket s : sockets) {
-                    try { s.close(); } catch (IOException ex) {}
-                }
+    /**
+     * Chamado para cada ligação nova, antes de se começar a ler: começa a contar o prazo
+     * de apresentação e o tempo de inatividade.
+     */
+    void ligacaoAceite(Ligacao ligacao) {
+        apresentacao.aoLigar(ligacao);
+        vigiarInatividade(ligacao, configuracao.getInatividade());
+    }
 
-                // Limpa listas para próximo jogo
-                jogadores.clear();
-                entradas.clear();
-                nomes.clear();
-                sockets.clear();
-                jogadorAtual = 0;
-                System.out.println("Jogo terminado ou jogador saiu. Reiniciando espera por jogadores...");
+    /**
+     * Fecha a ligação se o cliente passar o tempo indicado sem enviar nada. Em vez de
+     * reagendar a cada mensagem, o temporizador verifica a última atividade quando dispara
+     * e, se o cliente falou entretanto, volta a agendar-se só para o tempo que falta.
+     */
+    private void vigiarInatividade(Ligacao ligacao, long segundos) {
+        long limite = TimeUnit.SECONDS.toNanos(configuracao.getInatividade());
+        if (limite <= 0) return;
+        roda.agendar(segundos, TimeUnit.SECONDS, () -> {
+            if (ligacao.isFechada()) {
+                espectadores.remove(ligacao);
+                return;
             }
-
-        } catch (IOException e) {
-            System.err.println("Erro no servidor: " + e.getMessage());
-            e.printStackTrace();
-        }
+            if (espectadores.contains(ligacao)) {
+                vigiarInatividade(ligacao, configuracao.getInatividade()); // Só volta a ver quando a ligação fechar
+                return;
+            }
+            long falta = limite - (System.nanoTime() - ligacao.getUltimaAtividade());
+            if (falta <= 0) {
+                System.out.println("Jogador " + ligacao.getNome() + " inativo; ligação fechada.");
+                ligacao.fechar();
+            } else {
+                vigiarInatividade(ligacao, TimeUnit.NANOSECONDS.toSeconds(falta) + 1);
+            }
+        });
     }
 
     /**
-     * Remove todas as referências a um jogador e fecha o seu socket.
-     * idx: índice do jogador a remover
+     * Mostra as métricas do emparelhamento a cada minuto (só quando houve movimento).
      */
-    private static void removerJogador(int idx) {
-        try {
-            if (sockets.size() > idx) sockets.get(idx).close();
-        } catch (IOException ex) {}
-        if (jogadores.size() > idx) jogadores.remove(idx);
-        if (entradas.size() > idx) entradas.remove(idx);
-        if (nomes.size() > idx) nomes.remove(idx);
-        if (sockets.size() > idx) sockets.remove(idx);
+    private void mostrarMetricas() {
+        MetricasEmparelhamento m = sala.getMetricas();
+        long antes = m.getJogadoresEmparelhados();
+        roda.agendar(INTERVALO_METRICAS, TimeUnit.SECONDS, () -> {
+            if (m.getJogadoresEmparelhados() != antes || m.getProfundidadeFila() > 0) System.out.println(m);
+            mostrarMetricas();
+        });
     }
 
     /**
-     * Envia uma mensagem de texto a todos os jogadores.
-     * msg: mensagem a enviar
+     * Um cliente pediu para assistir a uma partida (0 = a mais recente). Se a partida não
+     * existir ou já tiver acabado, recebe SAIU e a ligação é fechada.
      */
-    private static void enviarMensagemATodos(String msg) {
-        for (PrintWriter p : jogadores) {
-            p.println(msg);
+    void assistir(Ligacao ligacao, int id) {
+        Partida partida = id > 0 ? partidasAtivas.get(id) : partidaMaisRecente();
+        ligacao.setNome("espectador");
+        // Só o vigia da inatividade usa (e limpa) este conjunto; sem limite não há vigia,
+        // e um espectador guardado aqui nunca mais sairia
+        if (configuracao.getInatividade() > 0) espectadores.add(ligacao);
+        if (partida == null || !partida.adicionarEspectador(ligacao)) {
+            espectadores.remove(ligacao);
+            ligacao.acumular(Partida.SAIU);
+            ligacao.fechar();
         }
     }
 
     /**
-     * Envia uma jogada efetuada a ambos os jogadores.
-     * linha, coluna: posição da jogada
-     * cor: cor da peça jogada
+     * Um jogador cuja ligação caiu voltou para continuar a partida. Se a partida já não
+     * existir (ou a chave estiver errada), recebe SAIU e a ligação é fechada.
      */
-    private static void enviarJogadaParaJogadores(int linha, int coluna, char cor) {
-        for (PrintWriter p : jogadores) {
-            p.println("JOGADA " + linha + " " + coluna + " " + cor);
+    void retomar(Ligacao ligacao, int id, long chave, int ultimaSeq) {
+        Partida partida = partidasAtivas.get(id);
+        if (partida == null || !partida.retomar(ligacao, chave, ultimaSeq)) {
+            ligacao.acumular(Partida.SAIU);
+            ligacao.fechar();
+        }
+    }
+
+    private Partida partidaMaisRecente() {
+        Partida maisRecente = null;
+        for (Partida p : partidasAtivas.values()) {
+            if (maisRecente == null || p.getId() > maisRecente.getId()) maisRecente = p;
         }
+        return maisRecente;
     }
 
     /**
-     * Verifica se o jogo terminou (sem jogadas válidas para nenhum jogador).
-     * return: true se terminou, false caso contrário
+     * Um jogador que acabou uma partida pediu a desforra: volta à sala de espera.
      */
-    private static boolean fimDeJogo() {
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++) {
-                if (tabuleiro.getPeca(i, j) == '-') {
-                    if (tabuleiro.jogadaValida(i, j, 'B') || tabuleiro.jogadaValida(i, j, 'W'))
-                        return false;
-                }
-            }
-        return true;
+    void pedirDesforra(Ligacao ligacao, int partida, long chave, long chaveAdversario, char corAnterior) {
+        sala.pedirDesforra(ligacao, partida, chave, chaveAdversario, corAnterior);
+    }
+
+    /**
+     * Diário das partidas, ou null se o servidor não tiver diário.
+     */
+    Diario getDiario() {
+        return diario;
+    }
+
+    /**
+     * Arquivo das partidas terminadas, ou null se o servidor não tiver arquivo.
+     */
+    ArquivoPartidas getArquivo() {
+        return arquivo;
+    }
+
+    /**
+     * Quem pensa as jogadas do computador, ou null se o servidor não tiver computador.
+     */
+    AgendaMotor getAgendaMotor() {
+        return agendaMotor;
+    }
+
+    ConfiguracaoServidor getConfiguracao() {
+        return configuracao;
+    }
+
+    /**
+     * Quem trata a apresentação (primeira linha) das ligações novas.
+     */
+    OuvinteLigacao getApresentacao() {
+        return apresentacao;
+    }
+
+    Classificacao getClassificacao() {
+        return classificacao;
+    }
+
+    /**
+     * Números do emparelhamento (tamanho da fila, tempo até ter adversário).
+     */
+    public MetricasEmparelhamento getMetricasEmparelhamento() {
+        return sala.getMetricas();
+    }
+
+    /**
+     * Relógio central usado para os prazos (turnos, apresentação, inatividade).
+     */
+    RodaTemporizadores getRodaTemporizadores() {
+        return roda;
+    }
+
+    /**
+     * Chamado por uma partida quando termina, para deixar de a contar como ativa.
+     */
+    void partidaTerminada(Partida partida) {
+        partidasAtivas.remove(partida.getId());
     }
 
     /**
-     * Verifica se o jogador tem alguma jogada válida disponível.
-     * jogador: índice do jogador
-     * return: true se tem jogada, false caso contrário
+     * Número de partidas a decorrer neste momento.
      */
-    private static boolean jogadorTemJogada(int jogador) {
-        char cor = cores[jogador];
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++)
-                if (tabuleiro.jogadaValida(i, j, cor))
-                    return true;
-        return false;
+    public int getNumeroPartidasAtivas() {
+        return partidasAtivas.size();
     }
 }
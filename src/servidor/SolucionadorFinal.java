@@ -0,0 +1,469 @@
+package servidor;
+
+import modelo.Tabuleiro;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solucionador exato do fim do jogo: com poucas casas vazias (até umas 20), pesquisa a
+ * árvore inteira até ao fim e diz quem ganha com jogo perfeito, por quantas peças, e a
+ * sequência de jogadas que lá leva.
+ *
+ * Ao contrário do {@link MotorAlfaBeta}, aqui não há avaliação: cada folha é uma posição
+ * final e o valor é a diferença de peças. A pesquisa trabalha só com os dois bitboards
+ * (de quem joga e do adversário), usando as primitivas estáticas do {@link Tabuleiro}
+ * (peças viradas, jogadas válidas), sem histórico nem hash de Zobrist. Para ser rápida:
+ * <ul>
+ *   <li>com muitas casas vazias, as jogadas são ordenadas pela mobilidade que deixam ao
+ *       adversário (primeiro as que lhe deixam menos jogadas: "mais rápida primeiro"), e as
+ *       posições já resolvidas ficam numa {@link TabelaTransposicao};</li>
+ *   <li>com menos casas vazias, as jogadas seguem a paridade: primeiro as casas dos
+ *       quadrantes com um número ímpar de casas vazias (quem joga a última casa de uma
+ *       região costuma ganhar com isso);</li>
+ *   <li>nas últimas 4 casas há código próprio, que já não gera jogadas: experimenta
+ *       diretamente as casas vazias, passadas como argumentos.</li>
+ * </ul>
+ * Depois da primeira jogada de cada posição, as outras são pesquisadas com uma janela nula
+ * (só para provar que não são melhores), o que corta muito mais.
+ *
+ * Não é thread-safe: cada thread usa o seu solucionador.
+ */
+public class SolucionadorFinal {
+
+    // Jogada "passar a vez" na linha de jogo
+    public static final int PASSAGEM = -1;
+
+    // A partir de quantas casas vazias se ordenam as jogadas pela mobilidade do adversário
+    private static final int VAZIAS_RAPIDO = 6;
+    // A partir de quantas casas vazias se usa a tabela de transposição
+    private static final int VAZIAS_TABELA = 8;
+    private static final int NOS_ENTRE_RELOGIO = 4096;
+    private static final int INFINITO = 100;
+
+    private static final long CANTOS = 0x8100000000000081L;
+
+    private final TabelaTransposicao tabela;
+    // Jogadas, peças que cada uma vira, e notas de cada nível (o nível é o número de casas vazias)
+    private final int[][] jogadas = new int[61][32];
+    private final long[][] viradas = new long[61][32];
+    private final int[][] notas = new int[61][32];
+
+    private long limite;
+    private boolean parada;
+    private long nos;
+
+    /**
+     * @param bitsTabela a tabela de transposição tem 2^bitsTabela entradas
+     */
+    public SolucionadorFinal(int bitsTabela) {
+        tabela = new TabelaTransposicao(bitsTabela);
+    }
+
+    /**
+     * Resultado de uma posição resolvida.
+     */
+    public static final class Resultado {
+        private final int diferenca;
+        private final int[] linha;
+        private final long nos;
+
+        Resultado(int diferenca, int[] linha, long nos) {
+            this.diferenca = diferenca;
+            this.linha = linha;
+            this.nos = nos;
+        }
+
+        /**
+         * Diferença final de peças com jogo perfeito, do ponto de vista de quem tinha a vez
+         * (positiva se ganha, negativa se perde, 0 se empata).
+         */
+        public int getDiferenca() {
+            return diferenca;
+        }
+
+        /** Melhor jogada (casa linha*8+coluna), ou {@link #PASSAGEM} se quem tem a vez não pode jogar. */
+        public int getJogada() {
+            return linha.length == 0 ? PASSAGEM : linha[0];
+        }
+
+        /** Jogadas até ao fim, com jogo perfeito dos dois lados ({@link #PASSAGEM} nas passagens). */
+        public int[] getLinha() {
+            return linha.clone();
+        }
+
+        /** Posições visitadas para resolver a posição. */
+        public long getNos() {
+            return nos;
+        }
+
+        /**
+         * A linha de jogo na notação habitual (coluna a-h, linha 1-8; "--" é uma passagem).
+         */
+        public String descreverLinha() {
+            StringBuilder sb = new StringBuilder();
+            for (int casa : linha) {
+                if (sb.length() > 0) sb.append(' ');
+                if (casa == PASSAGEM) sb.append("--");
+                else sb.append((char) ('a' + casa % 8)).append(casa / 8 + 1);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Resolve a posição indicada.
+     *
+     * @param vez cor de quem joga ('B' ou 'W')
+     * @param tempoNanos tempo máximo
+     * @return o resultado, ou null se o tempo acabou antes de a posição ficar resolvida
+     */
+    public Resultado resolver(long pretas, long brancas, char vez, long tempoNanos) {
+        limite = System.nanoTime() + tempoNanos;
+        parada = false;
+        nos = 0;
+        tabela.novaPesquisa();
+        long p = vez == 'B' ? pretas : brancas;
+        long o = vez == 'B' ? brancas : pretas;
+
+        int valor = resolver(p, o, -INFINITO, INFINITO, false);
+        if (parada) return null;
+
+        // A linha: em cada posição, a primeira jogada que mantém o valor (a tabela já sabe
+        // quase tudo, por isso cada passo custa pouco)
+        int[] linha = new int[64];
+        int n = 0;
+        int v = valor;
+        while (true) {
+            long movimentos = Tabuleiro.movimentosValidos(p, o);
+            if (movimentos == 0) {
+                if (Tabuleiro.movimentosValidos(o, p) == 0) break; // Fim do jogo
+                linha[n++] = PASSAGEM;
+            } else {
+                int escolhida = -1;
+                long viradasEscolhida = 0;
+                for (long m = movimentos; m != 0 && escolhida < 0; m &= m - 1) {
+                    int casa = Long.numberOfTrailingZeros(m);
+                    long f = Tabuleiro.pecasViradas(casa, p, o);
+                    long jogada = 1L << casa;
+                    // Janela à volta de -v: o filho só dá exatamente -v se esta jogada mantém o valor
+                    int w = -resolver(o ^ f, p | f | jogada, -v - 1, -v + 1, false);
+                    if (parada) return null;
+                    if (w == v) {
+                        escolhida = casa;
+                        viradasEscolhida = f;
+                    }
+                }
+                if (escolhida < 0) break; // Não deve acontecer; a linha fica por aqui
+                linha[n++] = escolhida;
+                long jogada = 1L << escolhida;
+                long novoP = p | viradasEscolhida | jogada;
+                p = o ^ viradasEscolhida;
+                o = novoP;
+                v = -v;
+                continue;
+            }
+            long t = p;
+            p = o;
+            o = t;
+            v = -v;
+        }
+        return new Resultado(valor, java.util.Arrays.copyOf(linha, n), nos);
+    }
+
+    /**
+     * Pesquisa exata (negamax com alfa-beta), do ponto de vista de quem tem as peças p.
+     *
+     * @param passou o adversário acabou de passar a vez
+     */
+    private int resolver(long p, long o, int alfa, int beta, boolean passou) {
+        long vazias = ~(p | o);
+        int numVazias = Long.bitCount(vazias);
+        if (numVazias <= 4) return ultimas(p, o, alfa, beta, passou, vazias, numVazias);
+
+        if ((++nos & (NOS_ENTRE_RELOGIO - 1)) == 0 && System.nanoTime() > limite) parada = true;
+        if (parada) return 0;
+
+        long movimentos = Tabuleiro.movimentosValidos(p, o);
+        if (movimentos == 0) {
+            if (passou || Tabuleiro.movimentosValidos(o, p) == 0) return diferenca(p, o);
+            return -resolver(o, p, -beta, -alfa, true);
+        }
+
+        long hash = 0;
+        int jogadaTabela = -1;
+        if (numVazias >= VAZIAS_TABELA) {
+            hash = hash(p, o);
+            long entrada = tabela.procurar(hash);
+            if (entrada != 0) {
+                jogadaTabela = TabelaTransposicao.jogada(entrada);
+                int v = TabelaTransposicao.valor(entrada);
+                int tipo = TabelaTransposicao.tipo(entrada);
+                if (tipo == TabelaTransposicao.EXATO) return v;
+                if (tipo == TabelaTransposicao.INFERIOR && v > alfa) alfa = v;
+                if (tipo == TabelaTransposicao.SUPERIOR && v < beta) beta = v;
+                if (alfa >= beta) return v;
+            }
+        }
+
+        int n = ordenar(p, o, movimentos, vazias, numVazias, jogadaTabela);
+        int[] js = jogadas[numVazias];
+        long[] vs = viradas[numVazias];
+        int alfaInicial = alfa;
+        int melhorValor = -INFINITO;
+        int melhorJogada = -1;
+        for (int i = 0; i < n; i++) {
+            int casa = js[i];
+            long f = vs[i];
+            long novoO = p | f | (1L << casa);
+            long novoP = o ^ f;
+            int v;
+            if (i == 0) {
+                v = -resolver(novoP, novoO, -beta, -alfa, false);
+            } else {
+                // Janela nula: só interessa saber se esta jogada é melhor do que alfa
+                v = -resolver(novoP, novoO, -alfa - 1, -alfa, false);
+                if (v > alfa && v < beta) v = -resolver(novoP, novoO, -beta, -v, false);
+            }
+            if (parada) return 0;
+            if (v > melhorValor) {
+                melhorValor = v;
+                melhorJogada = casa;
+                if (v > alfa) alfa = v;
+                if (alfa >= beta) break;
+            }
+        }
+
+        if (numVazias >= VAZIAS_TABELA) {
+            int tipo = melhorValor <= alfaInicial ? TabelaTransposicao.SUPERIOR
+                    : melhorValor >= beta ? TabelaTransposicao.INFERIOR : TabelaTransposicao.EXATO;
+            tabela.guardar(hash, numVazias, melhorValor, tipo, melhorJogada);
+        }
+        return melhorValor;
+    }
+
+    /**
+     * Ordena as jogadas de uma posição (guarda-as em jogadas[numVazias], e as peças que cada
+     * uma vira em viradas[numVazias]) e devolve quantas são.
+     */
+    private int ordenar(long p, long o, long movimentos, long vazias, int numVazias, int jogadaTabela) {
+        int[] js = jogadas[numVazias];
+        long[] vs = viradas[numVazias];
+        int[] ns = notas[numVazias];
+        int paridade = Tabuleiro.paridadeQuadrantes(vazias);
+        int n = 0;
+        for (long m = movimentos; m != 0; m &= m - 1) {
+            int casa = Long.numberOfTrailingZeros(m);
+            long jogada = 1L << casa;
+            long f = Tabuleiro.pecasViradas(casa, p, o);
+            int nota;
+            if (casa == jogadaTabela) {
+                nota = Integer.MAX_VALUE;
+            } else {
+                // Paridade: as casas de quadrantes com um número ímpar de vazias primeiro
+                nota = (paridade >> Tabuleiro.quadrante(casa) & 1) * 2;
+                if (numVazias > VAZIAS_RAPIDO) {
+                    // Mais rápida primeiro: menos jogadas para o adversário, e os cantos
+                    int mobilidade = Long.bitCount(Tabuleiro.movimentosValidos(o ^ f, p | f | jogada));
+                    nota += -16 * mobilidade + ((jogada & CANTOS) != 0 ? 8 : 0);
+                }
+            }
+            int i = n++;
+            while (i > 0 && ns[i - 1] < nota) {
+                js[i] = js[i - 1];
+                vs[i] = vs[i - 1];
+                ns[i] = ns[i - 1];
+                i--;
+            }
+            js[i] = casa;
+            vs[i] = f;
+            ns[i] = nota;
+        }
+        return n;
+    }
+
+    /**
+     * Entrada no código das últimas casas: separa as casas vazias (no máximo 4), com as
+     * dos quadrantes ímpares primeiro, e passa-as como argumentos.
+     */
+    private int ultimas(long p, long o, int alfa, int beta, boolean passou, long vazias, int numVazias) {
+        int paridade = Tabuleiro.paridadeQuadrantes(vazias);
+        int[] casas = jogadas[numVazias];
+        int n = 0;
+        for (long v = vazias; v != 0; v &= v - 1) {
+            int casa = Long.numberOfTrailingZeros(v);
+            if ((paridade >> Tabuleiro.quadrante(casa) & 1) != 0) casas[n++] = casa;
+        }
+        for (long v = vazias; v != 0; v &= v - 1) {
+            int casa = Long.numberOfTrailingZeros(v);
+            if ((paridade >> Tabuleiro.quadrante(casa) & 1) == 0) casas[n++] = casa;
+        }
+        return switch (numVazias) {
+            case 4 -> ultimas4(p, o, alfa, beta, passou, casas[0], casas[1], casas[2], casas[3]);
+            case 3 -> ultimas3(p, o, alfa, beta, passou, casas[0], casas[1], casas[2]);
+            case 2 -> ultimas2(p, o, alfa, beta, passou, casas[0], casas[1]);
+            case 1 -> ultima1(p, o, casas[0]);
+            default -> diferenca(p, o);
+        };
+    }
+
+    private int ultimas4(long p, long o, int alfa, int beta, boolean passou, int x1, int x2, int x3, int x4) {
+        nos++;
+        int melhor = -INFINITO;
+        long f;
+        if ((f = Tabuleiro.pecasViradas(x1, p, o)) != 0) {
+            melhor = -ultimas3(o ^ f, p | f | 1L << x1, -beta, -alfa, false, x2, x3, x4);
+            if (melhor >= beta) return melhor;
+            if (melhor > alfa) alfa = melhor;
+        }
+        if ((f = Tabuleiro.pecasViradas(x2, p, o)) != 0) {
+            int v = -ultimas3(o ^ f, p | f | 1L << x2, -beta, -alfa, false, x1, x3, x4);
+            if (v >= beta) return v;
+            if (v > melhor) {
+                melhor = v;
+                if (v > alfa) alfa = v;
+            }
+        }
+        if ((f = Tabuleiro.pecasViradas(x3, p, o)) != 0) {
+            int v = -ultimas3(o ^ f, p | f | 1L << x3, -beta, -alfa, false, x1, x2, x4);
+            if (v >= beta) return v;
+            if (v > melhor) {
+                melhor = v;
+                if (v > alfa) alfa = v;
+            }
+        }
+        if ((f = Tabuleiro.pecasViradas(x4, p, o)) != 0) {
+            int v = -ultimas3(o ^ f, p | f | 1L << x4, -beta, -alfa, false, x1, x2, x3);
+            if (v > melhor) melhor = v;
+        }
+        if (melhor == -INFINITO) {
+            // Quem joga não tem jogadas: passa (ou, se o outro também não tiver, acabou)
+            if (passou) return diferenca(p, o);
+            return -ultimas4(o, p, -beta, -alfa, true, x1, x2, x3, x4);
+        }
+        return melhor;
+    }
+
+    private int ultimas3(long p, long o, int alfa, int beta, boolean passou, int x1, int x2, int x3) {
+        nos++;
+        int melhor = -INFINITO;
+        long f;
+        if ((f = Tabuleiro.pecasViradas(x1, p, o)) != 0) {
+            melhor = -ultimas2(o ^ f, p | f | 1L << x1, -beta, -alfa, false, x2, x3);
+            if (melhor >= beta) return melhor;
+            if (melhor > alfa) alfa = melhor;
+        }
+        if ((f = Tabuleiro.pecasViradas(x2, p, o)) != 0) {
+            int v = -ultimas2(o ^ f, p | f | 1L << x2, -beta, -alfa, false, x1, x3);
+            if (v >= beta) return v;
+            if (v > melhor) {
+                melhor = v;
+                if (v > alfa) alfa = v;
+            }
+        }
+        if ((f = Tabuleiro.pecasViradas(x3, p, o)) != 0) {
+            int v = -ultimas2(o ^ f, p | f | 1L << x3, -beta, -alfa, false, x1, x2);
+            if (v > melhor) melhor = v;
+        }
+        if (melhor == -INFINITO) {
+            if (passou) return diferenca(p, o);
+            return -ultimas3(o, p, -beta, -alfa, true, x1, x2, x3);
+        }
+        return melhor;
+    }
+
+    private int ultimas2(long p, long o, int alfa, int beta, boolean passou, int x1, int x2) {
+        nos++;
+        int melhor = -INFINITO;
+        long f;
+        if ((f = Tabuleiro.pecasViradas(x1, p, o)) != 0) {
+            melhor = -ultima1(o ^ f, p | f | 1L << x1, x2);
+            if (melhor >= beta) return melhor;
+        }
+        if ((f = Tabuleiro.pecasViradas(x2, p, o)) != 0) {
+            int v = -ultima1(o ^ f, p | f | 1L << x2, x1);
+            if (v > melhor) melhor = v;
+        }
+        if (melhor == -INFINITO) {
+            if (passou) return diferenca(p, o);
+            return -ultimas2(o, p, -beta, -alfa, true, x1, x2);
+        }
+        return melhor;
+    }
+
+    /**
+     * Última casa vazia: joga quem puder (primeiro quem tem a vez) e conta as peças.
+     */
+    private int ultima1(long p, long o, int x) {
+        nos++;
+        int d = diferenca(p, o);
+        long f = Tabuleiro.pecasViradas(x, p, o);
+        if (f != 0) return d + 2 * Long.bitCount(f) + 1;
+        f = Tabuleiro.pecasViradas(x, o, p);
+        if (f != 0) return d - 2 * Long.bitCount(f) - 1;
+        return d; // Ninguém pode jogar: a casa fica vazia
+    }
+
+    private static int diferenca(long p, long o) {
+        return Long.bitCount(p) - Long.bitCount(o);
+    }
+
+    /**
+     * Hash da posição (quem joga tem as peças p). Mais barato do que o hash de Zobrist do
+     * tabuleiro, que teria de ser calculado de raiz em cada posição.
+     */
+    private static long hash(long p, long o) {
+        long h = p * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(o * 0xC2B2AE3D27D4EB4FL, 31);
+        return h ^ h >>> 29;
+    }
+
+    /**
+     * Resolve uma posição na linha de comandos, por exemplo:
+     * <pre>
+     *   java servidor.SolucionadorFinal --posicao "&lt;64 casas B/W/-&gt; B" [--tempo 60]
+     * </pre>
+     */
+    public static void main(String[] args) {
+        String posicao = null;
+        int tempo = 600;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--posicao" -> posicao = args[i + 1];
+                case "--tempo" -> tempo = Integer.parseInt(args[i + 1]);
+                default -> {
+                    System.out.println("Opção desconhecida: " + args[i]);
+                    return;
+                }
+            }
+        }
+        if (posicao == null) {
+            System.out.println("Uso: java servidor.SolucionadorFinal --posicao \"<64 casas B/W/-> <vez>\" [--tempo s]");
+            return;
+        }
+        Tabuleiro tabuleiro = new Tabuleiro();
+        tabuleiro.definirPosicao(posicao);
+        System.out.println(analisar(tabuleiro, tempo));
+    }
+
+    /**
+     * Resolve a posição do tabuleiro e descreve o resultado numa frase (usado também na
+     * análise das partidas do arquivo).
+     *
+     * @param segundos tempo máximo
+     */
+    static String analisar(Tabuleiro tabuleiro, int segundos) {
+        SolucionadorFinal solucionador = new SolucionadorFinal(22);
+        long inicio = System.nanoTime();
+        char vez = tabuleiro.getVez();
+        Resultado r = solucionador.resolver(tabuleiro.getPretas(), tabuleiro.getBrancas(), vez,
+                TimeUnit.SECONDS.toNanos(segundos));
+        double decorridos = (System.nanoTime() - inicio) / 1e9;
+        if (r == null) return String.format("Por resolver ao fim de %d s (%d vazias).", segundos, tabuleiro.contarVazias());
+
+        int pretas = vez == 'B' ? r.getDiferenca() : -r.getDiferenca();
+        String quem = pretas > 0 ? "As pretas ganham por " + pretas
+                : pretas < 0 ? "As brancas ganham por " + -pretas : "Empate";
+        return String.format("%s com jogo perfeito (%d vazias, jogam as %s).%nLinha: %s%n%d posições em %.2f s",
+                quem, tabuleiro.contarVazias(), vez == 'B' ? "pretas" : "brancas", r.descreverLinha(), r.getNos(),
+                decorridos);
+    }
+}
@@ -0,0 +1,112 @@
+package servidor;
+
+/**
+ * Tabela de transposição do motor: guarda, para cada posição já pesquisada (pelo seu hash
+ * de Zobrist), o valor encontrado, até que profundidade, se é exato ou só um limite, e a
+ * melhor jogada. Em Reversi a mesma posição aparece muitas vezes na árvore (por ordens de
+ * jogadas diferentes) e entre iterações do aprofundamento progressivo; a tabela evita
+ * pesquisá-la outra vez e diz qual a jogada a experimentar primeiro.
+ *
+ * Cada entrada são dois longs em arrays (a chave completa e os dados compactados num
+ * só número), sem objetos: a tabela pode ter milhões de entradas sem pesar ao coletor de
+ * lixo. Quando duas posições caem no mesmo lugar, fica a pesquisada com mais profundidade,
+ * mas só entre posições da mesma pesquisa: cada entrada guarda também a "geração" (o
+ * número da pesquisa que a escreveu, ver {@link #novaPesquisa}), e uma entrada de uma
+ * pesquisa anterior é sempre substituída. Sem isto, a tabela de um motor que joga muitas
+ * partidas acabaria cheia de entradas fundas de posições que já não voltam a aparecer, e a
+ * pesquisa atual deixaria de conseguir guardar as suas.
+ *
+ * A mesma tabela pode ser partilhada por várias threads a pesquisar ao mesmo tempo (ver
+ * {@link PesquisaParalela}), sem trincos: em vez da chave, guarda-se chave XOR dados. Se
+ * duas threads escreverem na mesma entrada ao mesmo tempo e ficar a chave de uma com os
+ * dados da outra, o XOR já não dá o hash da posição e a entrada é tratada como vazia, em
+ * vez de devolver o valor de outra posição.
+ */
+public class TabelaTransposicao {
+
+    // Tipos de valor guardado
+    public static final int EXATO = 1;
+    public static final int INFERIOR = 2; // O valor verdadeiro é maior ou igual (houve corte beta)
+    public static final int SUPERIOR = 3; // O valor verdadeiro é menor ou igual (nenhuma jogada passou de alfa)
+
+    private final long[] chaves; // Hash da posição XOR dados
+    private final long[] dados;
+    private final int mascara;
+    // Número da pesquisa atual (só os 8 bits de baixo são guardados em cada entrada)
+    private volatile int geracao;
+
+    /**
+     * @param bits a tabela tem 2^bits entradas (16 bytes cada)
+     */
+    public TabelaTransposicao(int bits) {
+        chaves = new long[1 << bits];
+        dados = new long[1 << bits];
+        mascara = (1 << bits) - 1;
+    }
+
+    /**
+     * Começa uma pesquisa nova: as entradas das pesquisas anteriores continuam a poder ser
+     * encontradas, mas passam a dar lugar a qualquer entrada nova. Chamado uma vez por
+     * pesquisa, antes de as threads começarem.
+     */
+    public void novaPesquisa() {
+        geracao = (geracao + 1) & 0xFF;
+    }
+
+    /**
+     * Devolve os dados guardados para a posição, ou 0 se ela não estiver na tabela.
+     * Os campos lêem-se com {@link #valor}, {@link #profundidade}, {@link #tipo} e {@link #jogada}.
+     */
+    public long procurar(long hash) {
+        int i = (int) hash & mascara;
+        long d = dados[i];
+        return (chaves[i] ^ d) == hash ? d : 0;
+    }
+
+    /**
+     * Guarda o resultado da pesquisa de uma posição.
+     *
+     * @param jogada melhor jogada encontrada (casa 0 a 63), ou -1 se não houver
+     */
+    public void guardar(long hash, int profundidade, int valor, int tipo, int jogada) {
+        int i = (int) hash & mascara;
+        long antigos = dados[i];
+        int g = geracao;
+        // Outra posição da mesma pesquisa, e mais funda: fica a que lá está
+        if ((chaves[i] ^ antigos) != hash && geracao(antigos) == g && profundidade(antigos) > profundidade) return;
+        long d = (valor & 0xFFFFFFFFL) | (long) profundidade << 32 | (long) tipo << 40 | (long) (jogada + 1) << 42
+                | (long) g << 49;
+        dados[i] = d;
+        chaves[i] = hash ^ d;
+    }
+
+    /**
+     * Esquece tudo (por exemplo, entre partidas diferentes).
+     */
+    public void limpar() {
+        java.util.Arrays.fill(chaves, 0);
+        java.util.Arrays.fill(dados, 0);
+    }
+
+    public static int valor(long dados) {
+        return (int) dados;
+    }
+
+    public static int profundidade(long dados) {
+        return (int) (dados >>> 32) & 0xFF;
+    }
+
+    public static int tipo(long dados) {
+        return (int) (dados >>> 40) & 0x3;
+    }
+
+    /** Melhor jogada guardada (casa 0 a 63), ou -1. */
+    public static int jogada(long dados) {
+        return (int) (dados >>> 42 & 0x7F) - 1;
+    }
+
+    /** Geração (número da pesquisa, só 8 bits) que escreveu a entrada. */
+    static int geracao(long dados) {
+        return (int) (dados >>> 49) & 0xFF;
+    }
+}
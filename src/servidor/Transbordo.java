@@ -0,0 +1,33 @@
+package servidor;
+
+import protocolo.TipoMensagem;
+
+/**
+ * O que fazer a uma mensagem que vai ser enviada a um cliente cuja fila de saída já está
+ * cheia (um cliente que não está a ler o que lhe enviamos). Ver {@link FilaSaida}.
+ */
+public enum Transbordo {
+
+    /** A mensagem perde-se (serve para o chat: não faz falta para o jogo continuar). */
+    DESCARTAR,
+
+    /**
+     * A mensagem substitui a mais antiga do mesmo tipo que ainda está na fila: só interessa
+     * a última (por exemplo, o tempo restante do turno).
+     */
+    SUBSTITUIR,
+
+    /** Sem esta mensagem o cliente fica com o jogo errado: a ligação é fechada. */
+    DESLIGAR;
+
+    /**
+     * Política usada para cada tipo de mensagem.
+     */
+    public static Transbordo de(TipoMensagem tipo) {
+        return switch (tipo) {
+            case CHAT -> DESCARTAR;
+            case TEMPO -> SUBSTITUIR;
+            default -> DESLIGAR;
+        };
+    }
+}
@@ -0,0 +1,215 @@
+package servidor;
+
+import modelo.Tabuleiro;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Testes do {@link ArquivoPartidas}. Os arquivos são abertos com grupos de
+ * {@value #BLOCOS_POR_GRUPO} blocos no índice dos jogadores e os blocos são fechados à mão
+ * ({@link ArquivoPartidas#despejar}), para haver vários grupos completos com poucas partidas.
+ */
+class ArquivoPartidasTest {
+
+    private static final int BLOCOS_POR_GRUPO = 8;
+    // Data da primeira partida (segundos desde 1970); cada partida acaba um minuto depois da anterior
+    private static final long DATA_INICIAL = 1_750_000_000L;
+
+    @TempDir
+    Path pasta;
+
+    /**
+     * As partidas não acabam pela ordem em que começaram: cada número tem de ser encontrado,
+     * esteja em que bloco estiver.
+     */
+    @Test
+    void buscaPartidasGuardadasForaDeOrdem() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id <= 200; id++) ids.add(id);
+        Collections.shuffle(ids, new Random(7));
+
+        ArquivoPartidas arquivo = ArquivoPartidas.abrir(pasta, BLOCOS_POR_GRUPO);
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            arquivo.guardar(id, "p" + id, "b" + id, partidaCom(jogadasDe(id)), DATA_INICIAL);
+            if (i % 7 == 6) arquivo.despejar();
+        }
+        arquivo.fechar();
+
+        ArquivoPartidas reaberto = ArquivoPartidas.abrir(pasta, BLOCOS_POR_GRUPO);
+        try {
+            for (int id = 1; id <= 200; id++) {
+                ArquivoPartidas.PartidaArquivada p = reaberto.buscar(id);
+                assertNotNull(p, "partida " + id);
+                assertEquals(id, p.getId());
+                assertEquals("p" + id, p.getPretas());
+                assertEquals(jogadasDe(id), p.getNumeroJogadas());
+            }
+            assertNull(reaberto.buscar(0));
+            assertNull(reaberto.buscar(201));
+            assertEquals(200, reaberto.getMaiorId());
+        } finally {
+            reaberto.fechar();
+        }
+    }
+
+    /**
+     * Com mais de um grupo completo (e um grupo incompleto no fim), a procura por jogador e
+     * por datas tem de dar as mesmas partidas que uma procura partida a partida.
+     */
+    @Test
+    void procuraPorJogadorEDatasEmVariosGrupos() throws IOException {
+        ArquivoPartidas arquivo = ArquivoPartidas.abrir(pasta, BLOCOS_POR_GRUPO);
+        for (int id = 1; id <= 300; id++) {
+            arquivo.guardar(id, pretasDe(id), brancasDe(id), partidaCom(jogadasDe(id)), dataDe(id));
+            if (id % 10 == 0) arquivo.despejar();
+        }
+        arquivo.despejar();
+        arquivo.fechar();
+
+        // 30 blocos: 3 grupos completos no índice dos jogadores e 6 blocos fora dele
+        assertEquals(3, gruposNoIndiceDosJogadores());
+
+        ArquivoPartidas reaberto = ArquivoPartidas.abrir(pasta, BLOCOS_POR_GRUPO);
+        try {
+            long desde = dataDe(50), ate = dataDe(250);
+            assertEquals(esperadas(null, desde, ate), procurar(reaberto, null, desde, ate));
+            assertEquals(esperadas("jogador3", 0, Long.MAX_VALUE), procurar(reaberto, "jogador3", 0, Long.MAX_VALUE));
+            assertEquals(esperadas("outro5", desde, ate), procurar(reaberto, "outro5", desde, ate));
+            assertEquals(Set.of(), procurar(reaberto, "ninguem", 0, Long.MAX_VALUE));
+        } finally {
+            reaberto.fechar();
+        }
+    }
+
+    /**
+     * O servidor caiu depois de escrever a entrada do último bloco no índice, mas antes de o
+     * bloco estar todo no disco: ao reabrir, esse bloco é esquecido (e o grupo a que pertencia
+     * deixa de contar no índice dos jogadores) e as partidas novas continuam a ser encontradas.
+     */
+    @Test
+    void reabreDepoisDeEntradaSemBloco() throws IOException {
+        ArquivoPartidas arquivo = ArquivoPartidas.abrir(pasta, BLOCOS_POR_GRUPO);
+        for (int id = 1; id <= 160; id++) {
+            arquivo.guardar(id, "antigo", "b" + id, partidaCom(jogadasDe(id)), dataDe(id));
+            if (id % 10 == 0) arquivo.despejar();
+        }
+        arquivo.fechar();
+        assertEquals(2, gruposNoIndiceDosJogadores());
+
+        // Corta o fim do último bloco (partidas 151 a 160)
+        try (FileChannel segmento = FileChannel.open(pasta.resolve("arquivo-000001.dat"), StandardOpenOption.WRITE)) {
+            segmento.truncate(segmento.size() - 5);
+        }
+
+        ArquivoPartidas reaberto = ArquivoPartidas.abrir(pasta, BLOCOS_POR_GRUPO);
+        assertEquals(150, reaberto.contarPartidas());
+        assertEquals(150, reaberto.getMaiorId());
+        assertNotNull(reaberto.buscar(150));
+        assertNull(reaberto.buscar(155));
+        assertEquals(1, gruposNoIndiceDosJogadores());
+
+        // Dois blocos novos completam outra vez o segundo grupo
+        for (int id = 151; id <= 170; id++) {
+            reaberto.guardar(id, "novo", "b" + id, partidaCom(jogadasDe(id)), dataDe(id));
+            if (id % 10 == 0) reaberto.despejar();
+        }
+        reaberto.fechar();
+        assertEquals(2, gruposNoIndiceDosJogadores());
+
+        ArquivoPartidas depois = ArquivoPartidas.abrir(pasta, BLOCOS_POR_GRUPO);
+        try {
+            assertEquals(170, depois.contarPartidas());
+            assertEquals("novo", depois.buscar(155).getPretas());
+            assertEquals(intervalo(1, 150), procurar(depois, "antigo", 0, Long.MAX_VALUE));
+            assertEquals(intervalo(151, 170), procurar(depois, "novo", 0, Long.MAX_VALUE));
+        } finally {
+            depois.fechar();
+        }
+    }
+
+    // --- Auxiliares ---
+
+    private static int jogadasDe(int id) {
+        return 1 + id % 12;
+    }
+
+    private static String pretasDe(int id) {
+        return "jogador" + id % 5;
+    }
+
+    private static String brancasDe(int id) {
+        return "outro" + id % 7;
+    }
+
+    private static long dataDe(int id) {
+        return DATA_INICIAL + id * 60L;
+    }
+
+    /**
+     * Números das partidas do teste de procura que o jogador jogou (de pretas ou de brancas)
+     * entre as duas datas.
+     */
+    private static Set<Integer> esperadas(String jogador, long desde, long ate) {
+        Set<Integer> ids = new TreeSet<>();
+        for (int id = 1; id <= 300; id++) {
+            boolean jogou = jogador == null || jogador.equals(pretasDe(id)) || jogador.equals(brancasDe(id));
+            if (jogou && dataDe(id) >= desde && dataDe(id) <= ate) ids.add(id);
+        }
+        return ids;
+    }
+
+    private static Set<Integer> procurar(ArquivoPartidas arquivo, String jogador, long desde, long ate)
+            throws IOException {
+        Set<Integer> ids = new TreeSet<>();
+        arquivo.procurar(jogador, desde, ate, p -> ids.add(p.getId()));
+        return ids;
+    }
+
+    private static Set<Integer> intervalo(int de, int ate) {
+        Set<Integer> ids = new TreeSet<>();
+        for (int id = de; id <= ate; id++) ids.add(id);
+        return ids;
+    }
+
+    /**
+     * Tabuleiro com as primeiras n jogadas válidas feitas a partir da posição inicial.
+     */
+    private static Tabuleiro partidaCom(int n) {
+        Tabuleiro t = new Tabuleiro();
+        t.inicializar();
+        for (int i = 0; i < n; i++) {
+            long movimentos = t.movimentosValidos(t.getVez());
+            if (movimentos == 0) break;
+            t.jogar(Long.numberOfTrailingZeros(movimentos), t.getVez());
+        }
+        return t;
+    }
+
+    /**
+     * Número de grupos completos no cabeçalho de jogadores.idx.
+     */
+    private long gruposNoIndiceDosJogadores() throws IOException {
+        try (FileChannel jogadores = FileChannel.open(pasta.resolve("jogadores.idx"), StandardOpenOption.READ)) {
+            ByteBuffer cabecalho = ByteBuffer.allocate(8);
+            jogadores.read(cabecalho, 0);
+            return cabecalho.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package servidor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Testes do {@link Diario}: o que se escreve tem de voltar igual depois de reabrir, um fim
+ * estragado (o servidor caiu a meio de um registo) não pode impedir a leitura do resto, e
+ * os segmentos só podem ser apagados quando já não têm partidas a decorrer.
+ */
+class DiarioTest {
+
+    @TempDir
+    Path pasta;
+
+    /**
+     * Escreve uma partida com todos os tipos de registo (e outra que acaba) e reabre o diário.
+     */
+    @Test
+    void reabrirRefazAsPartidasADecorrer() throws IOException {
+        Diario diario = Diario.abrir(pasta);
+        escreverPartidaDeTeste(diario);
+        diario.fechar();
+
+        Diario reaberto = Diario.abrir(pasta);
+        List<Diario.PartidaGuardada> recuperadas = reaberto.getRecuperadas();
+        reaberto.fechar();
+
+        assertEquals(1, recuperadas.size(), "a partida 6 acabou, só a 5 deve voltar");
+        Diario.PartidaGuardada g = recuperadas.get(0);
+        assertEquals(5, g.getId());
+        assertEquals("João", g.getNome(0));
+        assertEquals("Maria", g.getNome(1));
+        assertEquals(111L, g.getChave(0));
+        assertEquals(-222L, g.getChave(1));
+        assertArrayEquals(new int[]{19, Diario.PASSOU, Diario.SEM_TEMPO, 26}, jogadas(g));
+    }
+
+    /**
+     * O último registo ficou a meio: lê-se tudo até ele e a partida perde só essa jogada.
+     */
+    @Test
+    void registoIncompletoNoFimEIgnorado() throws IOException {
+        Diario diario = Diario.abrir(pasta);
+        escreverPartidaDeTeste(diario);
+        diario.fechar();
+
+        Path segmento = unicoSegmento();
+        byte[] dados = Files.readAllBytes(segmento);
+        Files.write(segmento, Arrays.copyOf(dados, dados.length - 3));
+
+        Diario reaberto = Diario.abrir(pasta);
+        List<Diario.PartidaGuardada> recuperadas = reaberto.getRecuperadas();
+        reaberto.fechar();
+
+        assertEquals(1, recuperadas.size());
+        assertArrayEquals(new int[]{19, Diario.PASSOU, Diario.SEM_TEMPO}, jogadas(recuperadas.get(0)));
+    }
+
+    /**
+     * O CRC do último registo não bate certo: o registo é ignorado como se estivesse a meio.
+     */
+    @Test
+    void registoComCrcErradoEIgnorado() throws IOException {
+        Diario diario = Diario.abrir(pasta);
+        escreverPartidaDeTeste(diario);
+        diario.fechar();
+
+        Path segmento = unicoSegmento();
+        byte[] dados = Files.readAllBytes(segmento);
+        dados[dados.length - 1] ^= 0x5A;
+        Files.write(segmento, dados);
+
+        Diario reaberto = Diario.abrir(pasta);
+        List<Diario.PartidaGuardada> recuperadas = reaberto.getRecuperadas();
+        reaberto.fechar();
+
+        assertEquals(1, recuperadas.size());
+        assertArrayEquals(new int[]{19, Diario.PASSOU, Diario.SEM_TEMPO}, jogadas(recuperadas.get(0)));
+    }
+
+    /**
+     * A partida com o maior número acabou: o número não pode voltar a ser dado, nem no
+     * arranque seguinte nem no outro a seguir (o segmento onde ela acabou já foi apagado).
+     */
+    @Test
+    void maiorIdSobreviveAoFimDaUltimaPartida() throws IOException {
+        Diario diario = Diario.abrir(pasta);
+        diario.partidaCriada(1, "a", "b", 1, 2);
+        diario.partidaCriada(2, "c", "d", 3, 4);
+        diario.partidaCriada(3, "e", "f", 5, 6);
+        diario.partidaTerminada(3);
+        diario.fechar();
+
+        Diario primeiro = Diario.abrir(pasta);
+        assertEquals(3, primeiro.getMaiorId());
+        assertEquals(List.of(1, 2), ids(primeiro.getRecuperadas()));
+        primeiro.fechar();
+
+        Diario segundo = Diario.abrir(pasta);
+        assertEquals(3, segundo.getMaiorId());
+        assertEquals(List.of(1, 2), ids(segundo.getRecuperadas()));
+        segundo.fechar();
+    }
+
+    /**
+     * Sem nenhuma partida a decorrer, o maior número também tem de sobreviver.
+     */
+    @Test
+    void maiorIdSobreviveSemPartidasADecorrer() throws IOException {
+        Diario diario = Diario.abrir(pasta);
+        diario.partidaCriada(7, "a", "b", 1, 2);
+        diario.partidaTerminada(7);
+        diario.fechar();
+
+        for (int arranque = 0; arranque < 2; arranque++) {
+            Diario reaberto = Diario.abrir(pasta);
+            assertEquals(7, reaberto.getMaiorId());
+            assertTrue(reaberto.getRecuperadas().isEmpty());
+            reaberto.fechar();
+        }
+    }
+
+    /**
+     * Com segmentos de 1 byte, cada lote escrito muda de segmento. O segmento onde a partida 1
+     * começou não pode ser apagado enquanto ela não acabar, mesmo que as outras já tenham acabado.
+     */
+    @Test
+    void segmentoComPartidaADecorrerNaoEApagado() throws IOException, InterruptedException {
+        Diario diario = Diario.abrir(pasta, 1);
+        diario.partidaCriada(1, "a", "b", 1, 2);
+        esperarPorSegmento(2);
+        diario.partidaCriada(2, "c", "d", 3, 4);
+        esperarPorSegmento(3);
+        diario.partidaTerminada(2);
+        esperarPorSegmento(4);
+        diario.fechar();
+
+        assertTrue(Files.exists(segmento(1)), "a partida 1 ainda não acabou");
+    }
+
+    /**
+     * Quando a última partida de um segmento acaba, o segmento (e os seguintes sem partidas)
+     * é apagado; só fica o segmento atual.
+     */
+    @Test
+    void segmentoEApagadoQuandoTodasAsPartidasAcabam() throws IOException, InterruptedException {
+        Diario diario = Diario.abrir(pasta, 1);
+        diario.partidaCriada(1, "a", "b", 1, 2);
+        esperarPorSegmento(2);
+        diario.partidaCriada(2, "c", "d", 3, 4);
+        esperarPorSegmento(3);
+        diario.partidaTerminada(2);
+        esperarPorSegmento(4);
+        diario.partidaTerminada(1);
+        esperarPorSegmento(5);
+        diario.fechar();
+
+        for (int s = 1; s <= 4; s++) assertFalse(Files.exists(segmento(s)), "segmento " + s);
+        assertTrue(Files.exists(segmento(5)));
+    }
+
+    // --- Auxiliares ---
+
+    /**
+     * Partida 5 com uma jogada de cada tipo (a última é uma jogada normal, no fim do ficheiro)
+     * e partida 6, que acaba.
+     */
+    private static void escreverPartidaDeTeste(Diario diario) {
+        diario.partidaCriada(5, "João", "Maria", 111L, -222L);
+        diario.partidaCriada(6, "x", "y", 7L, 8L);
+        diario.jogada(5, 19);
+        diario.passagem(5, false);
+        diario.jogada(6, 37);
+        diario.passagem(5, true);
+        diario.partidaTerminada(6);
+        diario.jogada(5, 26);
+    }
+
+    private static int[] jogadas(Diario.PartidaGuardada g) {
+        int[] jogadas = new int[g.getNumeroJogadas()];
+        for (int i = 0; i < jogadas.length; i++) jogadas[i] = g.getJogada(i);
+        return jogadas;
+    }
+
+    private static List<Integer> ids(List<Diario.PartidaGuardada> partidas) {
+        return partidas.stream().map(Diario.PartidaGuardada::getId).toList();
+    }
+
+    private Path segmento(int numero) {
+        return pasta.resolve(String.format("diario-%06d.log", numero));
+    }
+
+    private Path unicoSegmento() throws IOException {
+        try (var ficheiros = Files.list(pasta)) {
+            List<Path> segmentos = ficheiros.toList();
+            assertEquals(1, segmentos.size(), "esperava um só segmento: " + segmentos);
+            return segmentos.get(0);
+        }
+    }
+
+    /**
+     * A thread do diário escreve sozinha: espera até ela ter começado o segmento indicado.
+     */
+    private void esperarPorSegmento(int numero) throws InterruptedException {
+        for (int i = 0; i < 500 && !Files.exists(segmento(numero)); i++) Thread.sleep(10);
+        assertTrue(Files.exists(segmento(numero)), "o segmento " + numero + " não apareceu");
+    }
+}